@@ -0,0 +1,75 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import io.smallrye.reactive.messaging.mqtt.MqttFailureHandler;
+
+/**
+ * Wrapping of received publishes into {@link HiveMQReceivingMqttMessage}, and the accesses a consumer typically makes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageWrappingBenchmark {
+
+    private static final MqttFailureHandler IGNORE = reason -> CompletableFuture.completedFuture(null);
+
+    @Param({ "16", "1024", "65536" })
+    int payloadSize;
+
+    private Mqtt5Publish publish;
+
+    @Setup
+    public void setUp() {
+        byte[] payload = "x".repeat(payloadSize).getBytes(StandardCharsets.UTF_8);
+        publish = Mqtt5Publish.builder()
+                .topic("plant-1/line/station/sensor/temperature")
+                .qos(MqttQos.AT_LEAST_ONCE)
+                .payload(payload)
+                .build();
+    }
+
+    @Benchmark
+    public HiveMQReceivingMqttMessage wrap() {
+        return new HiveMQReceivingMqttMessage(publish, IGNORE);
+    }
+
+    @Benchmark
+    public void wrapAndReadBytes(Blackhole blackhole) {
+        HiveMQReceivingMqttMessage message = new HiveMQReceivingMqttMessage(publish, IGNORE);
+        blackhole.consume(message.getTopic());
+        blackhole.consume(message.getPayload());
+        blackhole.consume(message.ack());
+    }
+
+    @Benchmark
+    public void wrapAndReadBuffer(Blackhole blackhole) {
+        HiveMQReceivingMqttMessage message = new HiveMQReceivingMqttMessage(publish, IGNORE);
+        ByteBuffer payload = message.getPayloadAsByteBuffer();
+        blackhole.consume(message.getTopic());
+        blackhole.consume(payload.get(payload.position()));
+        blackhole.consume(message.ack());
+    }
+}
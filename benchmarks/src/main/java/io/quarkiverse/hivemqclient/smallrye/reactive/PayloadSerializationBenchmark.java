@@ -0,0 +1,64 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Serialization of outgoing payloads by {@link HiveMQPayloadSerializers}, for each kind of built-in encoder.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadSerializationBenchmark {
+
+    /**
+     * A payload without built-in encoder, encoded to JSON.
+     */
+    public record Reading(String sensor, String unit, double value) {
+    }
+
+    @Param({ "bytes", "buffer", "string", "number", "json-object", "pojo" })
+    String type;
+
+    private HiveMQPayloadSerializers serializers;
+    private Object payload;
+
+    @Setup
+    public void setUp() {
+        serializers = new HiveMQPayloadSerializers(null);
+        String json = "{\"sensor\":\"temperature\",\"unit\":\"celsius\",\"value\":21.5}";
+        payload = switch (type) {
+            case "bytes" -> json.getBytes(StandardCharsets.UTF_8);
+            case "buffer" -> ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8));
+            case "string" -> json;
+            case "number" -> 21.5;
+            case "json-object" -> new JsonObject(Map.of("sensor", "temperature", "unit", "celsius", "value", 21.5));
+            case "pojo" -> new Reading("temperature", "celsius", 21.5);
+            default -> throw new IllegalArgumentException("Unknown payload type " + type);
+        };
+    }
+
+    @Benchmark
+    public ByteBuffer serialize() {
+        return serializers.serialize(payload);
+    }
+}
@@ -0,0 +1,152 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.quarkiverse.hivemqclient.test.broker.InProcessMqttBroker;
+import io.smallrye.config.PropertiesConfigSource;
+import io.smallrye.config.SmallRyeConfigBuilder;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.operators.multi.processors.UnicastProcessor;
+import io.smallrye.mutiny.subscription.Cancellable;
+
+/**
+ * Messages per second sent by a {@link HiveMQMqttSink} and received by a {@link HiveMQMqttSource} through a broker.
+ * <p>
+ * The broker is read from the {@code HIVEMQ_BENCHMARK_HOST} and {@code HIVEMQ_BENCHMARK_PORT} environment variables,
+ * which the forked JVMs inherit. Without host, an {@link InProcessMqttBroker} is started, which measures the connector
+ * without the network and broker costs of a real deployment.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SinkSourceThroughputBenchmark {
+
+    private static final int MESSAGES = 1000;
+    private static final long TIMEOUT_SECONDS = 30;
+
+    @Param({ "1", "2" })
+    String qos;
+
+    @Param({ "64", "4096" })
+    int payloadSize;
+
+    private InProcessMqttBroker broker;
+    private String host;
+    private String port;
+    private HiveMQMqttSink sink;
+    private UnicastProcessor<Message<?>> upstream;
+    private Cancellable downstream;
+    private byte[] payload;
+    private volatile CountDownLatch received = new CountDownLatch(0);
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        String topic = "benchmarks/throughput/" + UUID.randomUUID();
+        payload = new byte[payloadSize];
+        host = System.getenv("HIVEMQ_BENCHMARK_HOST");
+        port = Optional.ofNullable(System.getenv("HIVEMQ_BENCHMARK_PORT")).orElse("1883");
+        if (host == null) {
+            broker = InProcessMqttBroker.start();
+            host = broker.getHost();
+            port = String.valueOf(broker.getPort());
+        }
+
+        HiveMQMqttSource source = new HiveMQMqttSource(
+                new HiveMQMqttConnectorIncomingConfiguration(config("benchmark-in", topic)), null, null);
+        downstream = Multi.createFrom().publisher(source.getSource())
+                .subscribe().with(message -> {
+                    message.ack();
+                    received.countDown();
+                });
+        await("the source to subscribe", source::isSubscribed);
+
+        sink = new HiveMQMqttSink(new HiveMQMqttConnectorOutgoingConfiguration(config("benchmark-out", topic)), null,
+                null, null);
+        upstream = UnicastProcessor.create();
+        upstream.subscribe().withSubscriber((Flow.Subscriber<Message<?>>) sink.getSink());
+        await("the sink to connect", sink::isReady);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        upstream.onComplete();
+        downstream.cancel();
+        sink.close();
+        HiveMQClients.clear();
+        if (broker != null) {
+            broker.close();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void sendAndReceive() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(MESSAGES);
+        received = latch;
+        for (int i = 0; i < MESSAGES; i++) {
+            upstream.onNext(Message.of(payload));
+        }
+        if (!latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IllegalStateException(latch.getCount() + " of " + MESSAGES + " messages were not received within "
+                    + TIMEOUT_SECONDS + " seconds");
+        }
+    }
+
+    private Config config(String channel, String topic) {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("channel-name", channel);
+        properties.put("connector", HiveMQMqttConnector.CONNECTOR_NAME);
+        properties.put("host", host);
+        properties.put("port", port);
+        properties.put("client-id", channel + "-" + UUID.randomUUID());
+        properties.put("topic", topic);
+        properties.put("qos", qos);
+        properties.put("max-inflight-queue", "100");
+        return new SmallRyeConfigBuilder()
+                .withSources(new PropertiesConfigSource(properties, "benchmark", 100))
+                .build();
+    }
+
+    private static void await(String condition, BooleanSupplier satisfied) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (!satisfied.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Timed out waiting for " + condition);
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for " + condition, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Matching of received topics against the filters of the channels by {@link HiveMQTopicMatcher}, with a growing number
+ * of filters and of wildcards per filter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopicMatchingBenchmark {
+
+    private static final String[] LEVELS = { "line", "station", "sensor", "temperature" };
+
+    /**
+     * The number of filters of the matcher, one per plant.
+     */
+    @Param({ "1", "100", "10000" })
+    int filters;
+
+    /**
+     * The number of {@code +} levels of each filter, {@code -1} for a single trailing {@code #}.
+     */
+    @Param({ "0", "1", "2", "-1" })
+    int wildcards;
+
+    private HiveMQTopicMatcher<String> matcher;
+    private String matching;
+    private String notMatching;
+
+    @Setup
+    public void setUp() {
+        matcher = new HiveMQTopicMatcher<>();
+        for (int plant = 0; plant < filters; plant++) {
+            String filter = filter(plant);
+            matcher.add(filter, filter);
+        }
+        matching = "plant-" + (filters / 2) + "/" + String.join("/", LEVELS);
+        notMatching = "plant-" + filters + "/" + String.join("/", LEVELS);
+    }
+
+    private String filter(int plant) {
+        StringBuilder filter = new StringBuilder("plant-").append(plant);
+        if (wildcards < 0) {
+            return filter.append("/#").toString();
+        }
+        for (int i = 0; i < LEVELS.length; i++) {
+            filter.append('/').append(i < wildcards ? "+" : LEVELS[i]);
+        }
+        return filter.toString();
+    }
+
+    @Benchmark
+    public void forEachMatch(Blackhole blackhole) {
+        matcher.forEachMatch(matching, blackhole::consume);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return matcher.matches(matching);
+    }
+
+    @Benchmark
+    public boolean missing() {
+        return matcher.matches(notMatching);
+    }
+}
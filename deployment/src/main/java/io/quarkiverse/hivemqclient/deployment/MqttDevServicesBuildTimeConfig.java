@@ -24,6 +24,16 @@ public interface MqttDevServicesBuildTimeConfig {
      */
     OptionalInt port();
 
+    /**
+     * Whether to start an in-process broker instead of a container.
+     * <p>
+     * The in-process broker needs no container runtime and starts in milliseconds, but only supports clean sessions,
+     * without authentication nor will messages. {@code image-name}, {@code shared}, {@code service-name} and
+     * {@code container-env} are ignored.
+     */
+    @WithDefault("false")
+    boolean inProcess();
+
     /**
      * The image to use.
      */
@@ -1,6 +1,8 @@
 package io.quarkiverse.hivemqclient.deployment;
 
 import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
 import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
@@ -33,7 +35,7 @@ import io.quarkus.runtime.LaunchMode;
 import io.quarkus.runtime.configuration.ConfigUtils;
 
 /**
- * Starts a HiveMQ broker as dev service if needed.
+ * Starts a HiveMQ broker, or an in-process one, as dev service if needed.
  */
 @BuildSteps(onlyIfNot = IsNormal.class, onlyIf = DevServicesConfig.Enabled.class)
 public class MqttDevServicesProcessor {
@@ -48,6 +50,13 @@ public class MqttDevServicesProcessor {
 
     private static final int MQTT_PORT = 1883;
 
+    /**
+     * The broker of the optional {@code quarkus-hivemq-client-test-broker} artifact, which applications only add when
+     * they use it, so it and Vert.x MQTT are not pulled by the extension.
+     */
+    private static final String IN_PROCESS_BROKER = "io.quarkiverse.hivemqclient.test.broker.InProcessMqttBroker";
+    private static final String TEST_BROKER_ARTIFACT = "io.quarkiverse.hivemqclient:quarkus-hivemq-client-test-broker";
+
     private static final ContainerLocator mqttContainerLocator = new ContainerLocator(DEV_SERVICE_LABEL, MQTT_PORT);
     static volatile RunningDevService devService;
     static volatile MqttDevServiceCfg cfg;
@@ -146,8 +155,13 @@ public class MqttDevServicesProcessor {
             return null;
         }
 
+        if (config.inProcess) {
+            return startInProcessBroker(config.fixedExposedPort);
+        }
+
         if (!dockerStatusBuildItem.isContainerRuntimeAvailable()) {
-            log.warn("Docker isn't working, please configure the MQTT broker location.");
+            log.warn("Docker isn't working, please configure the MQTT broker location"
+                    + " or set quarkus.hivemq.devservices.in-process=true.");
             return null;
         }
 
@@ -182,6 +196,32 @@ public class MqttDevServicesProcessor {
                 .orElseGet(defaultMqttBrokerSupplier);
     }
 
+    private RunningDevService startInProcessBroker(int port) {
+        Class<?> brokerClass;
+        try {
+            brokerClass = Class.forName(IN_PROCESS_BROKER, true, Thread.currentThread().getContextClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("quarkus.hivemq.devservices.in-process=true requires the " + TEST_BROKER_ARTIFACT
+                    + " dependency, add it with the test scope", e);
+        }
+        try {
+            AutoCloseable broker = (AutoCloseable) brokerClass.getMethod("start", int.class).invoke(null, port);
+            Closeable close = () -> {
+                try {
+                    broker.close();
+                } catch (Exception e) {
+                    throw new IOException(e);
+                }
+            };
+            return getRunningDevService(null, close, (String) brokerClass.getMethod("getHost").invoke(broker),
+                    (Integer) brokerClass.getMethod("getPort").invoke(broker));
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Failed to start the in-process MQTT broker", e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Incompatible " + TEST_BROKER_ARTIFACT + " version", e);
+        }
+    }
+
     private RunningDevService getRunningDevService(
             String containerId,
             Closeable closeable,
@@ -226,11 +266,13 @@ public class MqttDevServicesProcessor {
         String imageName = config.getOptionalValue("quarkus.hivemq.devservices.image-name", String.class)
                 .orElse("hivemq/hivemq4");
         Integer fixedExposedPort = config.getOptionalValue("quarkus.hivemq.devservices.port", Integer.class).orElse(0);
+        boolean inProcess = config.getOptionalValue("quarkus.hivemq.devservices.in-process", Boolean.class).orElse(false);
         boolean shared = config.getOptionalValue("quarkus.hivemq.devservices.shared", Boolean.class).orElse(false);
         String serviceName = config.getOptionalValue("quarkus.hivemq.devservices.service-name", String.class).orElse("mqtt");
         Map<String, String> containerEnv = new HashMap<>();
 
-        return new MqttDevServiceCfg(devServicesEnabled, imageName, fixedExposedPort, shared, serviceName, containerEnv);
+        return new MqttDevServiceCfg(devServicesEnabled, imageName, fixedExposedPort, inProcess, shared, serviceName,
+                containerEnv);
     }
 
     private static final class MqttDevServiceCfg {
@@ -238,15 +280,17 @@ public class MqttDevServicesProcessor {
         private final boolean devServicesEnabled;
         private final String imageName;
         private final Integer fixedExposedPort;
+        private final boolean inProcess;
         private final boolean shared;
         private final String serviceName;
         private final Map<String, String> containerEnv;
 
         public MqttDevServiceCfg(boolean devServicesEnabled, String imageName, Integer fixedExposedPort,
-                boolean shared, String serviceName, Map<String, String> containerEnv) {
+                boolean inProcess, boolean shared, String serviceName, Map<String, String> containerEnv) {
             this.devServicesEnabled = devServicesEnabled;
             this.imageName = imageName;
             this.fixedExposedPort = fixedExposedPort;
+            this.inProcess = inProcess;
             this.shared = shared;
             this.serviceName = serviceName;
             this.containerEnv = containerEnv;
@@ -262,13 +306,13 @@ public class MqttDevServicesProcessor {
             }
             MqttDevServiceCfg that = (MqttDevServiceCfg) o;
             return devServicesEnabled == that.devServicesEnabled && Objects.equals(imageName, that.imageName)
-                    && Objects.equals(fixedExposedPort, that.fixedExposedPort)
+                    && Objects.equals(fixedExposedPort, that.fixedExposedPort) && inProcess == that.inProcess
                     && Objects.equals(containerEnv, that.containerEnv);
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(devServicesEnabled, imageName, fixedExposedPort, containerEnv);
+            return Objects.hash(devServicesEnabled, imageName, fixedExposedPort, inProcess, containerEnv);
         }
     }
 
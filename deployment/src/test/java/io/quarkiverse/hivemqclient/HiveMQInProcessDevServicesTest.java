@@ -0,0 +1,37 @@
+package io.quarkiverse.hivemqclient;
+
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.hivemq.client.mqtt.mqtt5.Mqtt5BlockingClient;
+import com.hivemq.client.mqtt.mqtt5.Mqtt5Client;
+import com.hivemq.client.mqtt.mqtt5.message.connect.connack.Mqtt5ConnAckReasonCode;
+
+import io.quarkus.test.QuarkusUnitTest;
+
+public class HiveMQInProcessDevServicesTest {
+
+    // A channel without host nor port, so that Dev Services start a broker, without container
+    @RegisterExtension
+    static final QuarkusUnitTest unitTest = new QuarkusUnitTest()
+            .setArchiveProducer(() -> ShrinkWrap.create(JavaArchive.class))
+            .overrideConfigKey("mp.messaging.incoming.prices.connector", "smallrye-mqtt-hivemq")
+            .overrideConfigKey("quarkus.hivemq.devservices.in-process", "true");
+
+    @Test
+    public void should_connect_to_in_process_broker() {
+        Config config = ConfigProvider.getConfig();
+        Mqtt5BlockingClient client = Mqtt5Client.builder()
+                .serverHost(config.getValue("mp.messaging.connector.smallrye-mqtt-hivemq.host", String.class))
+                .serverPort(config.getValue("mp.messaging.connector.smallrye-mqtt-hivemq.port", Integer.class))
+                .buildBlocking();
+
+        Assertions.assertEquals(Mqtt5ConnAckReasonCode.SUCCESS, client.connect().getReasonCode());
+        client.disconnect();
+    }
+}
@@ -0,0 +1,109 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+
+import io.quarkiverse.hivemqclient.smallrye.reactive.HiveMQProtocolClient.ReceivedPublish;
+
+/**
+ * Sends the acknowledgements of the QoS 1 and 2 publishes received by a connection in the order the publishes were
+ * received, as MQTT requires, whatever the order the application acked them in.
+ * <p>
+ * An acknowledgement is held back until the publishes received before it were acknowledged. The publishes received on a
+ * previous connection no longer hold back the others once the client {@link #reset reconnected}: the client does not
+ * send their acknowledgements anyway, the broker delivers them again if the session was resumed.
+ */
+class HiveMQAcknowledgements {
+
+    static final Runnable NONE = () -> {
+    };
+
+    // guarded by this
+    private Deque<Pending> pending = new ArrayDeque<>();
+
+    /**
+     * @param received a received publish, registered in the order of reception
+     * @return the acknowledgement of the publish, to be called once; it is sent after the ones of the publishes
+     *         registered before it
+     */
+    Runnable register(ReceivedPublish received) {
+        if (received.publish().getQos() == MqttQos.AT_MOST_ONCE) {
+            return received.acknowledge();
+        }
+        Pending entry;
+        synchronized (this) {
+            entry = new Pending(received.acknowledge(), pending);
+            pending.add(entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Stops holding back acknowledgements behind the publishes registered so far. Called when the client connected.
+     */
+    synchronized void reset() {
+        pending = new ArrayDeque<>();
+    }
+
+    /**
+     * @return the number of publishes whose acknowledgement is pending or held back
+     */
+    synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * @param acknowledge the acknowledgement to share
+     * @param parties the number of calls required
+     * @return an acknowledgement calling {@code acknowledge} on its {@code parties}-th call
+     */
+    static Runnable countDown(Runnable acknowledge, int parties) {
+        if (parties <= 1) {
+            return acknowledge;
+        }
+        AtomicInteger remaining = new AtomicInteger(parties);
+        return () -> {
+            if (remaining.decrementAndGet() == 0) {
+                acknowledge.run();
+            }
+        };
+    }
+
+    private void acknowledged(Pending entry) {
+        synchronized (this) {
+            if (entry.acknowledged) {
+                return;
+            }
+            entry.acknowledged = true;
+            if (entry.queue == pending) {
+                // acknowledges, in order, the head of the queue, this publish included if it was at the head
+                Pending head;
+                while ((head = pending.peek()) != null && head.acknowledged) {
+                    pending.poll().acknowledge.run();
+                }
+                return;
+            }
+        }
+        entry.acknowledge.run();
+    }
+
+    private final class Pending implements Runnable {
+
+        private final Runnable acknowledge;
+        private final Deque<Pending> queue;
+        private boolean acknowledged;
+
+        private Pending(Runnable acknowledge, Deque<Pending> queue) {
+            this.acknowledge = acknowledge;
+            this.queue = queue;
+        }
+
+        @Override
+        public void run() {
+            acknowledged(this);
+        }
+    }
+}
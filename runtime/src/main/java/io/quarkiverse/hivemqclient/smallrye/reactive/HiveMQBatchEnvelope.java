@@ -0,0 +1,133 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import static io.smallrye.reactive.messaging.mqtt.i18n.MqttLogging.log;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+/**
+ * Encodes several payloads into the payload of a single publish, and splits it back.
+ * <p>
+ * An envelope is laid out as:
+ *
+ * <pre>
+ * int magic ("HMQB") | byte version | varint count | count * (varint length | bytes)
+ * </pre>
+ *
+ * Lengths are unsigned LEB128 varints, so a payload of less than 128 bytes costs a single byte of framing.
+ */
+final class HiveMQBatchEnvelope {
+
+    static final int HEADER_SIZE = Integer.BYTES + 1;
+    private static final int MAGIC = 0x484D5142;
+    private static final byte VERSION = 1;
+
+    private HiveMQBatchEnvelope() {
+        // avoid direct instantiation.
+    }
+
+    /**
+     * @param payloadSize the size of a payload
+     * @return the number of bytes the payload takes in an envelope
+     */
+    static int itemSize(int payloadSize) {
+        return varintSize(payloadSize) + payloadSize;
+    }
+
+    /**
+     * @param payloads the payloads, left unchanged
+     * @return the envelope
+     */
+    static ByteBuffer encode(List<ByteBuffer> payloads) {
+        int size = HEADER_SIZE + varintSize(payloads.size());
+        for (ByteBuffer payload : payloads) {
+            size += itemSize(payload.remaining());
+        }
+        ByteBuffer envelope = ByteBuffer.allocate(size).putInt(MAGIC).put(VERSION);
+        putVarint(envelope, payloads.size());
+        for (ByteBuffer payload : payloads) {
+            putVarint(envelope, payload.remaining());
+            envelope.put(payload.duplicate());
+        }
+        return envelope.flip();
+    }
+
+    /**
+     * @param envelope the envelope, left unchanged
+     * @return read-only views of the payloads, or {@code null} if the buffer is not a valid envelope
+     */
+    static List<ByteBuffer> decode(ByteBuffer envelope) {
+        ByteBuffer buffer = envelope.asReadOnlyBuffer();
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+            return null;
+        }
+        try {
+            int count = getVarint(buffer);
+            List<ByteBuffer> payloads = new ArrayList<>(Math.min(count, buffer.remaining()));
+            for (int i = 0; i < count; i++) {
+                int length = getVarint(buffer);
+                if (length > buffer.remaining()) {
+                    return null;
+                }
+                payloads.add(buffer.slice(buffer.position(), length));
+                buffer.position(buffer.position() + length);
+            }
+            return buffer.hasRemaining() ? null : payloads;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Splits a publish carrying an envelope into one publish per payload, sharing the topic, QoS, retain flag and
+     * properties of the envelope. The payloads are not copied.
+     *
+     * @param publish the publish
+     * @return the publishes of the envelope, or the publish itself if it does not carry an envelope
+     */
+    static List<Mqtt5Publish> split(Mqtt5Publish publish) {
+        List<ByteBuffer> payloads = publish.getPayload().map(HiveMQBatchEnvelope::decode).orElse(null);
+        if (payloads == null) {
+            log.debug("Received a publish on " + publish.getTopic() + " which is not a batch envelope");
+            return List.of(publish);
+        }
+        List<Mqtt5Publish> publishes = new ArrayList<>(payloads.size());
+        for (ByteBuffer payload : payloads) {
+            publishes.add(publish.extend().payload(payload).build());
+        }
+        return publishes;
+    }
+
+    private static int varintSize(int value) {
+        return (38 - Integer.numberOfLeadingZeros(value | 1)) / 7;
+    }
+
+    private static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (!buffer.hasRemaining()) {
+                throw new IllegalArgumentException("Truncated varint");
+            }
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (value < 0) {
+                    throw new IllegalArgumentException("Negative varint");
+                }
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+}
@@ -0,0 +1,197 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import static io.smallrye.reactive.messaging.mqtt.i18n.MqttLogging.log;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.eclipse.microprofile.reactive.messaging.Metadata;
+
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+
+import io.smallrye.mutiny.Uni;
+
+/**
+ * Coalesces the outgoing messages of a sink sent to the same topic, with the same QoS and retain flag, into a single
+ * {@link HiveMQBatchEnvelope}.
+ * <p>
+ * A batch is published when it reaches {@code maxMessages} messages or {@code maxBytes} bytes, or {@code linger} after
+ * its first message was added. It is published as one message whose acknowledgement acks every message of the batch,
+ * and whose nack nacks them all.
+ * <p>
+ * The batch of a destination is removed once published, so destinations used once, such as per-device topics, are
+ * not kept.
+ */
+class HiveMQBatcher {
+
+    /**
+     * The destination shared by the messages of a batch.
+     */
+    record Key(String topic, MqttQos qos, boolean retain) {
+    }
+
+    private final int maxMessages;
+    private final int maxBytes;
+    private final long lingerMillis;
+    private final ScheduledExecutorService scheduler;
+    private final BiFunction<Key, Message<ByteBuffer>, Uni<Void>> publisher;
+    private final Map<Key, Batch> batches = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxMessages the maximum number of messages of a batch
+     * @param maxBytes the maximum size of the envelope of a batch, a single larger message is sent alone
+     * @param lingerMillis the maximum time a message waits for its batch to be published
+     * @param scheduler runs the publication of the batches reaching their linger time
+     * @param publisher publishes the envelope message, returns a {@link Uni} completed once it was acknowledged
+     */
+    HiveMQBatcher(int maxMessages, int maxBytes, long lingerMillis, ScheduledExecutorService scheduler,
+            BiFunction<Key, Message<ByteBuffer>, Uni<Void>> publisher) {
+        if (maxMessages < 1 || maxBytes < 1 || lingerMillis < 0) {
+            throw new IllegalArgumentException("Invalid batch bounds: " + maxMessages + " messages, " + maxBytes
+                    + " bytes, " + lingerMillis + " ms");
+        }
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+        this.lingerMillis = lingerMillis;
+        this.scheduler = scheduler;
+        this.publisher = publisher;
+    }
+
+    /**
+     * Adds the message to the batch of its destination.
+     *
+     * @param key the destination of the message
+     * @param message the message
+     * @param payload the serialized payload of the message
+     * @return a {@link Uni} completed once the message was added to a batch, or, when the message completed the batch,
+     *         once the batch was acknowledged, which holds back the upstream while batches are in flight
+     */
+    Uni<Void> add(Key key, Message<?> message, ByteBuffer payload) {
+        while (true) {
+            Batch batch = batches.computeIfAbsent(key, Batch::new);
+            synchronized (batch) {
+                if (batch.removed) {
+                    // published and removed in the meantime, the message goes to the next batch
+                    continue;
+                }
+                int size = HiveMQBatchEnvelope.itemSize(payload.remaining());
+                if (!batch.messages.isEmpty() && batch.bytes + size > maxBytes) {
+                    // published in the background, the new message opens the next batch
+                    subscribe(batch.publish());
+                }
+                batch.add(message, payload, size);
+                if (batch.messages.size() >= maxMessages || batch.bytes >= maxBytes) {
+                    Uni<Void> publication = batch.publish();
+                    remove(batch);
+                    return publication;
+                }
+                if (batch.messages.size() == 1) {
+                    long generation = batch.generation;
+                    scheduler.schedule(() -> linger(batch, generation), lingerMillis, TimeUnit.MILLISECONDS);
+                }
+                return Uni.createFrom().voidItem();
+            }
+        }
+    }
+
+    /**
+     * Publishes all the pending batches.
+     */
+    void flush() {
+        batches.values().forEach(batch -> {
+            synchronized (batch) {
+                if (!batch.removed && !batch.messages.isEmpty()) {
+                    subscribe(batch.publish());
+                    remove(batch);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the number of destinations with a batch being filled
+     */
+    int batchCount() {
+        return batches.size();
+    }
+
+    private void linger(Batch batch, long generation) {
+        synchronized (batch) {
+            if (!batch.removed && batch.generation == generation && !batch.messages.isEmpty()) {
+                subscribe(batch.publish());
+                remove(batch);
+            }
+        }
+    }
+
+    /**
+     * Removes a batch emptied by its publication. Called with its lock held, so a message is never added to a removed
+     * batch.
+     */
+    private void remove(Batch batch) {
+        batch.removed = true;
+        batches.remove(batch.key, batch);
+    }
+
+    private static void subscribe(Uni<Void> publication) {
+        publication.subscribe().with(ignored -> {
+        }, failure -> log.error("Failed to send MQTT batch: " + failure.getMessage(), failure));
+    }
+
+    private class Batch {
+
+        private final Key key;
+        private final List<Message<?>> messages = new ArrayList<>();
+        private final List<ByteBuffer> payloads = new ArrayList<>();
+        private int bytes = HiveMQBatchEnvelope.HEADER_SIZE + Integer.BYTES;
+        // identifies the current batch, so a linger timer does not publish a later one early
+        private long generation;
+        // set once removed from the batches, guarded by the lock of the batch
+        private boolean removed;
+
+        private Batch(Key key) {
+            this.key = key;
+        }
+
+        private void add(Message<?> message, ByteBuffer payload, int size) {
+            messages.add(message);
+            payloads.add(payload);
+            bytes += size;
+        }
+
+        /**
+         * Publishes the batch and starts the next one. Called with the lock held, so batches of a destination are
+         * published in order.
+         */
+        private Uni<Void> publish() {
+            List<Message<?>> batched = List.copyOf(messages);
+            ByteBuffer envelope = HiveMQBatchEnvelope.encode(payloads);
+            messages.clear();
+            payloads.clear();
+            bytes = HiveMQBatchEnvelope.HEADER_SIZE + Integer.BYTES;
+            generation++;
+            return publisher.apply(key, Message.of(envelope, Metadata.empty(),
+                    () -> all(batched, Message::ack),
+                    reason -> all(batched, message -> message.nack(reason))));
+        }
+    }
+
+    private static CompletionStage<Void> all(List<Message<?>> messages,
+            Function<Message<?>, CompletionStage<Void>> settle) {
+        CompletableFuture<?>[] settled = new CompletableFuture<?>[messages.size()];
+        for (int i = 0; i < settled.length; i++) {
+            settled[i] = settle.apply(messages.get(i)).toCompletableFuture();
+        }
+        return CompletableFuture.allOf(settled);
+    }
+}
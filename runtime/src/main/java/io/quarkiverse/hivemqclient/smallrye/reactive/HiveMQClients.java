@@ -4,23 +4,38 @@ import static io.smallrye.reactive.messaging.mqtt.i18n.MqttLogging.log;
 import static java.lang.String.format;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
+import com.hivemq.client.mqtt.MqttClient;
+import com.hivemq.client.mqtt.MqttClientBuilder;
 import com.hivemq.client.mqtt.MqttClientSslConfigBuilder;
-import com.hivemq.client.mqtt.mqtt3.Mqtt3BlockingClient;
-import com.hivemq.client.mqtt.mqtt3.Mqtt3Client;
+import com.hivemq.client.mqtt.datatypes.MqttQos;
 import com.hivemq.client.mqtt.mqtt3.Mqtt3ClientBuilder;
-import com.hivemq.client.mqtt.mqtt3.Mqtt3RxClient;
-import com.hivemq.client.mqtt.mqtt3.message.connect.connack.Mqtt3ConnAck;
+import com.hivemq.client.mqtt.mqtt3.message.connect.Mqtt3Connect;
+import com.hivemq.client.mqtt.mqtt3.message.connect.Mqtt3ConnectBuilder;
+import com.hivemq.client.mqtt.mqtt3.message.publish.Mqtt3Publish;
+import com.hivemq.client.mqtt.mqtt5.Mqtt5ClientBuilder;
+import com.hivemq.client.mqtt.mqtt5.message.connect.Mqtt5Connect;
+import com.hivemq.client.mqtt.mqtt5.message.connect.Mqtt5ConnectBuilder;
+import com.hivemq.client.mqtt.mqtt5.message.connect.Mqtt5ConnectRestrictions;
+import com.hivemq.client.mqtt.mqtt5.message.connect.Mqtt5ConnectRestrictionsBuilder;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5WillPublish;
 
 import io.quarkiverse.hivemqclient.ssl.IgnoreHostnameVerifier;
 import io.quarkiverse.hivemqclient.ssl.KeyStoreUtil;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
-import io.smallrye.mutiny.operators.multi.processors.BroadcastProcessor;
 import io.smallrye.reactive.messaging.health.HealthReport;
-import io.vertx.mutiny.mqtt.messages.MqttPublishMessage;
 
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.TrustManagerFactory;
@@ -33,14 +48,18 @@ public class HiveMQClients {
         // avoid direct instantiation.
     }
 
-    static Uni<Mqtt3RxClient> getConnectedClient(HiveMQMqttConnectorCommonConfiguration options) {
+    static Uni<List<HiveMQProtocolClient>> getConnectedClients(HiveMQMqttConnectorCommonConfiguration options) {
 
         ClientHolder holder = getHolder(options);
 
-        return holder.connect();
+        return holder.connectAll();
     }
 
     static ClientHolder getHolder(HiveMQMqttConnectorCommonConfiguration options) {
+        return clients.computeIfAbsent(getId(options), key -> new ClientHolder(options));
+    }
+
+    static String getId(HiveMQMqttConnectorCommonConfiguration options) {
 
         String host = options.getHost();
         int def = options.getSsl() || options.getTrustAll() ? 8883 : 1883;
@@ -48,35 +67,114 @@ public class HiveMQClients {
         String server = options.getServerName().orElse("");
         String clientId = options.getClientId().orElse("");
 
-        String id = host + ":" + port + "<" + server + ">-[" + clientId + "]";
-        return clients.computeIfAbsent(id, key -> new ClientHolder(options));
+        return host + ":" + port + "<" + server + ">-[" + clientId + "]-v" + options.getProtocolVersion();
     }
 
-    static Mqtt3RxClient create(HiveMQMqttConnectorCommonConfiguration options) {
+    /**
+     * @param options the channel configuration
+     * @param member the index of the client in the pool of the holder, its client identifier is derived from it when the
+     *        pool has several clients
+     * @param onConnected called each time the client connected, including reconnections
+     * @return the client
+     */
+    static HiveMQProtocolClient create(HiveMQMqttConnectorCommonConfiguration options, int member, Runnable onConnected) {
 
-        final Mqtt3ClientBuilder builder = defaultMqtt3ClientBuilder(options);
+        final MqttClientBuilder builder = defaultMqttClientBuilder(options);
 
+        if (!options.getAutoCleanSession() && options.getClientId().isEmpty()) {
+            throw new IllegalArgumentException("client-id null with persistent session (auto-clean-session=false) on channel "
+                    + options.getChannel() + ", the session can only be resumed with the same client identifier");
+        }
         if (options.getAutoGeneratedClientId()) {
             builder.identifier(UUID.randomUUID().toString());
         }
-        options.getClientId().ifPresent(clientid -> builder.identifier(clientid));
-
-        options.getUsername().ifPresent(username -> setupBasicAuth(options, username, builder));
+        options.getClientId().ifPresent(clientid -> builder.identifier(options.getConnections() > 1
+                ? clientid + "-" + member
+                : clientid));
 
         if (options.getSsl()) {
             setupSslConfig(options, builder);
         }
 
-        return builder
-                .automaticReconnectWithDefaultConfig()
+        long connectTimeout = options.getConnectTimeoutSeconds();
+        builder.transportConfig()
+                .socketConnectTimeout(connectTimeout, TimeUnit.SECONDS)
+                .mqttConnectTimeout(connectTimeout, TimeUnit.SECONDS)
+                .applyTransportConfig();
+
+        builder.addDisconnectedListener(HiveMQReconnectPolicy.of(options))
                 .addConnectedListener(context -> {
                     log.info(format("connected to %s:%d", context.getClientConfig().getServerHost(),
                             context.getClientConfig().getServerPort()));
-                }).buildRx();
+                    onConnected.run();
+                });
+
+        switch (options.getProtocolVersion()) {
+            case 3:
+                return createMqtt3(options, builder.useMqttVersion3());
+            case 5:
+                return createMqtt5(options, builder.useMqttVersion5());
+            default:
+                throw new IllegalArgumentException("Unsupported MQTT protocol version " + options.getProtocolVersion()
+                        + " configured on channel " + options.getChannel() + ", use 3 or 5");
+        }
     }
 
-    private static Mqtt3ClientBuilder defaultMqtt3ClientBuilder(HiveMQMqttConnectorCommonConfiguration options) {
-        Mqtt3ClientBuilder builder = Mqtt3Client.builder()
+    private static HiveMQProtocolClient createMqtt3(HiveMQMqttConnectorCommonConfiguration options,
+            Mqtt3ClientBuilder builder) {
+        options.getUsername().ifPresent(username -> builder.simpleAuth()
+                .username(username)
+                .password(getPassword(options))
+                .applySimpleAuth());
+
+        Mqtt3ConnectBuilder connect = Mqtt3Connect.builder()
+                .keepAlive(options.getKeepAliveSeconds())
+                .cleanSession(options.getAutoCleanSession());
+        if (options.getWillFlag()) {
+            connect.willPublish(Mqtt3Publish.builder()
+                    .topic(getWillTopic(options))
+                    .payload(getWillPayload(options))
+                    .qos(getWillQos(options))
+                    .retain(options.getWillRetain())
+                    .build());
+        }
+
+        return new HiveMQMqtt3Client(builder.buildRx(), connect.build());
+    }
+
+    private static HiveMQProtocolClient createMqtt5(HiveMQMqttConnectorCommonConfiguration options,
+            Mqtt5ClientBuilder builder) {
+        options.getUsername().ifPresent(username -> builder.simpleAuth()
+                .username(username)
+                .password(getPassword(options))
+                .applySimpleAuth());
+
+        Mqtt5ConnectRestrictionsBuilder restrictions = Mqtt5ConnectRestrictions.builder()
+                .receiveMaximum(options.getReceiveMaximum())
+                .sendTopicAliasMaximum(options.getTopicAliasMaximum());
+        options.getMaxMessageSize().ifPresent(restrictions::maximumPacketSize);
+
+        Mqtt5ConnectBuilder connect = Mqtt5Connect.builder()
+                .keepAlive(options.getKeepAliveSeconds())
+                .cleanStart(options.getAutoCleanSession())
+                // like MQTT 3.1.1 persistent sessions, a session that is not clean does not expire unless configured
+                .sessionExpiryInterval(options.getSessionExpiryInterval()
+                        .orElse(options.getAutoCleanSession() ? 0 : Mqtt5Connect.NO_SESSION_EXPIRY))
+                .restrictions(restrictions.build());
+        if (options.getWillFlag()) {
+            connect.willPublish(Mqtt5WillPublish.builder()
+                    .topic(getWillTopic(options))
+                    .payload(getWillPayload(options))
+                    .qos(getWillQos(options))
+                    .retain(options.getWillRetain())
+                    .build());
+        }
+
+        return new HiveMQMqtt5Client(builder.buildRx(), connect.build());
+    }
+
+    private static MqttClientBuilder defaultMqttClientBuilder(HiveMQMqttConnectorCommonConfiguration options) {
+        MqttClientBuilder builder = MqttClient.builder()
                 .serverHost(options.getHost())
                 .serverPort(options.getPort().orElse(options.getSsl() ? 8883 : 1883));
 
@@ -87,19 +185,34 @@ public class HiveMQClients {
         return builder;
     }
 
-    private static void setupBasicAuth(HiveMQMqttConnectorCommonConfiguration options, String username,
-            Mqtt3ClientBuilder builder) {
-        builder.simpleAuth()
-                .username(username)
-                .password(options.getPassword().orElseThrow(
-                        () -> new IllegalArgumentException("password null with authentication enabled (username not null)"))
-                        .getBytes())
-                .applySimpleAuth();
+    private static byte[] getPassword(HiveMQMqttConnectorCommonConfiguration options) {
+        return options.getPassword().orElseThrow(
+                () -> new IllegalArgumentException("password null with authentication enabled (username not null)"))
+                .getBytes();
     }
 
-    private static void setupSslConfig(HiveMQMqttConnectorCommonConfiguration options, Mqtt3ClientBuilder builder) {
+    private static String getWillTopic(HiveMQMqttConnectorCommonConfiguration options) {
+        return options.getWillTopic().orElseThrow(
+                () -> new IllegalArgumentException("will-topic null with will enabled (will-flag set) on channel "
+                        + options.getChannel()));
+    }
 
-        final MqttClientSslConfigBuilder.Nested<? extends Mqtt3ClientBuilder> nested = builder.sslConfig();
+    private static byte[] getWillPayload(HiveMQMqttConnectorCommonConfiguration options) {
+        return options.getWillMessage().orElse("").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static MqttQos getWillQos(HiveMQMqttConnectorCommonConfiguration options) {
+        MqttQos qos = MqttQos.fromCode(options.getWillQos());
+        if (qos == null) {
+            throw new IllegalArgumentException("Invalid will-qos " + options.getWillQos() + " configured on channel "
+                    + options.getChannel() + ", use 0, 1 or 2");
+        }
+        return qos;
+    }
+
+    private static void setupSslConfig(HiveMQMqttConnectorCommonConfiguration options, MqttClientBuilder builder) {
+
+        final MqttClientSslConfigBuilder.Nested<? extends MqttClientBuilder> nested = builder.sslConfig();
 
         String truststoreLocation = options.getSslTruststoreLocation()
                 .orElseThrow(() -> new RuntimeException("Missing required 'ssl.truststore.location' property"));
@@ -121,7 +234,7 @@ public class HiveMQClients {
     }
 
     private static void setupMtlsConfig(HiveMQMqttConnectorCommonConfiguration options,
-            MqttClientSslConfigBuilder.Nested<? extends Mqtt3ClientBuilder> nested) {
+            MqttClientSslConfigBuilder.Nested<? extends MqttClientBuilder> nested) {
         if (options.getSslKeystoreLocation().isPresent() || options.getSslKeystorePassword().isPresent()) {
             String keystoreLocation = options.getSslKeystoreLocation()
                     .orElseThrow(() -> new RuntimeException("Missing required 'ssl.keystore.location' property"));
@@ -143,55 +256,181 @@ public class HiveMQClients {
     }
 
     public static void checkLiveness(HealthReport.HealthReportBuilder builder) {
-        clients.forEach((name, holder) -> builder.add(name, holder.checkLiveness()));
+        clients.forEach((name, holder) -> builder.add(name, holder.checkLiveness(), holder.getHealthDetail()));
     }
 
     public static void checkReadiness(HealthReport.HealthReportBuilder builder) {
-        clients.forEach((name, holder) -> builder.add(name, holder.checkReadiness()));
+        clients.forEach((name, holder) -> builder.add(name, holder.checkReadiness(), holder.getHealthDetail()));
     }
 
     public static class ClientHolder {
 
-        private final Mqtt3RxClient client;
-        private final Uni<Mqtt3ConnAck> connection;
+        private final List<HiveMQConnection> connections;
+        private final List<Runnable> connectedListeners = new CopyOnWriteArrayList<>();
+        private final HiveMQPing ping;
+        private final Uni<Boolean> probe;
+        private volatile Boolean reachable;
         private final int livenessTimeout;
         private final int readinessTimeout;
         private final Boolean checkTopicEnabled;
-        private final BroadcastProcessor<MqttPublishMessage> messages;
-        private long lastMqttUpdate = 0;
+        private volatile long lastMqttUpdate = 0;
 
         public ClientHolder(HiveMQMqttConnectorCommonConfiguration options) {
-            client = create(options);
+            int size = options.getConnections();
+            if (size < 1) {
+                throw new IllegalArgumentException("The number of connections must be positive, got " + size
+                        + " on channel " + options.getChannel());
+            }
+            List<HiveMQConnection> pool = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                int member = i;
+                pool.add(new HiveMQConnection(onConnected -> create(options, member, onConnected),
+                        !options.getAutoCleanSession(), this::fireConnected));
+            }
+            connections = List.copyOf(pool);
 
-            messages = BroadcastProcessor.create();
             livenessTimeout = options.getLivenessTimeout();
             readinessTimeout = options.getReadinessTimeout();
             checkTopicEnabled = options.getCheckTopicEnabled();
 
+            // probes of the different clients run concurrently, and nothing waits for them but the readiness check
+            ping = new HiveMQPing(this, options.getClientId().orElse(null));
+            probe = ping.checkConnection().memoize().indefinitely();
+            probe.subscribe().with(result -> {
+                reachable = result;
+                if (options.getPingIntervalSeconds() > 0) {
+                    ping.start(Duration.ofSeconds(options.getPingIntervalSeconds()));
+                }
+            });
+
             if (checkTopicEnabled) {
-                client.toAsync().subscribeWith()
-                        .topicFilter(options.getCheckTopicName())
-                        .callback(m -> {
+                subscribe(options.getCheckTopicName(), MqttQos.AT_LEAST_ONCE, m -> true, () -> {
+                })
+                        .subscribe().with(m -> {
                             log.debug(new String(m.getPayloadAsBytes()));
                             lastMqttUpdate = System.currentTimeMillis();
-                        })
-                        .send();
+                        }, failure -> log.error("Failed to subscribe to check topic " + options.getCheckTopicName(),
+                                failure));
             }
+        }
+
+        /**
+         * @return the result of the reachability probe, run once when the client is created
+         */
+        public Uni<Boolean> probe() {
+            return probe;
+        }
+
+        /**
+         * @param listener called each time a client of the pool connected, including reconnections, on the client thread
+         */
+        public void onConnected(Runnable listener) {
+            connectedListeners.add(listener);
+        }
+
+        private void fireConnected() {
+            connectedListeners.forEach(Runnable::run);
+        }
+
+        /**
+         * @return the first client of the pool, once connected
+         */
+        public Uni<HiveMQProtocolClient> connect() {
+            return connections.get(0).connect();
+        }
+
+        /**
+         * @return all the clients of the pool, once connected, in pool order
+         */
+        public Uni<List<HiveMQProtocolClient>> connectAll() {
+            if (connections.size() == 1) {
+                return connect().map(List::of);
+            }
+            List<Uni<HiveMQProtocolClient>> clients = new ArrayList<>(connections.size());
+            connections.forEach(connection -> clients.add(connection.connect()));
+            return Uni.join().all(clients).andFailFast();
+        }
+
+        /**
+         * @return the number of clients in the pool
+         */
+        public int size() {
+            return connections.size();
+        }
+
+        /**
+         * Subscribes to the topic filter. The publishes of all the subscriptions of a client are received once and
+         * dispatched to the matching subscriptions.
+         * <p>
+         * The subscription is made by one client of the pool, chosen from the filter, so a filter subscribed by several
+         * channels is only received once.
+         *
+         * @param filter the topic filter
+         * @param qos the subscription QoS
+         * @param accept selects, among the publishes matching the filter, the ones to emit
+         * @param onSubscribed called when the broker acknowledged the subscription
+         * @return the publishes matching the filter, acknowledged to the broker on receipt
+         */
+        public Multi<Mqtt5Publish> subscribe(String filter, MqttQos qos, Predicate<Mqtt5Publish> accept,
+                Runnable onSubscribed) {
+            return subscribe(filter, qos, HiveMQDispatcher.AUTOMATIC, onSubscribed)
+                    .onItem().transform(HiveMQProtocolClient.ReceivedPublish::publish)
+                    .select().where(accept);
+        }
+
+        /**
+         * Subscribes to the topic filter, see {@link #subscribe(String, MqttQos, Predicate, Runnable)}.
+         *
+         * @param filter the topic filter
+         * @param qos the subscription QoS
+         * @param delivery how the publishes are delivered, including whether the QoS 1 and 2 publishes are only
+         *        acknowledged to the broker once their {@link HiveMQProtocolClient.ReceivedPublish#acknowledge} is called
+         * @param onSubscribed called when the broker acknowledged the subscription
+         * @return the publishes matching the filter
+         */
+        Multi<HiveMQProtocolClient.ReceivedPublish> subscribe(String filter, MqttQos qos,
+                HiveMQDispatcher.Delivery delivery, Runnable onSubscribed) {
+            return connections.get(Math.floorMod(filter.hashCode(), connections.size()))
+                    .subscribe(filter, qos, delivery, onSubscribed);
+        }
+
+        /**
+         * @return the round trip of the last ping, in milliseconds, or {@code NaN} if unknown
+         */
+        public double getPingRoundTripMillis() {
+            return ping.getRoundTripMillis();
+        }
 
-            connection = Uni.createFrom().future(client.connect().toFuture());
-            connection.subscribe().with(
-                    c -> {
-                        log.info("Mqtt3 connection Ack: " + c.getReturnCode());
-                    },
-                    failure -> {
-                        log.error("Failed to connect to MQTT broker: " + failure.getMessage(), failure);
-                    });
+        /**
+         * @return the number of reconnections of the connections of the client
+         */
+        public long getReconnectCount() {
+            long count = 0;
+            for (HiveMQConnection connection : connections) {
+                count += connection.reconnectCount();
+            }
+            return count;
+        }
 
+        /**
+         * @return the time, in seconds, all the connections of the client have been connected for, {@code 0} if one of
+         *         them is disconnected
+         */
+        public double getUptimeSeconds() {
+            long uptime = Long.MAX_VALUE;
+            for (HiveMQConnection connection : connections) {
+                long nanos = connection.uptimeNanos();
+                if (nanos < 0) {
+                    return 0;
+                }
+                uptime = Math.min(uptime, nanos);
+            }
+            return uptime / 1e9;
         }
 
-        public Uni<Mqtt3RxClient> connect() {
-            return connection
-                    .map(ignored -> client);
+        String getHealthDetail() {
+            double rtt = ping.getRoundTripMillis();
+            return Double.isNaN(rtt) ? "ping round trip unknown" : format("ping round trip %.1f ms", rtt);
         }
 
         public boolean checkLiveness() {
@@ -203,6 +442,15 @@ public class HiveMQClients {
         }
 
         public boolean checkReadiness() {
+            Boolean probed = reachable;
+            if (probed == null) {
+                // the probe is still running
+                return false;
+            }
+            if (!probed && !isConnected()) {
+                return false;
+            }
+
             if (!checkTopicEnabled) {
                 return true;
             }
@@ -210,11 +458,21 @@ public class HiveMQClients {
             return (System.currentTimeMillis() - lastMqttUpdate) < readinessTimeout;
         }
 
-        public void close() {
-            final Mqtt3BlockingClient mqtt3BlockingClient = client.toBlocking();
-            if (mqtt3BlockingClient.getState().isConnected()) {
-                mqtt3BlockingClient.disconnect();
+        /**
+         * @return whether every client of the pool is connected
+         */
+        public boolean isConnected() {
+            for (HiveMQConnection connection : connections) {
+                if (!connection.isConnected()) {
+                    return false;
+                }
             }
+            return true;
+        }
+
+        public void close() {
+            ping.stop();
+            connections.forEach(HiveMQConnection::close);
         }
     }
 }
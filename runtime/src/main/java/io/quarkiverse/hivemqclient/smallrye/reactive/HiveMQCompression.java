@@ -0,0 +1,284 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import static io.smallrye.reactive.messaging.mqtt.i18n.MqttLogging.log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.compression.Snappy;
+
+/**
+ * Compresses the payloads of outgoing publishes, and detects and decompresses the payloads of incoming ones.
+ * <p>
+ * A compressed payload is prefixed with a marker:
+ *
+ * <pre>
+ * int magic ("HMQZ") | byte codec | compressed bytes
+ * </pre>
+ *
+ * A payload is only compressed when it is at least as large as the threshold and when compression makes it smaller,
+ * so a channel carries both compressed and plain payloads.
+ * <p>
+ * Decompression is bounded by a maximum size, checked before the decompressed payload is allocated for Snappy, whose
+ * blocks start with their length, and while inflating for gzip and deflate, so a small payload cannot make the
+ * receiver allocate an arbitrary amount of memory.
+ */
+final class HiveMQCompression {
+
+    static final int HEADER_SIZE = Integer.BYTES + 1;
+    private static final int MAGIC = 0x484D515A;
+
+    /**
+     * The compression algorithms. The codes are part of the marker and must not change.
+     */
+    enum Codec {
+        NONE(0),
+        GZIP(1),
+        DEFLATE(2),
+        /**
+         * The Snappy block format, much faster than the others at a lower compression ratio.
+         */
+        SNAPPY(3);
+
+        private final byte code;
+
+        Codec(int code) {
+            this.code = (byte) code;
+        }
+
+        static Codec from(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown compression codec " + value
+                        + ", use none, gzip, deflate or snappy", e);
+            }
+        }
+
+        private static Codec of(byte code) {
+            for (Codec codec : values()) {
+                if (codec.code == code && codec != NONE) {
+                    return codec;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final Codec codec;
+    private final int threshold;
+
+    /**
+     * @param codec the codec of the outgoing payloads, not {@link Codec#NONE}
+     * @param threshold the size, in bytes, from which payloads are compressed
+     */
+    HiveMQCompression(Codec codec, int threshold) {
+        if (codec == Codec.NONE) {
+            throw new IllegalArgumentException("A compression codec is required");
+        }
+        this.codec = codec;
+        this.threshold = Math.max(0, threshold);
+    }
+
+    /**
+     * @param payload the payload, left unchanged
+     * @return the marked compressed payload, or the payload itself if it is below the threshold or does not compress
+     */
+    ByteBuffer compress(ByteBuffer payload) {
+        int size = payload.remaining();
+        if (size < threshold) {
+            return payload;
+        }
+        byte[] compressed = codec == Codec.SNAPPY ? snappy(payload) : deflate(payload);
+        if (compressed.length >= size) {
+            return payload;
+        }
+        ByteBuffer marked = ByteBuffer.wrap(compressed);
+        marked.putInt(MAGIC).put(codec.code).rewind();
+        return marked;
+    }
+
+    /**
+     * @param payload the payload, left unchanged
+     * @param maxSize the largest decompressed payload, in bytes
+     * @return the decompressed payload, or {@code null} if the payload is not compressed
+     * @throws TooLargeException if the payload decompresses to more than {@code maxSize} bytes
+     */
+    static ByteBuffer decompress(ByteBuffer payload, int maxSize) {
+        if (payload.remaining() < HEADER_SIZE || payload.getInt(payload.position()) != MAGIC) {
+            return null;
+        }
+        Codec codec = Codec.of(payload.get(payload.position() + Integer.BYTES));
+        if (codec == null) {
+            return null;
+        }
+        ByteBuffer compressed = payload.duplicate().position(payload.position() + HEADER_SIZE);
+        try {
+            return codec == Codec.SNAPPY ? unsnappy(compressed, maxSize) : inflate(codec, compressed, maxSize);
+        } catch (TooLargeException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            // a plain payload may start with the marker
+            log.debug("Unable to decompress a payload marked as " + codec + ", delivering it as is: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @param publish the publish
+     * @param maxSize the largest decompressed payload, in bytes
+     * @return the publish with its payload decompressed, or the publish itself if its payload is not compressed
+     * @throws TooLargeException if the payload decompresses to more than {@code maxSize} bytes
+     */
+    static Mqtt5Publish decompress(Mqtt5Publish publish, int maxSize) {
+        ByteBuffer payload = publish.getPayload().map(p -> decompress(p, maxSize)).orElse(null);
+        return payload == null ? publish : publish.extend().payload(payload).build();
+    }
+
+    private byte[] deflate(ByteBuffer payload) {
+        Output output = new Output(payload.remaining() / 2 + HEADER_SIZE);
+        try (OutputStream stream = codec == Codec.GZIP ? new GZIPOutputStream(output) : new DeflaterOutputStream(output)) {
+            ByteBuffer source = payload.duplicate();
+            if (source.hasArray()) {
+                stream.write(source.array(), source.arrayOffset() + source.position(), source.remaining());
+            } else {
+                byte[] chunk = new byte[Math.min(source.remaining(), 8192)];
+                while (source.hasRemaining()) {
+                    int length = Math.min(chunk.length, source.remaining());
+                    source.get(chunk, 0, length);
+                    stream.write(chunk, 0, length);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return output.toByteArray();
+    }
+
+    private static ByteBuffer inflate(Codec codec, ByteBuffer compressed, int maxSize) throws IOException {
+        try (InputStream stream = codec == Codec.GZIP ? new GZIPInputStream(new Input(compressed))
+                : new InflaterInputStream(new Input(compressed))) {
+            // grows as the payload inflates, up to the limit
+            byte[] bytes = stream.readNBytes(maxSize);
+            if (stream.read() >= 0) {
+                throw new TooLargeException(maxSize);
+            }
+            return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        }
+    }
+
+    private static byte[] snappy(ByteBuffer payload) {
+        ByteBuf in = Unpooled.wrappedBuffer(payload.duplicate());
+        ByteBuf out = Unpooled.buffer(HEADER_SIZE + payload.remaining() / 2 + 16);
+        try {
+            out.writerIndex(HEADER_SIZE);
+            new Snappy().encode(in, out, in.readableBytes());
+            byte[] bytes = new byte[out.readableBytes()];
+            out.getBytes(0, bytes);
+            return bytes;
+        } finally {
+            out.release();
+        }
+    }
+
+    private static ByteBuffer unsnappy(ByteBuffer compressed, int maxSize) throws IOException {
+        int length = preamble(compressed.duplicate());
+        if (length > maxSize) {
+            throw new TooLargeException(maxSize);
+        }
+        ByteBuf in = Unpooled.wrappedBuffer(compressed);
+        ByteBuf out = Unpooled.buffer(length, length);
+        try {
+            new Snappy().decode(in, out);
+            if (in.isReadable() || out.readableBytes() != length) {
+                throw new IOException("Malformed Snappy payload");
+            }
+            byte[] bytes = new byte[length];
+            out.readBytes(bytes);
+            return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        } finally {
+            out.release();
+        }
+    }
+
+    /**
+     * Reads the uncompressed length a Snappy block starts with, a little-endian varint.
+     */
+    private static int preamble(ByteBuffer buffer) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32 && buffer.hasRemaining(); shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new IOException("Malformed Snappy preamble");
+    }
+
+    /**
+     * Thrown when a compressed payload decompresses to more than the maximum size, it is not delivered.
+     */
+    static final class TooLargeException extends IllegalStateException {
+
+        private TooLargeException(int maxSize) {
+            super("The decompressed payload exceeds " + maxSize + " bytes, see decompress-max-bytes");
+        }
+    }
+
+    /**
+     * A byte array output stream leaving room for the marker, whose buffer is returned without a copy when full.
+     */
+    private static final class Output extends ByteArrayOutputStream {
+
+        private Output(int capacity) {
+            super(capacity);
+            count = HEADER_SIZE;
+        }
+
+        @Override
+        public synchronized byte[] toByteArray() {
+            return count == buf.length ? buf : super.toByteArray();
+        }
+    }
+
+    private static final class Input extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private Input(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int read = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, read);
+            return read;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import static io.smallrye.reactive.messaging.mqtt.i18n.MqttLogging.log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import com.hivemq.client.mqtt.MqttClientState;
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+
+import io.quarkiverse.hivemqclient.smallrye.reactive.HiveMQProtocolClient.ReceivedPublish;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+
+/**
+ * One physical connection of a {@link HiveMQClients.ClientHolder}: a client, connected once, and the dispatcher of the
+ * publishes it receives.
+ */
+class HiveMQConnection {
+
+    private final HiveMQProtocolClient client;
+    private final Uni<String> connection;
+    private final HiveMQDispatcher dispatcher;
+    private final AtomicLong connections = new AtomicLong();
+    private volatile long connectedAt;
+
+    /**
+     * @param clientFactory creates the client, given the listener to call each time it connected
+     * @param persistentSession whether the client resumes its session, in which case the broker may deliver publishes
+     *        before the channels subscribed
+     * @param onConnected called each time the client connected, including reconnections
+     */
+    HiveMQConnection(Function<Runnable, HiveMQProtocolClient> clientFactory, boolean persistentSession,
+            Runnable onConnected) {
+        this.dispatcher = new HiveMQDispatcher(persistentSession);
+        this.client = clientFactory.apply(() -> {
+            connectedAt = System.nanoTime();
+            connections.incrementAndGet();
+            dispatcher.connected();
+            onConnected.run();
+        });
+
+        dispatcher.start(client);
+        connection = client.connect().memoize().indefinitely();
+        connection.subscribe().with(
+                reasonCode -> {
+                    log.info("Mqtt" + client.protocolVersion() + " connection Ack: " + reasonCode);
+                },
+                failure -> {
+                    log.error("Failed to connect to MQTT broker: " + failure.getMessage(), failure);
+                });
+    }
+
+    Uni<HiveMQProtocolClient> connect() {
+        return connection
+                .map(ignored -> client);
+    }
+
+    Multi<ReceivedPublish> subscribe(String filter, MqttQos qos, HiveMQDispatcher.Delivery delivery,
+            Runnable onSubscribed) {
+        return connect()
+                .onItem().transformToMulti(c -> dispatcher.subscribe(c, filter, qos, delivery, onSubscribed));
+    }
+
+    boolean isConnected() {
+        return client.getState().isConnected();
+    }
+
+    /**
+     * @return the number of times the client connected again after its first connection
+     */
+    long reconnectCount() {
+        return Math.max(0, connections.get() - 1);
+    }
+
+    /**
+     * @return the time since the client last connected, in nanoseconds, or {@code -1} if it is not connected
+     */
+    long uptimeNanos() {
+        return isConnected() && connections.get() > 0 ? System.nanoTime() - connectedAt : -1;
+    }
+
+    void close() {
+        if (client.getState() != MqttClientState.DISCONNECTED) {
+            // also cancels a pending reconnection
+            client.disconnect()
+                    .onFailure().recoverWithNull()
+                    .await().indefinitely();
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import static io.smallrye.reactive.messaging.mqtt.i18n.MqttLogging.log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import io.quarkiverse.hivemqclient.smallrye.reactive.HiveMQProtocolClient.ReceivedPublish;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.subscription.BackPressureStrategy;
+import io.smallrye.mutiny.subscription.MultiEmitter;
+
+/**
+ * Receives the publishes of a client once, from a single {@link HiveMQProtocolClient#publishes()} flow, and routes each
+ * of them to the channels whose topic filter matches.
+ * <p>
+ * The channel filters are indexed in a {@link HiveMQTopicMatcher}, so the cost of a publish depends on the number of
+ * matching channels and not on the number of channels sharing the client.
+ * <p>
+ * The copies of a channel spread over lanes ({@link Lane}) are routed as a single channel: the lane of a publish is
+ * computed once, from its topic, and the publish is emitted to the copy of that lane only.
+ * <p>
+ * Shared subscriptions ({@code $share/<group>/<filter>}) are routed on their underlying filter, as the broker delivers
+ * the publishes with their actual topic.
+ * <p>
+ * When a persistent session is resumed, the broker delivers the messages queued for the subscriptions of the session
+ * right after the connection, before the channels subscribed again. With a persistent session, those publishes are
+ * kept, up to {@link #UNROUTED_CAPACITY}, and emitted to the first channel subscribing to a matching filter.
+ * <p>
+ * The client is unsubscribed from a filter once the last channel subscribed to it terminated, unless the session is
+ * persistent.
+ * <p>
+ * The QoS 1 and 2 publishes are acknowledged to the broker, in order, once every channel subscribed with manual
+ * acknowledgement it was emitted to acknowledged it, or as soon as they are emitted when no such channel matches. The
+ * publishes kept for a channel to subscribe are acknowledged out of order, as they would otherwise hold back the others
+ * until then.
+ * <p>
+ * Each channel buffers up to {@link Delivery#bufferSize} publishes it did not request yet. A publish that does not fit
+ * is acknowledged, so it does not hold back the others, and either dropped or failing the channel, according to
+ * {@link Delivery#overflow}. The publishes still buffered when a channel is cancelled or fails are acknowledged too.
+ */
+class HiveMQDispatcher {
+
+    private static final String SHARED_SUBSCRIPTION_PREFIX = "$share/";
+    static final int UNROUTED_CAPACITY = 10_000;
+    static final int DEFAULT_BUFFER_SIZE = 10_000;
+
+    /**
+     * Delivery of the publishes of the internal subscriptions: acknowledged on receipt, dropped if not consumed.
+     */
+    static final Delivery AUTOMATIC = new Delivery(false, DEFAULT_BUFFER_SIZE, Overflow.DROP_NEWEST);
+
+    /**
+     * What to do with a publish that does not fit in the buffer of a channel.
+     */
+    enum Overflow {
+        /**
+         * Drop the new publish, the buffered ones are kept.
+         */
+        DROP_NEWEST,
+        /**
+         * Drop the new publish and fail the channel, once it consumed the buffered publishes.
+         */
+        FAIL;
+
+        static Overflow from(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown buffer overflow policy " + value + ", use drop-newest or fail",
+                        e);
+            }
+        }
+    }
+
+    /**
+     * How the publishes are delivered to a channel.
+     *
+     * @param manualAcknowledgement whether the publishes are only acknowledged to the broker once their
+     *        {@link ReceivedPublish#acknowledge} is called, otherwise it does nothing
+     * @param bufferSize the number of publishes buffered until the channel requests them
+     * @param overflow what to do with a publish that does not fit in the buffer
+     * @param lane the lane of the channel, or {@code null} if the channel is not spread over lanes
+     */
+    record Delivery(boolean manualAcknowledgement, int bufferSize, Overflow overflow, Lane lane) {
+
+        Delivery {
+            if (bufferSize < 1) {
+                throw new IllegalArgumentException("The buffer size must be positive, got " + bufferSize);
+            }
+        }
+
+        Delivery(boolean manualAcknowledgement, int bufferSize, Overflow overflow) {
+            this(manualAcknowledgement, bufferSize, overflow, null);
+        }
+    }
+
+    /**
+     * A copy of a channel spread over lanes, receiving the publishes whose topic falls in its lane.
+     *
+     * @param channel the name of the channel the copies share
+     * @param lanes how the topics are spread over the lanes, the same for all the copies
+     * @param index the lane of the copy, between {@code 0} and {@code lanes.lanes() - 1}
+     */
+    record Lane(String channel, HiveMQTopicLanes lanes, int index) {
+
+        Lane {
+            if (index < 0 || index >= lanes.lanes()) {
+                throw new IllegalArgumentException("The lane must be between 0 and " + (lanes.lanes() - 1) + ", got "
+                        + index);
+            }
+        }
+    }
+
+    private final HiveMQTopicMatcher<Route> routes = new HiveMQTopicMatcher<>();
+    private final HiveMQAcknowledgements acknowledgements = new HiveMQAcknowledgements();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final boolean persistentSession;
+    // guarded by this, together with the additions of routes
+    private final Deque<Unrouted> unrouted = new ArrayDeque<>();
+    // guarded by this, by channel name
+    private final Map<String, LaneGroup> laneGroups = new HashMap<>();
+    // guarded by this, the number of channels subscribed to each filter
+    private final Map<String, Integer> subscriptions = new HashMap<>();
+
+    /**
+     * @param persistentSession whether the client resumes its session: the publishes matching no subscription are kept
+     *        until a channel subscribes to them, and the subscriptions are kept once their channels terminated
+     */
+    HiveMQDispatcher(boolean persistentSession) {
+        this.persistentSession = persistentSession;
+    }
+
+    /**
+     * Subscribes the client to the topic filter and returns the publishes matching it.
+     *
+     * @param client the connected client
+     * @param filter the topic filter
+     * @param qos the subscription QoS
+     * @param delivery how the publishes are delivered
+     * @param onSubscribed called when the broker acknowledged the subscription
+     * @return the publishes matching the filter, buffered until requested
+     */
+    Multi<ReceivedPublish> subscribe(HiveMQProtocolClient client, String filter, MqttQos qos,
+            Delivery delivery, Runnable onSubscribed) {
+        start(client);
+        return Multi.createFrom().deferred(() -> {
+            // the publishes emitted and not delivered downstream yet
+            AtomicInteger buffered = new AtomicInteger();
+            // with manual acknowledgement, the same publishes, acknowledged if the channel terminates before
+            // consuming them
+            Queue<ReceivedPublish> unconsumed = new ConcurrentLinkedQueue<>();
+            AtomicBoolean terminated = new AtomicBoolean();
+            return Multi.createFrom().<ReceivedPublish> emitter(emitter -> {
+                Consumer<ReceivedPublish> channel = received -> {
+                    if (buffered.incrementAndGet() > delivery.bufferSize()) {
+                        buffered.decrementAndGet();
+                        overflow(filter, delivery, emitter, received);
+                        return;
+                    }
+                    if (!delivery.manualAcknowledgement()) {
+                        emitter.emit(received);
+                        return;
+                    }
+                    unconsumed.add(received);
+                    emitter.emit(received);
+                    // emitted while the channel terminated, the emitter dropped it
+                    if (terminated.get() && unconsumed.remove(received)) {
+                        received.acknowledge().run();
+                    }
+                };
+                Runnable unregister = register(client, filter, delivery, channel);
+                emitter.onTermination(() -> {
+                    terminated.set(true);
+                    unregister.run();
+                    // given up, they must not hold back the acknowledgement of the next publishes
+                    ReceivedPublish dropped;
+                    while ((dropped = unconsumed.poll()) != null) {
+                        dropped.acknowledge().run();
+                    }
+                });
+                client.subscribe(filter, qos)
+                        .subscribe().with(ignored -> onSubscribed.run(), emitter::fail);
+            }, BackPressureStrategy.BUFFER)
+                    .onItem().invoke(received -> {
+                        buffered.decrementAndGet();
+                        unconsumed.remove(received);
+                    });
+        });
+    }
+
+    /**
+     * Routes the publishes matching the filter to the channel, starting with the unrouted ones.
+     *
+     * @param filter the topic filter the channel subscribes to, possibly a shared subscription
+     * @return unregisters the channel, and unsubscribes the client from the filter if it was its last channel
+     */
+    private synchronized Runnable register(HiveMQProtocolClient client, String filter, Delivery delivery,
+            Consumer<ReceivedPublish> channel) {
+        subscriptions.merge(filter, 1, Integer::sum);
+        String routed = routedFilter(filter);
+        boolean manual = delivery.manualAcknowledgement();
+        Lane lane = delivery.lane();
+        if (lane == null) {
+            Route route = new Route(manual, (topic, received) -> channel.accept(received));
+            routes.add(routed, route);
+            drainUnrouted(routed, topic -> true, manual, channel);
+            return () -> unregister(client, filter, () -> routes.remove(routed, route));
+        }
+        LaneGroup group = laneGroups.computeIfAbsent(lane.channel(), ignored -> {
+            LaneGroup created = new LaneGroup(routed, manual, lane.lanes());
+            routes.add(routed, created.route);
+            return created;
+        });
+        group.copies.set(lane.index(), channel);
+        drainUnrouted(routed, topic -> lane.lanes().laneOf(topic) == lane.index(), manual, channel);
+        return () -> unregister(client, filter, () -> {
+            group.copies.set(lane.index(), null);
+            if (group.isEmpty()) {
+                routes.remove(group.filter, group.route);
+                laneGroups.remove(lane.channel(), group);
+            }
+        });
+    }
+
+    /**
+     * Removes the route of a channel, and unsubscribes the client from the filter once no channel subscribes to it.
+     * With a persistent session, the subscription is kept: the broker queues its publishes until the session is resumed.
+     * <p>
+     * The unsubscription is sent with the lock held, so it precedes the subscription of a channel registered after it.
+     */
+    private synchronized void unregister(HiveMQProtocolClient client, String filter, Runnable removeRoute) {
+        removeRoute.run();
+        if (subscriptions.merge(filter, -1, Integer::sum) > 0) {
+            return;
+        }
+        subscriptions.remove(filter);
+        if (!persistentSession && client.getState().isConnected()) {
+            client.unsubscribe(filter)
+                    .subscribe().with(ignored -> {
+                    }, failure -> log.debug("Unable to unsubscribe from " + filter + ": " + failure.getMessage()));
+        }
+    }
+
+    private static void overflow(String filter, Delivery delivery, MultiEmitter<? super ReceivedPublish> emitter,
+            ReceivedPublish received) {
+        // given up, it must not hold back the acknowledgement of the next publishes
+        received.acknowledge().run();
+        if (delivery.overflow() == Overflow.FAIL) {
+            emitter.fail(new IllegalStateException("The buffer of the subscription to " + filter + " is full, "
+                    + delivery.bufferSize() + " messages are waiting to be consumed"));
+        } else {
+            log.warn("Dropping the publish received on " + received.publish().getTopic() + ", the buffer of the "
+                    + "subscription to " + filter + " is full");
+        }
+    }
+
+    /**
+     * Starts receiving the publishes of the client. Call it before connecting the client so that the publishes of a
+     * resumed session are not missed.
+     *
+     * @param client the client
+     */
+    void start(HiveMQProtocolClient client) {
+        if (started.compareAndSet(false, true)) {
+            client.publishes()
+                    .subscribe(this::dispatch, log::unableToConnectToBroker);
+        }
+    }
+
+    /**
+     * Stops holding back the acknowledgements of the publishes received before, called each time the client connected.
+     */
+    void connected() {
+        acknowledgements.reset();
+    }
+
+    void dispatch(ReceivedPublish received) {
+        // converted once, the routes, the lanes, the unrouted publishes and the messages are given this string
+        String topic = received.publish().getTopic().toString();
+        if (!persistentSession || routes.matches(topic)) {
+            route(topic, received);
+            return;
+        }
+        synchronized (this) {
+            // a channel may have subscribed in the meantime
+            if (routes.matches(topic)) {
+                route(topic, received);
+                return;
+            }
+            if (unrouted.size() == UNROUTED_CAPACITY) {
+                Unrouted dropped = unrouted.poll();
+                dropped.received().acknowledge().run();
+                log.warn("Dropping the unrouted publish received on " + dropped.topic() + ", no channel subscribed to it");
+            }
+            unrouted.add(new Unrouted(topic, received));
+        }
+    }
+
+    private void route(String topic, ReceivedPublish received) {
+        Mqtt5Publish publish = received.publish();
+        List<Route> matching = new ArrayList<>(1);
+        routes.forEachMatch(topic, matching::add);
+        Runnable acknowledge = acknowledgements.register(received);
+        int manual = 0;
+        for (Route route : matching) {
+            if (route.manualAcknowledgement()) {
+                manual++;
+            }
+        }
+        Runnable shared = HiveMQAcknowledgements.countDown(acknowledge, manual);
+        ReceivedPublish acknowledged = manual == matching.size() ? null
+                : new ReceivedPublish(publish, HiveMQAcknowledgements.NONE, topic);
+        for (Route route : matching) {
+            route.emit().accept(topic,
+                    route.manualAcknowledgement() ? new ReceivedPublish(publish, shared, topic) : acknowledged);
+        }
+        if (manual == 0) {
+            acknowledge.run();
+        }
+    }
+
+    /**
+     * @param accept selects, from their topic, the publishes matching the filter to emit to the channel
+     */
+    private void drainUnrouted(String filter, Predicate<String> accept, boolean manual,
+            Consumer<ReceivedPublish> channel) {
+        if (unrouted.isEmpty()) {
+            return;
+        }
+        HiveMQTopicMatcher<String> matcher = HiveMQTopicMatcher.of(filter);
+        for (Iterator<Unrouted> it = unrouted.iterator(); it.hasNext();) {
+            Unrouted next = it.next();
+            if (matcher.matches(next.topic()) && accept.test(next.topic())) {
+                it.remove();
+                ReceivedPublish received = next.received();
+                Mqtt5Publish publish = received.publish();
+                if (manual) {
+                    channel.accept(new ReceivedPublish(publish, received.acknowledge(), next.topic()));
+                } else {
+                    channel.accept(new ReceivedPublish(publish, HiveMQAcknowledgements.NONE, next.topic()));
+                    received.acknowledge().run();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of received publishes whose acknowledgement is pending or held back
+     */
+    int pendingAcknowledgements() {
+        return acknowledgements.pendingCount();
+    }
+
+    /**
+     * @return the number of publishes waiting for a channel to subscribe to them
+     */
+    synchronized int unroutedCount() {
+        return unrouted.size();
+    }
+
+    /**
+     * @param filter the topic filter, possibly a shared subscription
+     * @return the filter the delivered topics match
+     */
+    static String routedFilter(String filter) {
+        if (!filter.startsWith(SHARED_SUBSCRIPTION_PREFIX)) {
+            return filter;
+        }
+        int separator = filter.indexOf('/', SHARED_SUBSCRIPTION_PREFIX.length());
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid shared subscription " + filter + ", expected $share/<group>/<filter>");
+        }
+        return filter.substring(separator + 1);
+    }
+
+    /**
+     * A publish kept for a channel to subscribe, with its topic computed when it was received.
+     */
+    private record Unrouted(String topic, ReceivedPublish received) {
+    }
+
+    /**
+     * @param emit emits a publish, given with its topic, to the channel
+     */
+    private record Route(boolean manualAcknowledgement, BiConsumer<String, ReceivedPublish> emit) {
+    }
+
+    /**
+     * The copies of a channel spread over lanes, routed as one channel.
+     */
+    private static final class LaneGroup {
+
+        private final String filter;
+        private final HiveMQTopicLanes lanes;
+        private final AtomicReferenceArray<Consumer<ReceivedPublish>> copies;
+        private final Route route;
+
+        private LaneGroup(String filter, boolean manualAcknowledgement, HiveMQTopicLanes lanes) {
+            this.filter = filter;
+            this.lanes = lanes;
+            this.copies = new AtomicReferenceArray<>(lanes.lanes());
+            this.route = new Route(manualAcknowledgement, this::emit);
+        }
+
+        private void emit(String topic, ReceivedPublish received) {
+            Consumer<ReceivedPublish> copy = copies.get(lanes.laneOf(topic));
+            if (copy != null) {
+                copy.accept(received);
+            } else {
+                // the copy of the lane is not subscribed, nothing consumes the publish
+                received.acknowledge().run();
+            }
+        }
+
+        private boolean isEmpty() {
+            for (int i = 0; i < copies.length(); i++) {
+                if (copies.get(i) != null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.Tag;
+import org.eclipse.microprofile.metrics.Timer;
+
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+/**
+ * The meters of a channel, tagged with its name.
+ * <p>
+ * They are registered in the Micrometer registry when Micrometer is present, see {@link HiveMQMicrometer}, otherwise in
+ * the MicroProfile Metrics registry. Without registry, the meters are not created and recording does nothing.
+ */
+final class HiveMQMetrics {
+
+    static final String PUBLISHES_SENT = "hivemq.publishes.sent";
+    static final String BYTES_SENT = "hivemq.bytes.sent";
+    static final String PUBLISH_LATENCY = "hivemq.publish.latency";
+    static final String PUBLISHES_IN_FLIGHT = "hivemq.publishes.inflight";
+    static final String MESSAGES_FAILED = "hivemq.messages.failed";
+    static final String PUBLISHES_RECEIVED = "hivemq.publishes.received";
+    static final String BYTES_RECEIVED = "hivemq.bytes.received";
+    static final String MESSAGES_NACKED = "hivemq.messages.nacked";
+    static final String END_TO_END_LATENCY = "hivemq.end.to.end.latency";
+
+    /**
+     * Whether Micrometer is on the class path, checked before loading {@link HiveMQMicrometer}.
+     */
+    static final boolean MICROMETER_PRESENT = isPresent("io.micrometer.core.instrument.MeterRegistry");
+
+    static final HiveMQMetrics DISABLED = new HiveMQMetrics(null, null, null, null, null);
+
+    /**
+     * The registry the meters are created in.
+     */
+    interface Registry {
+
+        /**
+         * @param unit the unit of the counted amounts, one of {@link MetricUnits}
+         * @return increments the counter by the given amount
+         */
+        LongConsumer counter(String name, String description, String unit, Tag tag);
+
+        /**
+         * The timers publish a histogram of their durations, so that their percentiles can be computed.
+         *
+         * @return records a duration, in nanoseconds
+         */
+        LongConsumer timer(String name, String description, Tag tag);
+
+        /**
+         * @param unit the unit of the value, one of {@link MetricUnits}
+         * @param value the current value of the gauge
+         */
+        void gauge(String name, String description, String unit, Supplier<? extends Number> value, Tag tag);
+    }
+
+    private final LongConsumer publishes;
+    private final LongConsumer bytes;
+    private final LongConsumer failures;
+    private final LongConsumer latency;
+    private final LongConsumer endToEndLatency;
+
+    private HiveMQMetrics(LongConsumer publishes, LongConsumer bytes, LongConsumer failures, LongConsumer latency,
+            LongConsumer endToEndLatency) {
+        this.publishes = publishes;
+        this.bytes = bytes;
+        this.failures = failures;
+        this.latency = latency;
+        this.endToEndLatency = endToEndLatency;
+    }
+
+    /**
+     * @param registry the registry, or {@code null} to disable the metrics
+     * @param channel the name of the outgoing channel
+     * @param inFlight the number of publishes awaiting their acknowledgement
+     * @return the meters of the outgoing channel
+     */
+    static HiveMQMetrics outgoing(Registry registry, String channel, Supplier<Integer> inFlight) {
+        if (registry == null) {
+            return DISABLED;
+        }
+        Tag tag = new Tag("channel", channel);
+        registry.gauge(PUBLISHES_IN_FLIGHT, "Publishes sent and not acknowledged by the broker yet", MetricUnits.NONE,
+                inFlight, tag);
+        return new HiveMQMetrics(
+                registry.counter(PUBLISHES_SENT, "Publishes acknowledged by the broker", MetricUnits.NONE, tag),
+                registry.counter(BYTES_SENT, "Payload bytes of the publishes acknowledged by the broker",
+                        MetricUnits.BYTES, tag),
+                registry.counter(MESSAGES_FAILED, "Messages nacked because they could not be sent", MetricUnits.NONE,
+                        tag),
+                registry.timer(PUBLISH_LATENCY, "Time from the send of a publish to its acknowledgement", tag),
+                null);
+    }
+
+    /**
+     * @param registry the registry, or {@code null} to disable the metrics
+     * @param channel the name of the incoming channel
+     * @param endToEnd whether to record the end-to-end latency of the messages stamped with their send time
+     * @return the meters of the incoming channel
+     */
+    static HiveMQMetrics incoming(Registry registry, String channel, boolean endToEnd) {
+        if (registry == null) {
+            return DISABLED;
+        }
+        Tag tag = new Tag("channel", channel);
+        return new HiveMQMetrics(
+                registry.counter(PUBLISHES_RECEIVED, "Publishes received", MetricUnits.NONE, tag),
+                registry.counter(BYTES_RECEIVED, "Payload bytes of the publishes received", MetricUnits.BYTES, tag),
+                registry.counter(MESSAGES_NACKED, "Messages nacked by the application", MetricUnits.NONE, tag),
+                null,
+                endToEnd ? registry.timer(END_TO_END_LATENCY,
+                        "Time from the send of a message by the producer to its delivery to the application", tag)
+                        : null);
+    }
+
+    /**
+     * @param registry the MicroProfile Metrics registry, or {@code null}
+     * @return a registry creating the meters in it, or {@code null} if there is none
+     */
+    static Registry microProfile(MetricRegistry registry) {
+        return registry == null ? null : new MicroProfileRegistry(registry);
+    }
+
+    /**
+     * @return the start time of a publish, to be passed to {@link #sent}
+     */
+    long start() {
+        return latency == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Records a publish acknowledged by the broker.
+     *
+     * @param size the size of its payload
+     * @param start the value returned by {@link #start} when it was sent
+     */
+    void sent(int size, long start) {
+        if (latency != null) {
+            latency.accept(System.nanoTime() - start);
+            publishes.accept(1);
+            bytes.accept(size);
+        }
+    }
+
+    /**
+     * Records a received publish.
+     *
+     * @param size the size of its payload
+     */
+    void received(int size) {
+        if (publishes != null) {
+            publishes.accept(1);
+            bytes.accept(size);
+        }
+    }
+
+    /**
+     * Records the end-to-end latency of a message delivered to the application, if it is stamped with its send time.
+     * The clocks of the producer and the consumer may drift, a negative latency is recorded as zero.
+     *
+     * @param publish the publish of the message
+     */
+    void delivered(Mqtt5Publish publish) {
+        if (endToEndLatency != null) {
+            long sentAt = HiveMQTimestamps.sentAt(publish);
+            if (sentAt >= 0) {
+                endToEndLatency.accept(TimeUnit.MILLISECONDS.toNanos(Math.max(0, System.currentTimeMillis() - sentAt)));
+            }
+        }
+    }
+
+    /**
+     * Records a message nacked, by the sink or the application.
+     */
+    void failed() {
+        if (failures != null) {
+            failures.accept(1);
+        }
+    }
+
+    private static boolean isPresent(String className) {
+        try {
+            Class.forName(className, false, HiveMQMetrics.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static final class MicroProfileRegistry implements Registry {
+
+        private final MetricRegistry registry;
+
+        private MicroProfileRegistry(MetricRegistry registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        public LongConsumer counter(String name, String description, String unit, Tag tag) {
+            Counter counter = registry.counter(metadata(name, description, unit), tag);
+            return counter::inc;
+        }
+
+        @Override
+        public LongConsumer timer(String name, String description, Tag tag) {
+            Timer timer = registry.timer(metadata(name, description, MetricUnits.NANOSECONDS), tag);
+            return nanos -> timer.update(Duration.ofNanos(nanos));
+        }
+
+        @Override
+        public void gauge(String name, String description, String unit, Supplier<? extends Number> value, Tag tag) {
+            registry.gauge(metadata(name, description, unit), value, tag);
+        }
+
+        private static Metadata metadata(String name, String description, String unit) {
+            return Metadata.builder()
+                    .withName(name)
+                    .withDescription(description)
+                    .withUnit(unit)
+                    .build();
+        }
+    }
+}
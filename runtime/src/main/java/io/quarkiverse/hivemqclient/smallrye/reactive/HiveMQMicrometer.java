@@ -0,0 +1,79 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.Tag;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.arc.Arc;
+import io.quarkus.arc.ArcContainer;
+import io.quarkus.arc.InstanceHandle;
+
+/**
+ * Creates the meters in the Micrometer registry of the application, as Quarkus Micrometer exposes it.
+ * <p>
+ * Micrometer is an optional dependency: this class must only be loaded once {@link HiveMQMetrics#MICROMETER_PRESENT}
+ * checked it is on the class path.
+ */
+final class HiveMQMicrometer implements HiveMQMetrics.Registry {
+
+    private final MeterRegistry registry;
+
+    HiveMQMicrometer(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * @return a registry creating the meters in the Micrometer registry of the application, or {@code null} if there
+     *         is none
+     */
+    static HiveMQMetrics.Registry lookup() {
+        ArcContainer container = Arc.container();
+        if (container == null) {
+            return null;
+        }
+        InstanceHandle<MeterRegistry> registry = container.instance(MeterRegistry.class);
+        return registry.isAvailable() ? new HiveMQMicrometer(registry.get()) : null;
+    }
+
+    @Override
+    public LongConsumer counter(String name, String description, String unit, Tag tag) {
+        Counter counter = Counter.builder(name)
+                .description(description)
+                .baseUnit(baseUnit(unit))
+                .tag(tag.getTagName(), tag.getTagValue())
+                .register(registry);
+        return amount -> counter.increment(amount);
+    }
+
+    @Override
+    public LongConsumer timer(String name, String description, Tag tag) {
+        Timer timer = Timer.builder(name)
+                .description(description)
+                .tag(tag.getTagName(), tag.getTagValue())
+                .publishPercentileHistogram()
+                .register(registry);
+        return nanos -> timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void gauge(String name, String description, String unit, Supplier<? extends Number> value, Tag tag) {
+        Gauge.builder(name, value, supplier -> supplier.get().doubleValue())
+                .description(description)
+                .baseUnit(baseUnit(unit))
+                .tag(tag.getTagName(), tag.getTagValue())
+                // the supplier is only referenced by the gauge, a weak reference would let it be collected
+                .strongReference(true)
+                .register(registry);
+    }
+
+    private static String baseUnit(String unit) {
+        return MetricUnits.NONE.equals(unit) ? null : unit;
+    }
+}
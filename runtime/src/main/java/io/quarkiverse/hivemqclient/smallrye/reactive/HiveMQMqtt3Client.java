@@ -0,0 +1,108 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import com.hivemq.client.mqtt.MqttClientState;
+import com.hivemq.client.mqtt.MqttGlobalPublishFilter;
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+import com.hivemq.client.mqtt.mqtt3.Mqtt3RxClient;
+import com.hivemq.client.mqtt.mqtt3.message.connect.Mqtt3Connect;
+import com.hivemq.client.mqtt.mqtt3.message.publish.Mqtt3Publish;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.smallrye.mutiny.Uni;
+
+/**
+ * {@link HiveMQProtocolClient} speaking MQTT 3.1.1.
+ * <p>
+ * The publishes are converted with the public builders of the HiveMQ client, which keep the payload buffer without
+ * copying it. Only the properties known to MQTT 3 are converted: the topic, QoS, retain flag and payload. A publish
+ * result holds a conversion of the publish that was sent, equal to it for those properties.
+ */
+final class HiveMQMqtt3Client implements HiveMQProtocolClient {
+
+    private final Mqtt3RxClient client;
+    private final Mqtt3Connect connect;
+
+    HiveMQMqtt3Client(Mqtt3RxClient client, Mqtt3Connect connect) {
+        this.client = client;
+        this.connect = connect;
+    }
+
+    @Override
+    public int protocolVersion() {
+        return 3;
+    }
+
+    @Override
+    public MqttClientState getState() {
+        return client.getState();
+    }
+
+    @Override
+    public Uni<String> connect() {
+        return toUni(client.connect(connect)).map(connAck -> connAck.getReturnCode().toString());
+    }
+
+    @Override
+    public Uni<Void> disconnect() {
+        return toUni(client.disconnect());
+    }
+
+    @Override
+    public Flowable<ReceivedPublish> publishes() {
+        return client.publishes(MqttGlobalPublishFilter.ALL, true)
+                .map(publish -> new ReceivedPublish(toMqtt5(publish), publish::acknowledge));
+    }
+
+    @Override
+    public Uni<Void> subscribe(String filter, MqttQos qos) {
+        return toUni(client.subscribeWith().topicFilter(filter).qos(qos).applySubscribe()).replaceWithVoid();
+    }
+
+    @Override
+    public Uni<Void> unsubscribe(String filter) {
+        return toUni(client.unsubscribeWith().topicFilter(filter).applyUnsubscribe());
+    }
+
+    @Override
+    public Flowable<PublishResult> publish(Flowable<Mqtt5Publish> publishes) {
+        return client.publish(publishes.map(HiveMQMqtt3Client::toMqtt3))
+                .map(result -> new PublishResult(toMqtt5(result.getPublish()), result.getError().orElse(null)));
+    }
+
+    /**
+     * @return the MQTT 5 publish with the properties of the MQTT 3 one
+     */
+    static Mqtt5Publish toMqtt5(Mqtt3Publish publish) {
+        return Mqtt5Publish.builder()
+                .topic(publish.getTopic())
+                .qos(publish.getQos())
+                .retain(publish.isRetain())
+                .payload(publish.getPayload().orElse(null))
+                .build();
+    }
+
+    /**
+     * The MQTT 5 properties of the publish are dropped.
+     *
+     * @return the MQTT 3 publish with the topic, QoS, retain flag and payload of the MQTT 5 one
+     */
+    static Mqtt3Publish toMqtt3(Mqtt5Publish publish) {
+        return Mqtt3Publish.builder()
+                .topic(publish.getTopic())
+                .qos(publish.getQos())
+                .retain(publish.isRetain())
+                .payload(publish.getPayload().orElse(null))
+                .build();
+    }
+
+    private static <T> Uni<T> toUni(Single<T> single) {
+        return Uni.createFrom().emitter(emitter -> single.subscribe(emitter::complete, emitter::fail));
+    }
+
+    private static Uni<Void> toUni(Completable completable) {
+        return Uni.createFrom().emitter(emitter -> completable.subscribe(() -> emitter.complete(null), emitter::fail));
+    }
+}
@@ -0,0 +1,77 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import com.hivemq.client.mqtt.MqttClientState;
+import com.hivemq.client.mqtt.MqttGlobalPublishFilter;
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+import com.hivemq.client.mqtt.mqtt5.Mqtt5RxClient;
+import com.hivemq.client.mqtt.mqtt5.message.connect.Mqtt5Connect;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.smallrye.mutiny.Uni;
+
+/**
+ * {@link HiveMQProtocolClient} speaking MQTT 5.
+ */
+final class HiveMQMqtt5Client implements HiveMQProtocolClient {
+
+    private final Mqtt5RxClient client;
+    private final Mqtt5Connect connect;
+
+    HiveMQMqtt5Client(Mqtt5RxClient client, Mqtt5Connect connect) {
+        this.client = client;
+        this.connect = connect;
+    }
+
+    @Override
+    public int protocolVersion() {
+        return 5;
+    }
+
+    @Override
+    public MqttClientState getState() {
+        return client.getState();
+    }
+
+    @Override
+    public Uni<String> connect() {
+        return toUni(client.connect(connect)).map(connAck -> connAck.getReasonCode().toString());
+    }
+
+    @Override
+    public Uni<Void> disconnect() {
+        return toUni(client.disconnect());
+    }
+
+    @Override
+    public Flowable<ReceivedPublish> publishes() {
+        return client.publishes(MqttGlobalPublishFilter.ALL, true)
+                .map(publish -> new ReceivedPublish(publish, publish::acknowledge));
+    }
+
+    @Override
+    public Uni<Void> subscribe(String filter, MqttQos qos) {
+        return toUni(client.subscribeWith().topicFilter(filter).qos(qos).applySubscribe()).replaceWithVoid();
+    }
+
+    @Override
+    public Uni<Void> unsubscribe(String filter) {
+        return toUni(client.unsubscribeWith().topicFilter(filter).applyUnsubscribe()).replaceWithVoid();
+    }
+
+    @Override
+    public Flowable<PublishResult> publish(Flowable<Mqtt5Publish> publishes) {
+        return client.publish(publishes)
+                .map(result -> new PublishResult(result.getPublish(), result.getError().orElse(null)));
+    }
+
+    private static <T> Uni<T> toUni(Single<T> single) {
+        return Uni.createFrom().emitter(emitter -> single.subscribe(emitter::complete, emitter::fail));
+    }
+
+    private static Uni<Void> toUni(Completable completable) {
+        return Uni.createFrom().emitter(emitter -> completable.subscribe(() -> emitter.complete(null), emitter::fail));
+    }
+}
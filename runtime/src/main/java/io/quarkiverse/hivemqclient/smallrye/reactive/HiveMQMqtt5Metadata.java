@@ -0,0 +1,107 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+import com.hivemq.client.mqtt.mqtt5.datatypes.Mqtt5UserProperty;
+
+/**
+ * Outgoing message metadata carrying MQTT 5 publish properties. It is ignored by channels using
+ * {@code protocol-version=3}.
+ * <p>
+ * It complements {@link io.smallrye.reactive.messaging.mqtt.SendingMqttMessageMetadata}, which still sets the topic, QoS
+ * and retain flag.
+ */
+public class HiveMQMqtt5Metadata {
+
+    private final Long messageExpiryInterval;
+    private final String contentType;
+    private final String responseTopic;
+    private final ByteBuffer correlationData;
+    private final List<Mqtt5UserProperty> userProperties;
+
+    private HiveMQMqtt5Metadata(Builder builder) {
+        this.messageExpiryInterval = builder.messageExpiryInterval;
+        this.contentType = builder.contentType;
+        this.responseTopic = builder.responseTopic;
+        this.correlationData = builder.correlationData;
+        this.userProperties = List.copyOf(builder.userProperties);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the number of seconds after which the broker discards the message if it was not delivered
+     */
+    public OptionalLong getMessageExpiryInterval() {
+        return messageExpiryInterval == null ? OptionalLong.empty() : OptionalLong.of(messageExpiryInterval);
+    }
+
+    public Optional<String> getContentType() {
+        return Optional.ofNullable(contentType);
+    }
+
+    public Optional<String> getResponseTopic() {
+        return Optional.ofNullable(responseTopic);
+    }
+
+    public Optional<ByteBuffer> getCorrelationData() {
+        return Optional.ofNullable(correlationData).map(ByteBuffer::asReadOnlyBuffer);
+    }
+
+    /**
+     * @return the user properties, in the order they were added; a name may be repeated
+     */
+    public List<Mqtt5UserProperty> getUserProperties() {
+        return userProperties;
+    }
+
+    public static class Builder {
+
+        private Long messageExpiryInterval;
+        private String contentType;
+        private String responseTopic;
+        private ByteBuffer correlationData;
+        private final List<Mqtt5UserProperty> userProperties = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder messageExpiryInterval(long seconds) {
+            this.messageExpiryInterval = seconds;
+            return this;
+        }
+
+        public Builder contentType(String contentType) {
+            this.contentType = contentType;
+            return this;
+        }
+
+        public Builder responseTopic(String responseTopic) {
+            this.responseTopic = responseTopic;
+            return this;
+        }
+
+        public Builder correlationData(byte[] correlationData) {
+            this.correlationData = correlationData == null ? null : ByteBuffer.wrap(correlationData);
+            return this;
+        }
+
+        /**
+         * Adds a user property, after the ones added before. MQTT 5 allows several properties with the same name.
+         */
+        public Builder userProperty(String name, String value) {
+            this.userProperties.add(Mqtt5UserProperty.of(name, value));
+            return this;
+        }
+
+        public HiveMQMqtt5Metadata build() {
+            return new HiveMQMqtt5Metadata(this);
+        }
+    }
+}
@@ -8,39 +8,51 @@ import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Flow;
 
-import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.context.Destroyed;
 import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.inject.Any;
+import jakarta.enterprise.inject.Instance;
 import jakarta.inject.Inject;
 
 import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.Tag;
 import org.eclipse.microprofile.reactive.messaging.Message;
 import org.eclipse.microprofile.reactive.messaging.spi.Connector;
 
+import io.opentelemetry.api.OpenTelemetry;
 import io.smallrye.reactive.messaging.annotations.ConnectorAttribute;
 import io.smallrye.reactive.messaging.connector.InboundConnector;
 import io.smallrye.reactive.messaging.connector.OutboundConnector;
 import io.smallrye.reactive.messaging.health.HealthReport;
 import io.smallrye.reactive.messaging.health.HealthReporter;
-import io.smallrye.reactive.messaging.providers.connectors.ExecutionHolder;
-import io.vertx.mutiny.core.Vertx;
+import io.smallrye.reactive.messaging.providers.helpers.CDIUtils;
 
 @ApplicationScoped
 @Connector(HiveMQMqttConnector.CONNECTOR_NAME)
 @ConnectorAttribute(name = "client-id", type = "string", direction = INCOMING_AND_OUTGOING, description = "Set the client identifier")
 @ConnectorAttribute(name = "auto-generated-client-id", type = "boolean", direction = INCOMING_AND_OUTGOING, description = "Set if the MQTT client must generate clientId automatically", defaultValue = "true")
 @ConnectorAttribute(name = "auto-keep-alive", type = "boolean", direction = INCOMING_AND_OUTGOING, description = "Set if the MQTT client must handle `PINGREQ` automatically", defaultValue = "true")
+@ConnectorAttribute(name = "connections", type = "int", direction = INCOMING_AND_OUTGOING, description = "The number of MQTT connections opened by the client. Outgoing messages are spread over them by topic, subscriptions by topic filter. When greater than 1, the connection index is appended to the `client-id`", defaultValue = "1")
+@ConnectorAttribute(name = "protocol-version", type = "int", direction = INCOMING_AND_OUTGOING, description = "The MQTT protocol version, `3` (MQTT 3.1.1) or `5`", defaultValue = "3")
+@ConnectorAttribute(name = "topic-alias-maximum", type = "int", direction = INCOMING_AND_OUTGOING, description = "The maximum number of topic aliases the client uses to shorten the topics of outgoing publishes, bounded by the broker limit (MQTT 5 only)", defaultValue = "16")
+@ConnectorAttribute(name = "receive-maximum", type = "int", direction = INCOMING_AND_OUTGOING, description = "The maximum number of QoS 1 and QoS 2 publishes the broker may send concurrently before they are acknowledged (MQTT 5 only)", defaultValue = "65535")
 @ConnectorAttribute(name = "ssl", type = "boolean", direction = INCOMING_AND_OUTGOING, description = "Set whether SSL/TLS is enabled", defaultValue = "false")
 @ConnectorAttribute(name = "keep-alive-seconds", type = "int", description = "Set the keep alive timeout in seconds", defaultValue = "30", direction = INCOMING_AND_OUTGOING)
 @ConnectorAttribute(name = "max-inflight-queue", type = "int", direction = INCOMING_AND_OUTGOING, description = "Set max count of unacknowledged messages", defaultValue = "10")
-@ConnectorAttribute(name = "auto-clean-session", type = "boolean", direction = INCOMING_AND_OUTGOING, description = "Set to start with a clean session (`true` by default)", defaultValue = "true")
+@ConnectorAttribute(name = "auto-clean-session", type = "boolean", direction = INCOMING_AND_OUTGOING, description = "Set to start with a clean session (`true` by default). Set to `false` to resume the session of the `client-id`, and receive the messages queued while disconnected", defaultValue = "true")
+@ConnectorAttribute(name = "session-expiry-interval", type = "long", direction = INCOMING_AND_OUTGOING, description = "Set the number of seconds the broker keeps the session after the client disconnected, MQTT 5 only. Defaults to no expiry when `auto-clean-session` is `false`, and to 0 otherwise")
 @ConnectorAttribute(name = "will-flag", type = "boolean", direction = INCOMING_AND_OUTGOING, description = "Set if will information are provided on connection", defaultValue = "false")
 @ConnectorAttribute(name = "will-retain", type = "boolean", direction = INCOMING_AND_OUTGOING, description = "Set if the will message must be retained", defaultValue = "false")
 @ConnectorAttribute(name = "will-qos", type = "int", direction = INCOMING_AND_OUTGOING, description = "Set the QoS level for the will message", defaultValue = "0")
-@ConnectorAttribute(name = "max-message-size", type = "int", direction = INCOMING_AND_OUTGOING, description = "Set max MQTT message size in bytes", defaultValue = "8092")
-@ConnectorAttribute(name = "reconnect-attempts", type = "int", direction = INCOMING_AND_OUTGOING, description = "Set the max reconnect attempts", defaultValue = "5")
-@ConnectorAttribute(name = "reconnect-interval-seconds", type = "int", direction = INCOMING_AND_OUTGOING, description = "Set the reconnect interval in seconds", defaultValue = "1")
+@ConnectorAttribute(name = "will-topic", type = "string", direction = INCOMING_AND_OUTGOING, description = "Set the topic of the will message, required when `will-flag` is set")
+@ConnectorAttribute(name = "will-message", type = "string", direction = INCOMING_AND_OUTGOING, description = "Set the payload of the will message, empty by default")
+@ConnectorAttribute(name = "max-message-size", type = "int", direction = INCOMING_AND_OUTGOING, description = "Set max size in bytes of the MQTT packets the broker may send, MQTT 5 only. Unlimited by default")
+@ConnectorAttribute(name = "reconnect-attempts", type = "int", direction = INCOMING_AND_OUTGOING, description = "Set the max reconnect attempts after a connection loss, `-1` for no limit", defaultValue = "-1")
+@ConnectorAttribute(name = "reconnect-interval-seconds", type = "int", direction = INCOMING_AND_OUTGOING, description = "Set the reconnect interval in seconds. The interval doubles at each attempt, and the actual delay is drawn randomly below it", defaultValue = "1")
+@ConnectorAttribute(name = "reconnect-max-delay-seconds", type = "int", direction = INCOMING_AND_OUTGOING, description = "Set the maximum reconnect interval in seconds", defaultValue = "120")
 @ConnectorAttribute(name = "username", type = "string", direction = INCOMING_AND_OUTGOING, description = "Set the username to connect to the server")
 @ConnectorAttribute(name = "password", type = "string", direction = INCOMING_AND_OUTGOING, description = "Set the password to connect to the server")
 @ConnectorAttribute(name = "connect-timeout-seconds", type = "int", direction = INCOMING_AND_OUTGOING, description = "Set the connect timeout (in seconds)", defaultValue = "60")
@@ -51,8 +63,33 @@ import io.vertx.mutiny.core.Vertx;
 @ConnectorAttribute(name = "topic", type = "string", direction = INCOMING_AND_OUTGOING, description = "Set the MQTT topic. If not set, the channel name is used")
 @ConnectorAttribute(name = "qos", type = "int", defaultValue = "0", direction = INCOMING_AND_OUTGOING, description = "Set the QoS level when subscribing to the topic or when sending a message")
 @ConnectorAttribute(name = "broadcast", description = "Whether or not the messages should be dispatched to multiple consumers", type = "boolean", direction = INCOMING, defaultValue = "false")
+@ConnectorAttribute(name = "concurrency", type = "int", direction = INCOMING, description = "The number of lanes processing the messages of the channel concurrently. Messages are assigned to a lane by topic, so the messages of a topic are processed in order", defaultValue = "1")
+@ConnectorAttribute(name = "concurrency-topic-level", type = "int", direction = INCOMING, description = "The index (starting at 0) of the topic level used to assign messages to a lane, for example the device identifier. If not set, the whole topic is used")
+@ConnectorAttribute(name = "virtual-threads", type = "boolean", direction = INCOMING, description = "Whether the messages are delivered on virtual threads instead of the MQTT client threads, so blocking consumers do not need a worker thread. It does not add concurrency: each lane still delivers one message at a time, so at most `concurrency` messages are processed at once. Requires Java 21", defaultValue = "false")
+@ConnectorAttribute(name = "ack-strategy", type = "string", direction = INCOMING, description = "When the received QoS 1 and 2 messages are acknowledged to the broker: `auto` on receipt, or `manual` once the message is acked, or nacked with the `ignore` failure strategy. Acknowledgements are sent in the order the messages were received", defaultValue = "auto")
+@ConnectorAttribute(name = "buffer-size", type = "int", direction = INCOMING, description = "The number of received messages buffered until the channel consumes them. A message that does not fit is acknowledged to the broker and handled according to `buffer-overflow`", defaultValue = "10000")
+@ConnectorAttribute(name = "buffer-overflow", type = "string", direction = INCOMING, description = "What to do with a received message that does not fit in the buffer of the channel: `drop-newest` drops it and logs a warning, `fail` drops it and fails the channel", defaultValue = "drop-newest")
 @ConnectorAttribute(name = "failure-strategy", type = "string", direction = INCOMING, description = "Specify the failure strategy to apply when a message produced from a MQTT message is nacked. Values can be `fail` (default), or `ignore`", defaultValue = "fail")
 @ConnectorAttribute(name = "merge", direction = OUTGOING, description = "Whether the connector should allow multiple upstreams", type = "boolean", defaultValue = "false")
+@ConnectorAttribute(name = "message-expiry-interval", direction = OUTGOING, description = "The number of seconds after which the broker discards a message that was not delivered yet. Can be overridden per message with `HiveMQMqtt5Metadata` (MQTT 5 only)", type = "long")
+@ConnectorAttribute(name = "offline-buffer-size", type = "int", direction = OUTGOING, description = "The number of messages kept while the client is disconnected, and sent once it reconnected. `0` disables the buffer: the messages then wait for the connection, holding back the upstream", defaultValue = "0")
+@ConnectorAttribute(name = "offline-buffer-bytes", type = "long", direction = OUTGOING, description = "The maximum number of payload bytes kept in the offline buffer. Unlimited by default")
+@ConnectorAttribute(name = "offline-buffer-overflow", type = "string", direction = OUTGOING, description = "What to do with a message that does not fit in the offline buffer: `drop-oldest` nacks the oldest buffered messages, `drop-newest` nacks the new message and `fail` nacks it and fails the channel", defaultValue = "drop-oldest")
+@ConnectorAttribute(name = "outbox-directory", type = "string", direction = OUTGOING, description = "The directory of the journal keeping the QoS 1 and 2 messages until the broker acknowledged them, in a sub-directory named after the channel. The messages left unacknowledged, or whose publish was interrupted by a connection loss, are sent again on the next connection or start, their message being acked as the journal took over their delivery. The messages rejected by the broker are nacked and removed. Delivery is at least once, a message acknowledged by the broker right before a crash is sent twice. Disabled by default")
+@ConnectorAttribute(name = "outbox-segment-size", type = "int", direction = OUTGOING, description = "The size in bytes of the files of the outbox journal", defaultValue = "67108864")
+@ConnectorAttribute(name = "outbox-sync", type = "string", direction = OUTGOING, description = "When the outbox journal is forced to the storage device: `always` after each message, `interval` at most once per `outbox-sync-interval-ms`, or `os` to leave it to the operating system", defaultValue = "interval")
+@ConnectorAttribute(name = "outbox-sync-interval-ms", type = "long", direction = OUTGOING, description = "The interval between two syncs of the outbox journal with `outbox-sync=interval`", defaultValue = "1000")
+@ConnectorAttribute(name = "batch", type = "boolean", direction = INCOMING_AND_OUTGOING, description = "On outgoing channels, coalesce the messages sent to the same topic into batch envelopes. On incoming channels, split the received batch envelopes into one message per item", defaultValue = "false")
+@ConnectorAttribute(name = "batch-max-messages", type = "int", direction = OUTGOING, description = "The maximum number of messages of a batch", defaultValue = "100")
+@ConnectorAttribute(name = "batch-max-bytes", type = "int", direction = OUTGOING, description = "The maximum size in bytes of a batch envelope", defaultValue = "65536")
+@ConnectorAttribute(name = "batch-linger-ms", type = "long", direction = OUTGOING, description = "The maximum time in milliseconds a message waits for its batch to be sent", defaultValue = "10")
+@ConnectorAttribute(name = "compression", type = "string", direction = OUTGOING, description = "The codec compressing the payloads: `none`, `gzip`, `deflate` or `snappy`", defaultValue = "none")
+@ConnectorAttribute(name = "compression-threshold", type = "int", direction = OUTGOING, description = "The size in bytes from which payloads are compressed", defaultValue = "256")
+@ConnectorAttribute(name = "decompress", type = "boolean", direction = INCOMING, description = "Decompress the received payloads compressed by a channel with `compression` set. Other payloads are delivered as is", defaultValue = "true")
+@ConnectorAttribute(name = "decompress-max-bytes", type = "int", direction = INCOMING, description = "The largest size, in bytes, a received payload may decompress to. A payload decompressing to more is nacked, decompression stops at the limit", defaultValue = "4194304")
+@ConnectorAttribute(name = "timestamp", type = "boolean", direction = INCOMING_AND_OUTGOING, description = "On outgoing channels, stamp the send time on the messages, as a user property with MQTT 5 or a payload header with MQTT 3. On incoming channels, read the stamps and record the end-to-end latency of the messages", defaultValue = "false")
+@ConnectorAttribute(name = "tracing-enabled", type = "boolean", direction = INCOMING_AND_OUTGOING, description = "Whether tracing is enabled (default) or disabled. The trace context is propagated in MQTT 5 user properties", defaultValue = "true")
+@ConnectorAttribute(name = "serializer", direction = OUTGOING, description = "The identifier of the `HiveMQPayloadSerializer` bean used to encode the payloads it supports. Other payloads use the built-in encoders", type = "string")
 @ConnectorAttribute(name = "ssl.truststore.type", direction = INCOMING_AND_OUTGOING, description = "Set the truststore type [jks, pkcs12]", type = "string", defaultValue = "jks")
 @ConnectorAttribute(name = "ssl.truststore.location", direction = INCOMING_AND_OUTGOING, description = "Set the truststore location. In case of pem type this is the cert path", type = "string")
 @ConnectorAttribute(name = "ssl.truststore.password", direction = INCOMING_AND_OUTGOING, description = "Set the truststore password. In case of pem type this is not necessary", type = "string")
@@ -62,24 +99,29 @@ import io.vertx.mutiny.core.Vertx;
 @ConnectorAttribute(name = "ssl.hostVerifier", direction = INCOMING_AND_OUTGOING, description = "Enable or disable SSL host verification", type = "boolean", defaultValue = "true")
 @ConnectorAttribute(name = "check-topic-enabled", direction = INCOMING_AND_OUTGOING, description = "Enable check for liveness/readiness", type = "boolean", defaultValue = "false")
 @ConnectorAttribute(name = "check-topic-name", direction = INCOMING_AND_OUTGOING, description = "Topic Used to check liveness/readiness", type = "string", defaultValue = "$SYS/broker/uptime")
+@ConnectorAttribute(name = "ping-interval-seconds", direction = INCOMING_AND_OUTGOING, description = "The interval between two pings measuring the round trip to the broker. Set to `0` to only ping once at startup", type = "int", defaultValue = "30")
 @ConnectorAttribute(name = "readiness-timeout", direction = INCOMING_AND_OUTGOING, description = "Timeout to declare the MQTT Client not ready", type = "int", defaultValue = "20000")
 @ConnectorAttribute(name = "liveness-timeout", direction = INCOMING_AND_OUTGOING, description = "Timeout to declare the MQTT Client not alive", type = "int", defaultValue = "120000")
 public class HiveMQMqttConnector implements InboundConnector, OutboundConnector, HealthReporter {
 
     public static final String CONNECTOR_NAME = "smallrye-mqtt-hivemq";
+    static final String PING_ROUND_TRIP_METRIC = "hivemq.ping.rtt";
+    static final String RECONNECTIONS_METRIC = "hivemq.reconnections";
+    static final String UPTIME_METRIC = "hivemq.connection.uptime";
 
     @Inject
-    ExecutionHolder executionHolder;
+    @Any
+    Instance<HiveMQPayloadSerializer> serializers;
+
+    @Inject
+    Instance<MetricRegistry> metricRegistries;
+
+    @Inject
+    Instance<OpenTelemetry> openTelemetries;
 
-    private Vertx vertx;
     private final List<HiveMQMqttSource> sources = new CopyOnWriteArrayList<>();
     private final List<HiveMQMqttSink> sinks = new CopyOnWriteArrayList<>();
 
-    @PostConstruct
-    void init() {
-        this.vertx = executionHolder.vertx();
-    }
-
     public boolean isReady() {
         boolean ready = isSourceReady();
 
@@ -99,6 +141,7 @@ public class HiveMQMqttConnector implements InboundConnector, OutboundConnector,
     }
 
     public void destroy(@Observes @Destroyed(ApplicationScoped.class) final Object context) {
+        sinks.forEach(HiveMQMqttSink::close);
         HiveMQClients.clear();
     }
 
@@ -120,16 +163,63 @@ public class HiveMQMqttConnector implements InboundConnector, OutboundConnector,
 
     @Override
     public Flow.Publisher<? extends Message<?>> getPublisher(Config config) {
-        HiveMQMqttSource source = new HiveMQMqttSource(
-                new HiveMQMqttConnectorIncomingConfiguration(config));
+        HiveMQMqttConnectorIncomingConfiguration ic = new HiveMQMqttConnectorIncomingConfiguration(config);
+        HiveMQMqttSource source = new HiveMQMqttSource(ic, metricsRegistry(), openTelemetry());
         sources.add(source);
+        registerClientMetrics(ic);
         return source.getSource();
     }
 
     @Override
     public Flow.Subscriber<? extends Message<?>> getSubscriber(Config config) {
-        HiveMQMqttSink sink = new HiveMQMqttSink(vertx, new HiveMQMqttConnectorOutgoingConfiguration(config));
+        HiveMQMqttConnectorOutgoingConfiguration oc = new HiveMQMqttConnectorOutgoingConfiguration(config);
+        HiveMQMqttSink sink = new HiveMQMqttSink(oc, getSerializer(oc), metricsRegistry(), openTelemetry());
         sinks.add(sink);
+        registerClientMetrics(oc);
         return sink.getSink();
     }
+
+    /**
+     * @return the Micrometer registry if Micrometer is present, otherwise the MicroProfile Metrics one, or {@code null}
+     */
+    private HiveMQMetrics.Registry metricsRegistry() {
+        HiveMQMetrics.Registry micrometer = HiveMQMetrics.MICROMETER_PRESENT ? HiveMQMicrometer.lookup() : null;
+        if (micrometer != null) {
+            return micrometer;
+        }
+        return metricRegistries.isResolvable() ? HiveMQMetrics.microProfile(metricRegistries.get()) : null;
+    }
+
+    private OpenTelemetry openTelemetry() {
+        return openTelemetries.isResolvable() ? openTelemetries.get() : null;
+    }
+
+    private void registerClientMetrics(HiveMQMqttConnectorCommonConfiguration config) {
+        HiveMQMetrics.Registry registry = metricsRegistry();
+        if (registry == null) {
+            return;
+        }
+        HiveMQClients.ClientHolder holder = HiveMQClients.getHolder(config);
+        Tag tag = new Tag("client", HiveMQClients.getId(config));
+        registry.gauge(PING_ROUND_TRIP_METRIC, "Round trip of the last ping to the MQTT broker, NaN if it failed",
+                MetricUnits.MILLISECONDS, holder::getPingRoundTripMillis, tag);
+        registry.gauge(RECONNECTIONS_METRIC, "Number of times the connections of the client were established again",
+                MetricUnits.NONE, holder::getReconnectCount, tag);
+        registry.gauge(UPTIME_METRIC,
+                "Time all the connections of the client have been connected for, 0 while one is disconnected",
+                MetricUnits.SECONDS, holder::getUptimeSeconds, tag);
+    }
+
+    private HiveMQPayloadSerializer getSerializer(HiveMQMqttConnectorOutgoingConfiguration oc) {
+        return oc.getSerializer()
+                .map(identifier -> {
+                    Instance<HiveMQPayloadSerializer> serializer = CDIUtils.getInstanceById(serializers, identifier);
+                    if (serializer.isUnsatisfied()) {
+                        throw new IllegalArgumentException("Unable to find the HiveMQPayloadSerializer bean '" + identifier
+                                + "' configured on channel " + oc.getChannel());
+                    }
+                    return serializer.get();
+                })
+                .orElse(null);
+    }
 }
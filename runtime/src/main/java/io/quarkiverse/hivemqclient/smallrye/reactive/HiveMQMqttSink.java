@@ -3,50 +3,113 @@ package io.quarkiverse.hivemqclient.smallrye.reactive;
 import static io.smallrye.reactive.messaging.mqtt.i18n.MqttLogging.log;
 
 import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Flow;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.function.Consumer;
 
 import org.eclipse.microprofile.reactive.messaging.Message;
 
 import com.hivemq.client.mqtt.datatypes.MqttQos;
-import com.hivemq.client.mqtt.mqtt3.Mqtt3RxClient;
-import com.hivemq.client.mqtt.mqtt3.message.publish.Mqtt3Publish;
-import com.hivemq.client.mqtt.mqtt3.message.publish.Mqtt3PublishResult;
+import com.hivemq.client.mqtt.exceptions.ConnectionClosedException;
+import com.hivemq.client.mqtt.exceptions.MqttClientStateException;
+import com.hivemq.client.mqtt.exceptions.MqttSessionExpiredException;
+import com.hivemq.client.mqtt.mqtt5.datatypes.Mqtt5UserProperties;
+import com.hivemq.client.mqtt.mqtt5.datatypes.Mqtt5UserPropertiesBuilder;
+import com.hivemq.client.mqtt.mqtt5.datatypes.Mqtt5UserProperty;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5PublishBuilder;
 
-import io.reactivex.Flowable;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.context.Context;
 import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import io.smallrye.reactive.messaging.mqtt.SendingMqttMessageMetadata;
 import io.smallrye.reactive.messaging.providers.helpers.MultiUtils;
-import io.vertx.core.json.Json;
-import io.vertx.core.json.JsonArray;
-import io.vertx.core.json.JsonObject;
-import io.vertx.mutiny.core.Vertx;
-import io.vertx.mutiny.core.buffer.Buffer;
-
-import mutiny.zero.flow.adapters.AdaptersToFlow;
 
 public class HiveMQMqttSink {
 
     private final String topic;
     private final int qos;
+    private final int maxInflight;
+    private final boolean mqtt5;
+    private final Long messageExpiryInterval;
 
     private final Flow.Subscriber<? extends Message<?>> sink;
+    private final HiveMQPayloadSerializers serializers;
+    private final HiveMQPublishStream[] publishStreams;
+    private final HiveMQOfflineBuffer<Buffered> offlineBuffer;
+    private final HiveMQOutbox outbox;
+    private final HiveMQBatcher batcher;
+    private final HiveMQCompression compression;
+    private final boolean timestamp;
+    private final HiveMQTracing tracing;
+    private final HiveMQMetrics metrics;
+    private final AtomicInteger inFlight = new AtomicInteger();
     private final AtomicBoolean connected = new AtomicBoolean();
+    private final AtomicReference<List<HiveMQProtocolClient>> clients = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<Void>> lastAcknowledgement = new AtomicReference<>(
+            CompletableFuture.completedFuture(null));
 
-    public HiveMQMqttSink(Vertx vertx, HiveMQMqttConnectorOutgoingConfiguration config) {
+    /**
+     * @param config the configuration of the channel
+     * @param serializer the serializer of the channel, or {@code null}
+     * @param metricsRegistry the registry of the channel meters, or {@code null} to disable them
+     * @param openTelemetry the OpenTelemetry tracing the messages, or {@code null} to disable tracing
+     */
+    public HiveMQMqttSink(HiveMQMqttConnectorOutgoingConfiguration config, HiveMQPayloadSerializer serializer,
+            HiveMQMetrics.Registry metricsRegistry, OpenTelemetry openTelemetry) {
         topic = config.getTopic().orElseGet(config::getChannel);
         qos = config.getQos();
-        HiveMQPing.isServerReachable(HiveMQClients.getHolder(config));
-        AtomicReference<Mqtt3RxClient> reference = new AtomicReference<>();
+        maxInflight = Math.max(1, config.getMaxInflightQueue());
+        mqtt5 = config.getProtocolVersion() == 5;
+        messageExpiryInterval = config.getMessageExpiryInterval().orElse(null);
+        serializers = new HiveMQPayloadSerializers(serializer);
+        metrics = HiveMQMetrics.outgoing(metricsRegistry, config.getChannel(), inFlight::get);
+        HiveMQClients.ClientHolder holder = HiveMQClients.getHolder(config);
+        publishStreams = new HiveMQPublishStream[holder.size()];
+        for (int i = 0; i < publishStreams.length; i++) {
+            publishStreams[i] = new HiveMQPublishStream();
+        }
+        if (config.getOfflineBufferSize() > 0) {
+            offlineBuffer = new HiveMQOfflineBuffer<>(config.getOfflineBufferSize(),
+                    config.getOfflineBufferBytes().orElse(Long.MAX_VALUE),
+                    HiveMQOfflineBuffer.Overflow.from(config.getOfflineBufferOverflow()));
+            holder.onConnected(this::drainOfflineBuffer);
+        } else {
+            offlineBuffer = null;
+        }
+
+        outbox = config.getOutboxDirectory()
+                .map(directory -> HiveMQOutbox.open(Path.of(directory, config.getChannel()), config.getOutboxSegmentSize(),
+                        HiveMQOutbox.Sync.from(config.getOutboxSync()), config.getOutboxSyncIntervalMs()))
+                .orElse(null);
+        if (outbox != null) {
+            holder.onConnected(this::retryOutbox);
+        }
+
+        batcher = config.getBatch()
+                ? new HiveMQBatcher(config.getBatchMaxMessages(), config.getBatchMaxBytes(), config.getBatchLingerMs(),
+                        Infrastructure.getDefaultWorkerPool(), this::sendBatch)
+                : null;
 
-        this.sink = createMqttSink(vertx, config, reference);
+        HiveMQCompression.Codec codec = HiveMQCompression.Codec.from(config.getCompression());
+        compression = codec == HiveMQCompression.Codec.NONE ? null
+                : new HiveMQCompression(codec, config.getCompressionThreshold());
+        timestamp = config.getTimestamp();
+        // a batch carries the messages of several traces, it is not traced
+        tracing = HiveMQTracing.of(openTelemetry, config.getTracingEnabled() && !config.getBatch());
+
+        this.sink = createMqttSink(config);
     }
 
-    private Uni<? extends Message<?>> send(AtomicReference<Mqtt3RxClient> reference, Message<?> msg) {
-        Mqtt3RxClient client = reference.get();
+    private Uni<? extends Message<?>> send(Message<?> msg) {
         String actualTopicToBeUsed = this.topic;
         MqttQos actualQoS = MqttQos.fromCode(this.qos);
         boolean isRetain = false;
@@ -66,51 +129,228 @@ public class HiveMQMqttSink {
             return Uni.createFrom().item(msg);
         }
 
-        final Flowable<Mqtt3PublishResult> publish = client.publish(Flowable.just(Mqtt3Publish.builder()
-                .topic(actualTopicToBeUsed)
-                .qos(actualQoS)
-                .payload(convert(msg.getPayload()))
-                .retain(isRetain)
-                .build()));
+        ByteBuffer payload = serializers.serialize(msg.getPayload());
+        if (batcher != null) {
+            return batcher.add(new HiveMQBatcher.Key(actualTopicToBeUsed, actualQoS, isRetain), msg, payload)
+                    .replaceWith(msg);
+        }
+        return send(msg, actualTopicToBeUsed, actualQoS, isRetain, payload,
+                msg.getMetadata().get(HiveMQMqtt5Metadata.class));
+    }
 
-        return Uni.createFrom()
-                .publisher(AdaptersToFlow.publisher(publish))
-                .onItemOrFailure().transformToUni((s, f) -> {
-                    if (f != null) {
-                        log.error("Failed to send MQTT message: " + f.getMessage(), f);
-                        return Uni.createFrom().completionStage(msg.nack(f).thenApply(x -> msg));
-                    } else {
-                        return Uni.createFrom().completionStage(msg.ack().thenApply(x -> msg));
-                    }
-                });
+    /**
+     * Publishes the envelope of a batch. The MQTT 5 properties of the batched messages are not kept.
+     */
+    private Uni<Void> sendBatch(HiveMQBatcher.Key key, Message<ByteBuffer> envelope) {
+        return send(envelope, key.topic(), key.qos(), key.retain(), envelope.getPayload(), Optional.empty())
+                .replaceWithVoid();
     }
 
-    private ByteBuffer convert(Object payload) {
-        final Buffer buffer = toBuffer(payload);
-        return ByteBuffer.wrap(buffer.getBytes());
+    private Uni<? extends Message<?>> send(Message<?> msg, String topic, MqttQos qos, boolean retain, ByteBuffer payload,
+            Optional<HiveMQMqtt5Metadata> properties) {
+        Context trace = tracing.publish(msg, topic, payload.remaining());
+        Message<?> message = trace == null ? msg : HiveMQTracing.endOnSettlement(msg, trace);
+        ByteBuffer compressed = compression == null ? payload : compression.compress(payload);
+        long sentAt = timestamp ? System.currentTimeMillis() : -1;
+        Mqtt5PublishBuilder.Complete builder = Mqtt5Publish.builder()
+                .topic(topic)
+                .qos(qos)
+                .payload(sentAt >= 0 && !mqtt5 ? HiveMQTimestamps.frame(compressed, sentAt) : compressed)
+                .retain(retain);
+        if (mqtt5) {
+            // MQTT 3 publishes must not carry any MQTT 5 property, HiveMQMqtt3Client#toMqtt3 only wraps them
+            applyMqtt5Properties(builder, properties, sentAt, trace);
+        }
+
+        Mqtt5Publish publish = builder.build();
+        HiveMQPublishStream stream = publishStreamOf(topic);
+        long sequence;
+        try {
+            sequence = journal(publish);
+        } catch (RuntimeException e) {
+            log.error("Failed to write MQTT message to the outbox: " + e.getMessage(), e);
+            metrics.failed();
+            return Uni.createFrom().completionStage(message.nack(e).thenApply(x -> message));
+        }
+
+        if (offlineBuffer == null) {
+            return publish(message, publish, stream, sequence);
+        }
+        synchronized (offlineBuffer) {
+            if (isConnected(clients.get())) {
+                // the buffered messages go first, in case the reconnection was not notified yet
+                publishBuffered();
+                return publish(message, publish, stream, sequence);
+            }
+            return buffer(message, publish, stream, sequence);
+        }
+    }
+
+    /**
+     * @return the sequence number of the publish in the outbox, or {@code -1} if it is not journaled
+     */
+    private long journal(Mqtt5Publish publish) {
+        if (outbox == null || publish.getQos() == MqttQos.AT_MOST_ONCE) {
+            return -1;
+        }
+        return outbox.append(publish);
     }
 
-    private Buffer toBuffer(Object payload) {
-        if (payload instanceof JsonObject) {
-            return new Buffer(((JsonObject) payload).toBuffer());
+    private void settle(long sequence) {
+        if (sequence >= 0) {
+            outbox.settle(sequence);
         }
-        if (payload instanceof JsonArray) {
-            return new Buffer(((JsonArray) payload).toBuffer());
+    }
+
+    /**
+     * @return a stage completed once the broker acknowledged the publish, after which it is removed from the outbox. A
+     *         publish lost with the connection stays in the outbox, it is sent again on the next connection or by the
+     *         next run, and the stage completes as the outbox took over its delivery. A publish the broker rejected is
+     *         removed from the outbox and the stage fails.
+     */
+    private CompletionStage<Void> sendToBroker(Mqtt5Publish publish, HiveMQPublishStream stream, long sequence) {
+        long start = metrics.start();
+        inFlight.incrementAndGet();
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        stream.send(publish).whenComplete((ignored, failure) -> {
+            inFlight.decrementAndGet();
+            if (failure == null) {
+                metrics.sent(publish.getPayload().map(ByteBuffer::remaining).orElse(0), start);
+                settle(sequence);
+                result.complete(null);
+            } else if (sequence >= 0 && isConnectionLoss(failure)) {
+                log.debug("MQTT message to " + publish.getTopic() + " kept in the outbox, " + failure.getMessage());
+                outbox.retry(sequence, publish);
+                result.complete(null);
+            } else {
+                // sending it again would be rejected again
+                settle(sequence);
+                result.completeExceptionally(failure);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return whether the publish failed because the connection was lost, rather than because the broker rejected it
+     */
+    static boolean isConnectionLoss(Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause()
+                : failure;
+        return cause instanceof ConnectionClosedException || cause instanceof MqttClientStateException
+                || cause instanceof MqttSessionExpiredException;
+    }
+
+    private Uni<? extends Message<?>> publish(Message<?> msg, Mqtt5Publish publish, HiveMQPublishStream stream,
+            long sequence) {
+        final CompletionStage<Void> sent = sendToBroker(publish, stream, sequence);
+        final CompletableFuture<Void> acknowledged = new CompletableFuture<>();
+        final CompletableFuture<Void> previous = lastAcknowledgement.getAndSet(acknowledged);
+        return acknowledgeInOrder(msg, sent, previous, acknowledged);
+    }
+
+    /**
+     * Chosen once per message, from the topic it is sent to.
+     */
+    private HiveMQPublishStream publishStreamOf(String topic) {
+        // the messages of a topic always go through the same connection, so they keep their order
+        return publishStreams[Math.floorMod(topic.hashCode(), publishStreams.length)];
+    }
+
+    /**
+     * Up to maxInflight publishes may be awaiting their PUBACK/PUBCOMP at the same time, but each message is only
+     * acked/nacked once every message sent before it has been acked/nacked.
+     */
+    private Uni<? extends Message<?>> acknowledgeInOrder(Message<?> msg, CompletionStage<Void> sent,
+            CompletableFuture<Void> previous, CompletableFuture<Void> acknowledged) {
+        return Uni.createFrom()
+                .completionStage(sent)
+                .onItemOrFailure().transformToUni((s, f) -> Uni.createFrom().completionStage(previous)
+                        .onItem().transformToUni(x -> acknowledge(msg, f)))
+                .onTermination().invoke(() -> acknowledged.complete(null));
+    }
+
+    /**
+     * Keeps the message until the client reconnects. The upstream is not held back: the message is acked or nacked
+     * once it was actually published.
+     */
+    private Uni<? extends Message<?>> buffer(Message<?> msg, Mqtt5Publish publish, HiveMQPublishStream stream,
+            long sequence) {
+        CompletableFuture<Void> acknowledged = new CompletableFuture<>();
+        CompletableFuture<Void> previous = lastAcknowledgement.get();
+        Buffered buffered = new Buffered(msg, publish, stream, sequence, previous, acknowledged);
+        int size = publish.getPayload().map(ByteBuffer::remaining).orElse(0);
+        if (offlineBuffer.offer(buffered, size, evicted -> evicted.giveUp("evicted from the full offline buffer", true))) {
+            lastAcknowledgement.set(acknowledged);
+            return Uni.createFrom().item(msg);
+        }
+        IllegalStateException rejected = new IllegalStateException("The offline buffer of the MQTT sink is full, "
+                + offlineBuffer.size() + " messages and " + offlineBuffer.bytes() + " bytes");
+        settle(sequence);
+        metrics.failed();
+        Uni<? extends Message<?>> nack = Uni.createFrom().completionStage(msg.nack(rejected).thenApply(x -> msg));
+        return offlineBuffer.overflow() == HiveMQOfflineBuffer.Overflow.FAIL
+                ? nack.onItem().failWith(() -> rejected)
+                : nack;
+    }
+
+    private void drainOfflineBuffer() {
+        synchronized (offlineBuffer) {
+            if (isConnected(clients.get())) {
+                publishBuffered();
+            }
         }
-        if (payload instanceof String || payload.getClass().isPrimitive()) {
-            return new Buffer(io.vertx.core.buffer.Buffer.buffer(payload.toString()));
+    }
+
+    /**
+     * Sends all the buffered messages at once. They are pipelined by the client, regardless of max-inflight-queue.
+     */
+    private void publishBuffered() {
+        offlineBuffer.drainTo(buffered -> acknowledgeInOrder(buffered.message,
+                sendToBroker(buffered.publish, buffered.stream, buffered.sequence), buffered.previous,
+                buffered.acknowledged)
+                .subscribe().with(ignored -> {
+                }, failure -> log.error("Failed to acknowledge MQTT message: " + failure.getMessage(), failure)));
+    }
+
+    /**
+     * @param sentAt the send time stamped as a user property, or {@code -1}
+     * @param trace the trace context propagated as user properties, or {@code null}
+     */
+    private void applyMqtt5Properties(Mqtt5PublishBuilder.Complete builder, Optional<HiveMQMqtt5Metadata> metadata,
+            long sentAt, Context trace) {
+        if (messageExpiryInterval != null) {
+            builder.messageExpiryInterval(messageExpiryInterval);
         }
-        if (payload instanceof byte[]) {
-            return new Buffer(io.vertx.core.buffer.Buffer.buffer((byte[]) payload));
+        List<Mqtt5UserProperty> userProperties = List.of();
+        if (metadata.isPresent()) {
+            HiveMQMqtt5Metadata properties = metadata.get();
+            properties.getMessageExpiryInterval().ifPresent(builder::messageExpiryInterval);
+            properties.getContentType().ifPresent(builder::contentType);
+            properties.getResponseTopic().ifPresent(builder::responseTopic);
+            properties.getCorrelationData().ifPresent(builder::correlationData);
+            userProperties = properties.getUserProperties();
         }
-        if (payload instanceof Buffer) {
-            return (Buffer) payload;
+        if (!userProperties.isEmpty() || sentAt >= 0 || trace != null) {
+            Mqtt5UserPropertiesBuilder builtProperties = Mqtt5UserProperties.builder();
+            userProperties.forEach(builtProperties::add);
+            if (sentAt >= 0) {
+                builtProperties.add(HiveMQTimestamps.property(sentAt));
+            }
+            if (trace != null) {
+                tracing.inject(trace, builtProperties);
+            }
+            builder.userProperties(builtProperties.build());
         }
-        if (payload instanceof io.vertx.core.buffer.Buffer) {
-            return new Buffer((io.vertx.core.buffer.Buffer) payload);
+    }
+
+    private Uni<? extends Message<?>> acknowledge(Message<?> msg, Throwable failure) {
+        if (failure != null) {
+            log.error("Failed to send MQTT message: " + failure.getMessage(), failure);
+            metrics.failed();
+            return Uni.createFrom().completionStage(msg.nack(failure).thenApply(x -> msg));
         }
-        // Convert to Json
-        return new Buffer(Json.encodeToBuffer(payload));
+        return Uni.createFrom().completionStage(msg.ack().thenApply(x -> msg));
     }
 
     public Flow.Subscriber<? extends Message<?>> getSink() {
@@ -121,43 +361,73 @@ public class HiveMQMqttSink {
         return connected.get();
     }
 
-    private Flow.Subscriber<? extends Message<?>> createMqttSink(Vertx vertx, HiveMQMqttConnectorOutgoingConfiguration config,
-            AtomicReference<Mqtt3RxClient> reference) {
+    private Flow.Subscriber<? extends Message<?>> createMqttSink(HiveMQMqttConnectorOutgoingConfiguration config) {
         return MultiUtils.via(msg -> msg.onSubscription()
-                .call(() -> connectClientOnSubscription(vertx, reference, config))
-                .onItem().transformToUniAndConcatenate(m -> send(reference, m))
-                .onCompletion().invoke(() -> disconnectClient(reference))
+                .call(() -> connectClientOnSubscription(config))
+                .onItem().transformToUni(this::send).merge(maxInflight)
+                .onCompletion().invoke(() -> disconnectClient())
                 .onFailure().invoke(e -> handleError(e)));
     }
 
-    private Uni<Void> connectClientOnSubscription(Vertx vertx, AtomicReference<Mqtt3RxClient> reference,
-            HiveMQMqttConnectorOutgoingConfiguration config) {
-        final Mqtt3RxClient client = reference.get();
-        if (client != null) {
-            if (client.getState().isConnected()) {
-                connected.set(true);
-            } else {
-                handleClientConnectionInProgress(vertx, id -> {
-                    if (client.getState().isConnected()) {
-                        vertx.cancelTimer(id);
-                        connected.set(true);
-                    }
-                });
-            }
-        }
-
-        return HiveMQClients.getConnectedClient(config)
+    private Uni<Void> connectClientOnSubscription(HiveMQMqttConnectorOutgoingConfiguration config) {
+        Uni<Void> connection = HiveMQClients.getConnectedClients(config)
                 .onItem().invoke(c -> {
-                    reference.set(c);
+                    for (int i = 0; i < publishStreams.length; i++) {
+                        publishStreams[i].open(c.get(i));
+                    }
+                    if (outbox != null) {
+                        replayOutbox();
+                    }
+                    clients.set(c);
                     connected.set(true);
                     log.info("Successfully connected to MQTT broker.");
+                    if (offlineBuffer != null) {
+                        drainOfflineBuffer();
+                    }
                 })
                 .onFailure().invoke(error -> handleConnectionFailure(error))
                 .onItem().transformToUni(i -> Uni.createFrom().voidItem());
+
+        if (offlineBuffer == null) {
+            return connection;
+        }
+        // the messages sent until the first connection are buffered
+        connection.subscribe().with(ignored -> {
+        }, failure -> {
+        });
+        return Uni.createFrom().voidItem();
     }
 
-    private void handleClientConnectionInProgress(Vertx vertx, Consumer<Long> handler) {
-        vertx.setPeriodic(100, handler);
+    /**
+     * Sends the publishes left unacknowledged by the previous run, before any new message, and the ones that failed
+     * since. They are no longer attached to a message, so they are only removed from the outbox once acknowledged.
+     */
+    private void replayOutbox() {
+        for (HiveMQOutbox.Entry entry : outbox.takeUnsettled()) {
+            Mqtt5Publish publish = entry.publish();
+            sendToBroker(publish, publishStreamOf(publish.getTopic().toString()), entry.sequence());
+        }
+    }
+
+    /**
+     * Replays the outbox on reconnection, the first connection replays it once the publish streams are open.
+     */
+    private void retryOutbox() {
+        if (clients.get() != null) {
+            replayOutbox();
+        }
+    }
+
+    private static boolean isConnected(List<HiveMQProtocolClient> clients) {
+        if (clients == null) {
+            return false;
+        }
+        for (HiveMQProtocolClient client : clients) {
+            if (!client.getState().isConnected()) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private void handleConnectionFailure(Throwable error) {
@@ -165,16 +435,73 @@ public class HiveMQMqttSink {
         log.error("Failed to connect to MQTT broker: " + error.getMessage(), error);
     }
 
-    private void disconnectClient(AtomicReference<Mqtt3RxClient> reference) {
-        Mqtt3RxClient client = reference.getAndSet(null);
-        if (client != null) {
-            client.toBlocking().disconnect();
+    private void disconnectClient() {
+        if (batcher != null) {
+            batcher.flush();
+        }
+        if (offlineBuffer != null) {
+            offlineBuffer.drainTo(buffered -> buffered.giveUp("the MQTT sink completed while disconnected", false));
+        }
+        for (HiveMQPublishStream publishStream : publishStreams) {
+            publishStream.close();
+        }
+        List<HiveMQProtocolClient> clients = this.clients.getAndSet(null);
+        if (clients != null) {
+            clients.forEach(client -> client.disconnect().await().indefinitely());
             connected.set(false);
         }
     }
 
+    /**
+     * Flushes the outbox, its unsettled entries are replayed by the next run.
+     */
+    public void close() {
+        if (outbox != null) {
+            outbox.close();
+        }
+    }
+
     private void handleError(Throwable e) {
         connected.set(false);
         log.errorWhileSendingMessageToBroker(e);
     }
+
+    /**
+     * A message waiting in the offline buffer, with its place in the acknowledgement order.
+     */
+    private class Buffered {
+
+        private final Message<?> message;
+        private final Mqtt5Publish publish;
+        private final HiveMQPublishStream stream;
+        private final long sequence;
+        private final CompletableFuture<Void> previous;
+        private final CompletableFuture<Void> acknowledged;
+
+        Buffered(Message<?> message, Mqtt5Publish publish, HiveMQPublishStream stream, long sequence,
+                CompletableFuture<Void> previous, CompletableFuture<Void> acknowledged) {
+            this.message = message;
+            this.publish = publish;
+            this.stream = stream;
+            this.sequence = sequence;
+            this.previous = previous;
+            this.acknowledged = acknowledged;
+        }
+
+        /**
+         * @param discard whether to remove the message from the outbox, otherwise it is sent by the next run and the
+         *        message is acked, as the outbox took over its delivery
+         */
+        void giveUp(String reason, boolean discard) {
+            if (discard) {
+                settle(sequence);
+            }
+            CompletableFuture<Void> outcome = !discard && sequence >= 0 ? CompletableFuture.completedFuture(null)
+                    : CompletableFuture.failedFuture(new IllegalStateException("MQTT message to " + publish.getTopic()
+                            + " not sent, " + reason));
+            acknowledgeInOrder(message, outcome, previous, acknowledged)
+                    .subscribe().with(ignored -> {
+                    }, failure -> log.error("Failed to nack MQTT message: " + failure.getMessage(), failure));
+        }
+    }
 }
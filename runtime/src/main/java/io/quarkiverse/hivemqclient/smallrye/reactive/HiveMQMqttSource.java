@@ -3,54 +3,90 @@ package io.quarkiverse.hivemqclient.smallrye.reactive;
 import static io.smallrye.reactive.messaging.mqtt.i18n.MqttExceptions.ex;
 import static io.smallrye.reactive.messaging.mqtt.i18n.MqttLogging.log;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Flow;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.regex.Pattern;
+
+import org.eclipse.microprofile.reactive.messaging.Metadata;
 
 import com.hivemq.client.mqtt.datatypes.MqttQos;
-import com.hivemq.client.mqtt.mqtt3.message.publish.Mqtt3Publish;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
 
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.context.Context;
+import io.quarkiverse.hivemqclient.smallrye.reactive.HiveMQProtocolClient.ReceivedPublish;
 import io.smallrye.mutiny.Multi;
 import io.smallrye.reactive.messaging.mqtt.MqttFailStop;
 import io.smallrye.reactive.messaging.mqtt.MqttFailureHandler;
 import io.smallrye.reactive.messaging.mqtt.MqttIgnoreFailure;
-
-import mutiny.zero.flow.adapters.AdaptersToFlow;
+import io.smallrye.reactive.messaging.providers.impl.ConcurrencyConnectorConfig;
 
 public class HiveMQMqttSource {
 
     private final Flow.Publisher<HiveMQReceivingMqttMessage> source;
     private final AtomicBoolean subscribed = new AtomicBoolean();
-    private final Pattern pattern;
 
-    public HiveMQMqttSource(HiveMQMqttConnectorIncomingConfiguration config) {
-        String topic = config.getTopic().orElseGet(config::getChannel);
+    /**
+     * @param config the configuration of the channel
+     * @param metricsRegistry the registry of the channel meters, or {@code null} to disable them
+     * @param openTelemetry the OpenTelemetry tracing the messages, or {@code null} to disable tracing
+     */
+    public HiveMQMqttSource(HiveMQMqttConnectorIncomingConfiguration config, HiveMQMetrics.Registry metricsRegistry,
+            OpenTelemetry openTelemetry) {
+        String topic = config.getTopic()
+                .orElseGet(() -> ConcurrencyConnectorConfig.stripChannelNameOfSeparator(config.getChannel()));
         int qos = config.getQos();
         boolean broadcast = config.getBroadcast();
         MqttFailureHandler.Strategy strategy = MqttFailureHandler.Strategy.from(config.getFailureStrategy());
-        MqttFailureHandler onNack = createFailureHandler(strategy, config.getChannel());
-
-        this.pattern = createPatternFromTopic(topic);
+        boolean timestamp = config.getTimestamp();
+        HiveMQMetrics metrics = HiveMQMetrics.incoming(metricsRegistry, config.getChannel(), timestamp);
+        HiveMQTracing tracing = HiveMQTracing.of(openTelemetry, config.getTracingEnabled());
+        MqttFailureHandler failureHandler = createFailureHandler(strategy, config.getChannel());
+        MqttFailureHandler onNack = reason -> {
+            metrics.failed();
+            return failureHandler.handle(reason);
+        };
 
         HiveMQClients.ClientHolder holder = HiveMQClients.getHolder(config);
-        HiveMQPing.isServerReachable(HiveMQClients.getHolder(config));
-        this.source = createMqttSource(holder, topic, qos, broadcast, onNack);
+        ExecutorService executor = config.getVirtualThreads() ? HiveMQVirtualThreads.newExecutor() : null;
+        HiveMQDispatcher.Delivery delivery = new HiveMQDispatcher.Delivery(isManualAcknowledgement(config.getAckStrategy()),
+                config.getBufferSize(), HiveMQDispatcher.Overflow.from(config.getBufferOverflow()), createLane(config));
+        // a producer using MQTT 3 stamps a header whatever the protocol of this channel, recognized by its magic number
+        this.source = createMqttSource(holder, topic, qos, delivery, timestamp,
+                config.getDecompress() ? config.getDecompressMaxBytes() : -1, config.getBatch(), executor, broadcast,
+                metrics, tracing, onNack);
     }
 
-    private Pattern createPatternFromTopic(String topic) {
-        if (topic.contains("#") || topic.contains("+")) {
-            String regex = topic.replace("+", "[^/]+").replace("#", ".+");
-            return Pattern.compile(regex);
+    /**
+     * With {@code concurrency} set, Reactive Messaging creates one copy of the channel per lane, named
+     * {@code <channel>$<lane>}. The copies share the client subscription, the dispatcher computes the lane of each
+     * publish once and emits it to the copy of that lane.
+     */
+    private static HiveMQDispatcher.Lane createLane(HiveMQMqttConnectorIncomingConfiguration config) {
+        String channel = config.getChannel();
+        int concurrency = config.getConcurrency();
+        if (concurrency <= 1 || !ConcurrencyConnectorConfig.isConcurrencyChannelName(channel)) {
+            return null;
         }
-        return null;
+        int separator = channel.lastIndexOf(ConcurrencyConnectorConfig.CONCURRENCY_CONFIG_SEPARATOR);
+        int lane = Integer.parseInt(channel.substring(separator + 1)) - 1;
+        HiveMQTopicLanes lanes = new HiveMQTopicLanes(concurrency, config.getConcurrencyTopicLevel().orElse(-1));
+        return new HiveMQDispatcher.Lane(channel.substring(0, separator), lanes, lane);
     }
 
-    private boolean matches(String topic, Mqtt3Publish m) {
-        String topicName = m.getTopic().toString();
-        if (pattern != null) {
-            return pattern.matcher(topicName).matches();
+    private static boolean isManualAcknowledgement(String strategy) {
+        switch (strategy.trim().toLowerCase(Locale.ROOT)) {
+            case "auto":
+                return false;
+            case "manual":
+                return true;
+            default:
+                throw new IllegalArgumentException("Unknown ack strategy " + strategy + ", use auto or manual");
         }
-        return topicName.equals(topic);
     }
 
     private MqttFailureHandler createFailureHandler(MqttFailureHandler.Strategy strategy, String channel) {
@@ -73,21 +109,93 @@ public class HiveMQMqttSource {
     }
 
     private Multi<HiveMQReceivingMqttMessage> createMqttSource(
-            HiveMQClients.ClientHolder holder, String topic, int qos, boolean broadcast, MqttFailureHandler onNack) {
-
-        return holder.connect()
-                .onItem()
-                .transformToMulti(client -> Multi.createFrom()
-                        .publisher(AdaptersToFlow.publisher(
-                                client.subscribePublishesWith()
-                                        .topicFilter(topic)
-                                        .qos(MqttQos.fromCode(qos))
-                                        .applySubscribe()
-                                        .doOnSingle(subAck -> subscribed.set(true))))
-                        .filter(m -> matches(topic, m))
-                        .onItem().transform(x -> new HiveMQReceivingMqttMessage(x, onNack))
-                        .stage(multi -> broadcast ? multi.broadcast().toAllSubscribers() : multi)
-                        .onCancellation().invoke(() -> subscribed.set(false))
-                        .onFailure().invoke(log::unableToConnectToBroker));
+            HiveMQClients.ClientHolder holder, String topic, int qos, HiveMQDispatcher.Delivery delivery, boolean unframe,
+            int decompressMaxBytes, boolean batch, ExecutorService executor, boolean broadcast, HiveMQMetrics metrics,
+            HiveMQTracing tracing, MqttFailureHandler onNack) {
+
+        return holder.subscribe(topic, MqttQos.fromCode(qos), delivery, () -> subscribed.set(true))
+                .onItem().invoke(x -> metrics.received(x.publish().getPayload().map(ByteBuffer::remaining).orElse(0)))
+                .stage(multi -> unframe ? multi.onItem().transform(HiveMQMqttSource::unframe) : multi)
+                // a negative limit when decompress is disabled
+                .stage(multi -> decompressMaxBytes < 0 ? multi
+                        : multi.onItem().transformToIterable(x -> decompress(x, decompressMaxBytes, onNack)))
+                .stage(multi -> batch ? multi.onItem().transformToIterable(HiveMQMqttSource::split) : multi)
+                .onItem().transform(x -> message(x, tracing, onNack))
+                // messages are still delivered one at a time, but on a virtual thread the consumer can block
+                .stage(multi -> executor != null
+                        ? multi.emitOn(executor).onTermination().invoke(executor::shutdown)
+                        : multi)
+                .onItem().invoke(x -> metrics.delivered(x.message))
+                .stage(multi -> broadcast ? multi.broadcast().toAllSubscribers() : multi)
+                .onCancellation().invoke(() -> subscribed.set(false))
+                .onFailure().invoke(log::unableToConnectToBroker);
+    }
+
+    /**
+     * Creates the message of a publish. A traced message ends its span once it is acked, or nacked.
+     */
+    private static HiveMQReceivingMqttMessage message(ReceivedPublish received, HiveMQTracing tracing,
+            MqttFailureHandler onNack) {
+        Context trace = tracing.receive(received.publish());
+        if (trace == null) {
+            return new HiveMQReceivingMqttMessage(received.publish(), received.topic(), received.acknowledge(), onNack,
+                    Metadata.empty());
+        }
+        return new HiveMQReceivingMqttMessage(received.publish(), received.topic(),
+                () -> {
+                    HiveMQTracing.end(trace, null);
+                    received.acknowledge().run();
+                },
+                reason -> {
+                    HiveMQTracing.end(trace, reason);
+                    return onNack.handle(reason);
+                },
+                Metadata.of(HiveMQTracing.metadata(trace)));
+    }
+
+    /**
+     * Moves the send time stamped in the header of an MQTT 3 payload to a user property.
+     */
+    private static ReceivedPublish unframe(ReceivedPublish received) {
+        Mqtt5Publish publish = HiveMQTimestamps.unframe(received.publish());
+        return publish == received.publish() ? received
+                : new ReceivedPublish(publish, received.acknowledge(), received.topic());
+    }
+
+    /**
+     * Decompresses the payload of a publish. A publish too large once decompressed is nacked, without allocating more
+     * than the limit.
+     */
+    private static List<ReceivedPublish> decompress(ReceivedPublish received, int maxBytes, MqttFailureHandler onNack) {
+        Mqtt5Publish publish;
+        try {
+            publish = HiveMQCompression.decompress(received.publish(), maxBytes);
+        } catch (HiveMQCompression.TooLargeException e) {
+            new HiveMQReceivingMqttMessage(received.publish(), received.topic(), received.acknowledge(), onNack,
+                    Metadata.empty()).nack(e);
+            return List.of();
+        }
+        return List.of(publish == received.publish() ? received
+                : new ReceivedPublish(publish, received.acknowledge(), received.topic()));
+    }
+
+    /**
+     * Splits a batch envelope, the envelope is acknowledged once all its messages were.
+     */
+    private static List<ReceivedPublish> split(ReceivedPublish received) {
+        List<Mqtt5Publish> publishes = HiveMQBatchEnvelope.split(received.publish());
+        if (publishes.size() == 1 && publishes.get(0) == received.publish()) {
+            return List.of(received);
+        }
+        if (publishes.isEmpty()) {
+            received.acknowledge().run();
+            return List.of();
+        }
+        Runnable acknowledge = HiveMQAcknowledgements.countDown(received.acknowledge(), publishes.size());
+        List<ReceivedPublish> items = new ArrayList<>(publishes.size());
+        for (Mqtt5Publish publish : publishes) {
+            items.add(new ReceivedPublish(publish, acknowledge, received.topic()));
+        }
+        return items;
     }
 }
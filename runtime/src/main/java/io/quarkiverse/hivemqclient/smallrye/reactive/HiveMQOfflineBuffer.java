@@ -0,0 +1,122 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Bounded FIFO buffer holding the outgoing messages of a sink while its client is disconnected.
+ * <p>
+ * The buffer is bounded both in number of messages and in payload bytes. When a message does not fit, the
+ * {@link Overflow} policy decides which message is given up.
+ *
+ * @param <T> the type of the buffered messages
+ */
+class HiveMQOfflineBuffer<T> {
+
+    /**
+     * What to do with a message that does not fit in the buffer.
+     */
+    enum Overflow {
+        /**
+         * Evict the oldest buffered messages to make room for the new one.
+         */
+        DROP_OLDEST,
+        /**
+         * Reject the new message, the buffered ones are kept.
+         */
+        DROP_NEWEST,
+        /**
+         * Reject the new message and fail the sink.
+         */
+        FAIL;
+
+        static Overflow from(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown offline buffer overflow policy " + value
+                        + ", use drop-oldest, drop-newest or fail", e);
+            }
+        }
+    }
+
+    private final int maxMessages;
+    private final long maxBytes;
+    private final Overflow overflow;
+    private final Deque<Entry<T>> entries = new ArrayDeque<>();
+    private long bytes;
+
+    /**
+     * @param maxMessages the maximum number of buffered messages
+     * @param maxBytes the maximum number of buffered payload bytes
+     * @param overflow the policy applied when a message does not fit
+     */
+    HiveMQOfflineBuffer(int maxMessages, long maxBytes, Overflow overflow) {
+        if (maxMessages < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("The offline buffer size must be positive, got " + maxMessages
+                    + " messages and " + maxBytes + " bytes");
+        }
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+        this.overflow = overflow;
+    }
+
+    Overflow overflow() {
+        return overflow;
+    }
+
+    /**
+     * Appends the message to the buffer, applying the overflow policy if it does not fit.
+     *
+     * @param message the message
+     * @param size the payload size of the message, in bytes
+     * @param evicted receives the buffered messages evicted to make room, with {@link Overflow#DROP_OLDEST}
+     * @return {@code false} if the message was rejected
+     */
+    synchronized boolean offer(T message, int size, Consumer<? super T> evicted) {
+        if (size > maxBytes) {
+            return false;
+        }
+        while (entries.size() >= maxMessages || bytes + size > maxBytes) {
+            if (overflow != Overflow.DROP_OLDEST) {
+                return false;
+            }
+            Entry<T> oldest = entries.poll();
+            bytes -= oldest.size;
+            evicted.accept(oldest.message);
+        }
+        entries.add(new Entry<>(message, size));
+        bytes += size;
+        return true;
+    }
+
+    /**
+     * Removes all the buffered messages, in the order they were offered.
+     *
+     * @param consumer receives the messages
+     */
+    synchronized void drainTo(Consumer<? super T> consumer) {
+        Entry<T> entry;
+        while ((entry = entries.poll()) != null) {
+            consumer.accept(entry.message);
+        }
+        bytes = 0;
+    }
+
+    synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    private record Entry<T>(T message, int size) {
+    }
+}
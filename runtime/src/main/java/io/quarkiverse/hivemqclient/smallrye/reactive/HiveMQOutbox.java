@@ -0,0 +1,422 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import static io.smallrye.reactive.messaging.mqtt.i18n.MqttLogging.log;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+/**
+ * Append-only journal of the outgoing publishes of a sink, so that the publishes not acknowledged by the broker are
+ * sent again after a restart.
+ * <p>
+ * The journal is a directory of memory-mapped segment files of a fixed size, named after the sequence number of their
+ * first entry. An entry is laid out as:
+ *
+ * <pre>
+ * int length | int crc32c | long sequence | short topic length | topic | byte qos | byte retain | payload
+ * </pre>
+ *
+ * The length, covering the bytes after the checksum, is written last: a zero length marks the end of a segment, and an
+ * entry interrupted by a crash is ignored, as is an entry whose checksum does not match.
+ * <p>
+ * The {@code checkpoint} file holds the sequence number up to which all entries were settled. Entries may be settled
+ * out of order; the checkpoint only moves past contiguous sequence numbers, and the segments entirely below it are
+ * deleted. An entry settled ahead of the checkpoint is marked in place by negating its length, so it is not replayed
+ * either.
+ * <p>
+ * Replay is at least once: a publish acknowledged by the broker right before a crash, or whose settlement was not
+ * synced before a power loss, is sent again.
+ * <p>
+ * The outbox is opened on a new segment: entries left by a previous run are only read, once, to be replayed. Entries
+ * whose publish failed are {@link #retry handed back} and replayed with them.
+ */
+class HiveMQOutbox implements AutoCloseable {
+
+    private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES;
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT = "checkpoint";
+
+    /**
+     * When the mapped files are forced to the storage device.
+     */
+    enum Sync {
+        /**
+         * After each append and each settlement. Survives a power loss, at the cost of a write to the device per
+         * message.
+         */
+        ALWAYS,
+        /**
+         * At most once per sync interval, on append or settlement. The data written to the mapped files survives a
+         * crash of the process in any case.
+         */
+        INTERVAL,
+        /**
+         * Left to the operating system.
+         */
+        OS;
+
+        static Sync from(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown outbox sync policy " + value + ", use always, interval or os",
+                        e);
+            }
+        }
+    }
+
+    /**
+     * A publish read back from the journal.
+     *
+     * @param sequence the sequence number of the entry
+     * @param publish the publish
+     */
+    record Entry(long sequence, Mqtt5Publish publish) {
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Sync sync;
+    private final long syncIntervalNanos;
+    private final MappedByteBuffer checkpoint;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final TreeSet<Long> settledAhead = new TreeSet<>();
+    private final CRC32C crc = new CRC32C();
+    private final List<Entry> failed = new ArrayList<>();
+    private List<Entry> unsettled;
+    private Segment current;
+    private long nextSequence;
+    private long settled;
+    private long lastSync = System.nanoTime();
+
+    private HiveMQOutbox(Path directory, int segmentSize, Sync sync, long syncIntervalMillis) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.sync = sync;
+        this.syncIntervalNanos = syncIntervalMillis * 1_000_000;
+        Files.createDirectories(directory);
+        try (FileChannel channel = FileChannel.open(directory.resolve(CHECKPOINT), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            checkpoint = channel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+        }
+        settled = checkpoint.getLong(0);
+        nextSequence = settled + 1;
+        unsettled = recover();
+    }
+
+    /**
+     * Opens the journal stored in the directory, creating it if needed.
+     *
+     * @param directory the directory of the journal, used by a single sink
+     * @param segmentSize the size of each segment file, in bytes
+     * @param sync when the files are forced to the storage device
+     * @param syncIntervalMillis the sync interval, with {@link Sync#INTERVAL}
+     * @return the outbox
+     */
+    static HiveMQOutbox open(Path directory, int segmentSize, Sync sync, long syncIntervalMillis) {
+        if (segmentSize < 1024) {
+            throw new IllegalArgumentException("The outbox segment size must be at least 1024 bytes, got " + segmentSize);
+        }
+        try {
+            return new HiveMQOutbox(directory, segmentSize, sync, syncIntervalMillis);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to open the outbox in " + directory, e);
+        }
+    }
+
+    /**
+     * @return the entries left unsettled by the previous run, only returned once, and the entries handed back since the
+     *         last call, in append order
+     */
+    synchronized List<Entry> takeUnsettled() {
+        List<Entry> entries = unsettled;
+        unsettled = List.of();
+        if (failed.isEmpty()) {
+            return entries;
+        }
+        List<Entry> all = new ArrayList<>(entries.size() + failed.size());
+        all.addAll(entries);
+        all.addAll(failed);
+        failed.clear();
+        all.sort(Comparator.comparingLong(Entry::sequence));
+        return all;
+    }
+
+    /**
+     * Hands back an entry whose publish failed. It stays unsettled, and is returned by the next {@link #takeUnsettled}
+     * to be sent again, or replayed by the next run.
+     *
+     * @param sequence the sequence number returned by {@link #append}
+     * @param publish the publish
+     */
+    synchronized void retry(long sequence, Mqtt5Publish publish) {
+        if (sequence > settled && !settledAhead.contains(sequence)) {
+            failed.add(new Entry(sequence, publish));
+        }
+    }
+
+    /**
+     * Appends the publish to the journal.
+     *
+     * @param publish the publish
+     * @return the sequence number of the entry, to be {@link #settle settled} once the publish was acknowledged
+     * @throws IllegalArgumentException if the entry does not fit in a segment
+     * @throws UncheckedIOException if the entry could not be written
+     */
+    synchronized long append(Mqtt5Publish publish) {
+        byte[] topic = publish.getTopic().toString().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = publish.getPayload().map(ByteBuffer::duplicate).orElse(ByteBuffer.allocate(0));
+        int length = Long.BYTES + Short.BYTES + topic.length + 2 + payload.remaining();
+        if (HEADER_SIZE + length > segmentSize) {
+            throw new IllegalArgumentException("The MQTT message to " + publish.getTopic() + " of " + payload.remaining()
+                    + " bytes does not fit in an outbox segment of " + segmentSize + " bytes");
+        }
+        if (current == null || current.buffer.remaining() < HEADER_SIZE + length) {
+            roll();
+        }
+        long sequence = nextSequence++;
+        MappedByteBuffer buffer = current.buffer;
+        int start = buffer.position();
+        current.add(sequence, start);
+        buffer.position(start + HEADER_SIZE);
+        int body = buffer.position();
+        buffer.putLong(sequence)
+                .putShort((short) topic.length)
+                .put(topic)
+                .put((byte) publish.getQos().getCode())
+                .put((byte) (publish.isRetain() ? 1 : 0))
+                .put(payload);
+        crc.reset();
+        crc.update(buffer.duplicate().position(body).limit(buffer.position()));
+        buffer.putInt(start + Integer.BYTES, (int) crc.getValue());
+        // written last, the entry is only visible once complete
+        buffer.putInt(start, length);
+        written();
+        return sequence;
+    }
+
+    /**
+     * Marks the entry as settled, so it is not replayed anymore.
+     *
+     * @param sequence the sequence number returned by {@link #append}
+     */
+    synchronized void settle(long sequence) {
+        if (sequence <= settled) {
+            return;
+        }
+        if (sequence != settled + 1) {
+            if (settledAhead.add(sequence)) {
+                markSettled(sequence);
+                written();
+            }
+            return;
+        }
+        settled = sequence;
+        while (!settledAhead.isEmpty() && settledAhead.first() == settled + 1) {
+            settled = settledAhead.pollFirst();
+        }
+        checkpoint.putLong(0, settled);
+        deleteSettledSegments();
+        written();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (current != null) {
+            current.buffer.force();
+        }
+        checkpoint.force();
+    }
+
+    private void written() {
+        if (sync == Sync.ALWAYS) {
+            force();
+        } else if (sync == Sync.INTERVAL) {
+            long now = System.nanoTime();
+            if (now - lastSync >= syncIntervalNanos) {
+                force();
+                lastSync = now;
+            }
+        }
+    }
+
+    private void force() {
+        if (current != null) {
+            current.buffer.force();
+        }
+        checkpoint.force();
+    }
+
+    private void roll() {
+        if (current != null) {
+            current.buffer.force();
+        }
+        Path file = directory.resolve(String.format("%020d%s", nextSequence, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            current = new Segment(file, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create the outbox segment " + file, e);
+        }
+        segments.add(current);
+    }
+
+    /**
+     * Negates the length of the entry, which keeps the end of segment marker and the following entries readable.
+     */
+    private void markSettled(long sequence) {
+        for (Segment segment : segments) {
+            int offset = segment.offsetOf(sequence);
+            if (offset >= 0) {
+                segment.buffer.putInt(offset, -Math.abs(segment.buffer.getInt(offset)));
+                return;
+            }
+        }
+    }
+
+    private void deleteSettledSegments() {
+        Segment oldest;
+        while ((oldest = segments.peek()) != null && oldest != current && oldest.lastSequence <= settled) {
+            segments.poll();
+            try {
+                // the mapping stays valid until the buffer is collected, the space is then released
+                Files.deleteIfExists(oldest.file);
+            } catch (IOException e) {
+                log.warn("Unable to delete the outbox segment " + oldest.file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private List<Entry> recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+        }
+        List<Entry> entries = new ArrayList<>();
+        for (Path file : files) {
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            }
+            Segment segment = new Segment(file, buffer);
+            read(segment, entries);
+            nextSequence = Math.max(nextSequence, segment.lastSequence + 1);
+            if (segment.lastSequence <= settled) {
+                Files.deleteIfExists(file);
+            } else {
+                segments.add(segment);
+            }
+        }
+        if (!entries.isEmpty()) {
+            log.info("Replaying " + entries.size() + " unacknowledged MQTT messages from the outbox " + directory);
+        }
+        return entries;
+    }
+
+    /**
+     * Reads the unsettled entries of a segment, and the entries settled ahead of the checkpoint.
+     */
+    private void read(Segment segment, List<Entry> entries) {
+        MappedByteBuffer buffer = segment.buffer;
+        segment.lastSequence = settled;
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int start = buffer.position();
+            int length = buffer.getInt(start);
+            boolean settledEntry = length < 0;
+            length = Math.abs(length);
+            if (length == 0 || length > buffer.remaining() - HEADER_SIZE) {
+                break;
+            }
+            if (settledEntry) {
+                long sequence = buffer.getLong(start + HEADER_SIZE);
+                if (sequence > settled) {
+                    settledAhead.add(sequence);
+                }
+                segment.add(sequence, start);
+                buffer.position(start + HEADER_SIZE + length);
+                continue;
+            }
+            ByteBuffer body = buffer.duplicate().position(start + HEADER_SIZE).limit(start + HEADER_SIZE + length);
+            crc.reset();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != buffer.getInt(start + Integer.BYTES)) {
+                log.warn("Ignoring the corrupted end of the outbox segment, from offset " + start);
+                break;
+            }
+            long sequence = body.getLong();
+            byte[] topic = new byte[Short.toUnsignedInt(body.getShort())];
+            body.get(topic);
+            MqttQos qos = MqttQos.fromCode(body.get());
+            boolean retain = body.get() == 1;
+            byte[] payload = new byte[body.remaining()];
+            body.get(payload);
+            if (sequence > settled) {
+                entries.add(new Entry(sequence, Mqtt5Publish.builder()
+                        .topic(new String(topic, StandardCharsets.UTF_8))
+                        .qos(qos)
+                        .retain(retain)
+                        .payload(payload)
+                        .build()));
+            }
+            segment.add(sequence, start);
+            buffer.position(start + HEADER_SIZE + length);
+        }
+    }
+
+    /**
+     * A segment file, with the offsets of its entries. The entries of a segment have consecutive sequence numbers.
+     */
+    private static final class Segment {
+
+        private final Path file;
+        private final MappedByteBuffer buffer;
+        private long firstSequence = -1;
+        private long lastSequence;
+        private int[] offsets = new int[64];
+        private int count;
+
+        private Segment(Path file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        private void add(long sequence, int offset) {
+            if (count == 0) {
+                firstSequence = sequence;
+            }
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count++] = offset;
+            lastSequence = sequence;
+        }
+
+        /**
+         * @return the offset of the entry in the segment, or {@code -1} if it is in another segment
+         */
+        private int offsetOf(long sequence) {
+            long index = sequence - firstSequence;
+            return count > 0 && index >= 0 && index < count ? offsets[(int) index] : -1;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes the payload of outgoing messages of the {@code smallrye-mqtt-hivemq} connector.
+ * <p>
+ * Implementations are CDI beans qualified with {@link io.smallrye.common.annotation.Identifier} and selected per channel
+ * with the {@code serializer} attribute. The serializer takes precedence over the built-in encoders for the payload
+ * classes it supports. Support is resolved once per payload class and then cached, so {@link #supports(Class)} must
+ * only depend on the class.
+ */
+public interface HiveMQPayloadSerializer {
+
+    /**
+     * @param type the payload class
+     * @return {@code true} if this serializer can encode payloads of the given class
+     */
+    boolean supports(Class<?> type);
+
+    /**
+     * @param payload the payload to encode, never {@code null}
+     * @return the encoded payload, handed to the MQTT client without copy
+     */
+    ByteBuffer serialize(Object payload);
+}
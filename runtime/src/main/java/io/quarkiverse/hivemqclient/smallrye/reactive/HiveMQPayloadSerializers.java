@@ -0,0 +1,90 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.mutiny.core.buffer.Buffer;
+
+/**
+ * Resolves the {@link HiveMQPayloadSerializer} of each outgoing payload class, once per class.
+ * <p>
+ * The channel serializer, if any, is consulted first, then the built-in encoders. Payloads no encoder supports are
+ * encoded to JSON.
+ */
+class HiveMQPayloadSerializers {
+
+    private static final List<HiveMQPayloadSerializer> BUILT_IN = List.of(
+            encoder(byte[].class, payload -> ByteBuffer.wrap((byte[]) payload)),
+            encoder(ByteBuffer.class, payload -> (ByteBuffer) payload),
+            encoder(Buffer.class, payload -> nioBuffer(((Buffer) payload).getDelegate())),
+            encoder(io.vertx.core.buffer.Buffer.class, payload -> nioBuffer((io.vertx.core.buffer.Buffer) payload)),
+            encoder(JsonObject.class, payload -> nioBuffer(((JsonObject) payload).toBuffer())),
+            encoder(JsonArray.class, payload -> nioBuffer(((JsonArray) payload).toBuffer())),
+            encoder(CharSequence.class, HiveMQPayloadSerializers::text),
+            encoder(Number.class, HiveMQPayloadSerializers::text),
+            encoder(Boolean.class, HiveMQPayloadSerializers::text),
+            encoder(Character.class, HiveMQPayloadSerializers::text));
+
+    private static final HiveMQPayloadSerializer JSON = encoder(Object.class,
+            payload -> nioBuffer(Json.encodeToBuffer(payload)));
+
+    private final HiveMQPayloadSerializer serializer;
+    private final Map<Class<?>, HiveMQPayloadSerializer> resolved = new ConcurrentHashMap<>();
+
+    /**
+     * @param serializer the serializer configured on the channel, may be {@code null}
+     */
+    HiveMQPayloadSerializers(HiveMQPayloadSerializer serializer) {
+        this.serializer = serializer;
+    }
+
+    ByteBuffer serialize(Object payload) {
+        Class<?> type = payload.getClass();
+        HiveMQPayloadSerializer encoder = resolved.get(type);
+        if (encoder == null) {
+            encoder = resolved.computeIfAbsent(type, this::resolve);
+        }
+        return encoder.serialize(payload);
+    }
+
+    private HiveMQPayloadSerializer resolve(Class<?> type) {
+        if (serializer != null && serializer.supports(type)) {
+            return serializer;
+        }
+        for (HiveMQPayloadSerializer encoder : BUILT_IN) {
+            if (encoder.supports(type)) {
+                return encoder;
+            }
+        }
+        return JSON;
+    }
+
+    private static ByteBuffer text(Object payload) {
+        return ByteBuffer.wrap(payload.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ByteBuffer nioBuffer(io.vertx.core.buffer.Buffer buffer) {
+        return buffer.getByteBuf().nioBuffer();
+    }
+
+    private static HiveMQPayloadSerializer encoder(Class<?> supported, Function<Object, ByteBuffer> encode) {
+        return new HiveMQPayloadSerializer() {
+            @Override
+            public boolean supports(Class<?> type) {
+                return supported.isAssignableFrom(type);
+            }
+
+            @Override
+            public ByteBuffer serialize(Object payload) {
+                return encode.apply(payload);
+            }
+        };
+    }
+}
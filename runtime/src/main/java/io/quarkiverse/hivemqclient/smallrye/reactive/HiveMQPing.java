@@ -2,17 +2,36 @@ package io.quarkiverse.hivemqclient.smallrye.reactive;
 
 import static io.smallrye.reactive.messaging.mqtt.i18n.MqttLogging.log;
 
+import java.nio.ByteBuffer;
 import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.hivemq.client.mqtt.datatypes.MqttQos;
-import com.hivemq.client.mqtt.mqtt3.Mqtt3AsyncClient;
-
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import io.reactivex.Flowable;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.TimeoutException;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.Cancellable;
+
+/**
+ * Measures the round trip to the broker: a ping is published on a topic unique to the client and the time until the
+ * broker delivers it back is recorded. The topic being unique, the instances sharing a broker do not receive each other's
+ * pings.
+ * <p>
+ * The topic is derived from the client identifier when there is one, so a persistent session resumed by a later start
+ * reuses its subscription. Otherwise, it is unsubscribed when the client is closed.
+ */
 public class HiveMQPing {
 
+    private final static int CONNECT_TIMEOUT_SEC = 10;
     private final static int PING_TIMEOUT_SEC = 15;
+    private final static String PING_TOPIC_PREFIX = "hivemq-client/ping/";
     private final static String DEFAULT_ERROR_MSG = """
                 Unable to reach HiveMQ server.
                 Possible causes:
@@ -24,82 +43,172 @@ public class HiveMQPing {
                 Please review your configuration and try again.
             """;
 
-    private HiveMQPing() {
+    private final HiveMQClients.ClientHolder holder;
+    private final String topic;
+    private final Map<Long, CompletableFuture<Long>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Uni<HiveMQProtocolClient> subscription;
+    private volatile boolean subscriptionFailed;
+    private volatile long roundTripNanos = -1;
+    private volatile Cancellable periodic;
+    private volatile Cancellable pongs;
+
+    /**
+     * @param holder the client
+     * @param clientId the client identifier, or {@code null} if generated
+     */
+    HiveMQPing(HiveMQClients.ClientHolder holder, String clientId) {
+        this.holder = holder;
+        this.topic = topicOf(clientId);
+        this.subscription = holder.connect()
+                .ifNoItem().after(Duration.ofSeconds(CONNECT_TIMEOUT_SEC)).fail()
+                .onItem().transformToUni(client -> Uni.createFrom().<HiveMQProtocolClient> emitter(emitter -> pongs = holder
+                        .subscribe(topic, MqttQos.AT_LEAST_ONCE, publish -> true, () -> emitter.complete(client))
+                        .subscribe().with(this::onPong, emitter::fail)))
+                .onSubscription().invoke(() -> subscriptionFailed = false)
+                .onFailure().invoke(() -> subscriptionFailed = true)
+                // the subscription is kept for the lifetime of the client, it is only retried if it failed
+                .memoize().until(() -> subscriptionFailed);
     }
 
+    /**
+     * Waits for the reachability probe of the client. The probe runs once per client, when the client is created.
+     *
+     * @param holder the client
+     * @return whether the broker answered the ping
+     */
     public static boolean isServerReachable(HiveMQClients.ClientHolder holder) {
-        Mqtt3AsyncClient clientAsync = initializeMqttClient(holder);
-        if (clientAsync == null || !HiveMQPing.checkConnection(clientAsync)) {
-            log.warn(DEFAULT_ERROR_MSG);
-            return false;
-        }
+        return holder.probe().await().indefinitely();
+    }
+
+    /**
+     * Connects the client and pings the broker. Nothing blocks: the returned {@link Uni} completes once the pong is
+     * received, or one of the steps timed out.
+     *
+     * @return {@code true} if the pong was received, {@code false} otherwise
+     */
+    Uni<Boolean> checkConnection() {
+        return ping()
+                .replaceWith(true)
+                .onFailure(TimeoutException.class).recoverWithItem(e -> {
+                    log.warn("MQTT ping timeout. Broker may be slow or unreachable. " +
+                            "Check network connectivity and broker responsiveness.", e);
+                    return false;
+                })
+                .onFailure().recoverWithItem(e -> {
+                    log.error("MQTT connection health check failed: " + e.getMessage() + ". " +
+                            "Verify broker configuration, authentication credentials, and network connectivity.", e);
+                    return false;
+                })
+                .invoke(reachable -> {
+                    if (!reachable) {
+                        log.warn(DEFAULT_ERROR_MSG);
+                    }
+                });
+    }
 
-        return true;
+    /**
+     * Publishes a ping and waits for it to come back.
+     *
+     * @return the round trip
+     */
+    Uni<Duration> ping() {
+        long id = sequence.incrementAndGet();
+        CompletableFuture<Long> pong = new CompletableFuture<>();
+        pending.put(id, pong);
+        return subscription
+                .onItem().transformToUni(client -> {
+                    long sent = System.nanoTime();
+                    send(client, id);
+                    return Uni.createFrom().completionStage(pong).map(received -> Duration.ofNanos(received - sent));
+                })
+                .ifNoItem().after(Duration.ofSeconds(PING_TIMEOUT_SEC)).fail()
+                .invoke(rtt -> roundTripNanos = rtt.toNanos())
+                .onFailure().invoke(() -> roundTripNanos = -1)
+                .eventually(() -> pending.remove(id));
     }
 
-    private static boolean checkConnection(Mqtt3AsyncClient client) {
-        CompletableFuture<Boolean> pongReceived = new CompletableFuture<>();
-        String pongTopic = "pong";
-        try {
-            if (!client.getConfig().getState().isConnected()) {
-                client.connect()
-                        .whenComplete((connAck, throwable) -> {
-                            if (throwable != null) {
-                                log.unableToConnectToBroker(throwable);
-                            }
-                        }).get(5, TimeUnit.SECONDS);
-            }
-
-            if (!client.getConfig().getState().isConnected()) {
-                log.unableToConnectToBroker(new Exception("Client is not connected"));
-                return false;
-            }
-
-            client.subscribeWith()
-                    .topicFilter(pongTopic)
-                    .qos(MqttQos.AT_LEAST_ONCE)
-                    .callback(publish -> {
-                        String payload = new String(publish.getPayloadAsBytes());
-                        if ("ping".equals(payload)) {
-                            pongReceived.complete(true);
-                        }
-                    })
-                    .send()
-                    .get(5, TimeUnit.SECONDS);
-
-            Thread.sleep(500);
-
-            client.publishWith()
-                    .topic(pongTopic)
-                    .qos(MqttQos.AT_LEAST_ONCE)
-                    .payload("ping".getBytes())
-                    .send()
-                    .get(5, TimeUnit.SECONDS);
-
-            return pongReceived.get(PING_TIMEOUT_SEC, TimeUnit.SECONDS);
-        } catch (TimeoutException e) {
-            log.warn("MQTT ping timeout after " + PING_TIMEOUT_SEC + " seconds. " +
-                    "Broker may be slow or unreachable. Check network connectivity and broker responsiveness.", e);
-            return false;
-        } catch (Exception e) {
-            log.error("MQTT connection health check failed: " + e.getMessage() + ". " +
-                    "Verify broker configuration, authentication credentials, and network connectivity.", e);
-            return false;
-        } finally {
-            client.unsubscribeWith()
-                    .topicFilter(pongTopic)
-                    .send();
+    /**
+     * Pings the broker periodically, so the round trip stays up to date.
+     *
+     * @param interval the time between two pings
+     */
+    void start(Duration interval) {
+        periodic = Multi.createFrom().ticks().every(interval)
+                .onOverflow().drop()
+                .onItem().transformToUniAndConcatenate(tick -> ping()
+                        .onFailure().invoke(failure -> log.debug("MQTT ping failed: " + failure.getMessage()))
+                        .onFailure().recoverWithNull())
+                .subscribe().with(rtt -> {
+                });
+    }
+
+    /**
+     * Stops pinging and cancels the subscription to the ping topic, called before the client disconnects.
+     */
+    void stop() {
+        Cancellable cancellable = periodic;
+        if (cancellable != null) {
+            cancellable.cancel();
+        }
+        Cancellable subscribed = pongs;
+        if (subscribed != null) {
+            // the client unsubscribes from the topic once its last subscriber is cancelled
+            subscribed.cancel();
         }
     }
 
-    private static Mqtt3AsyncClient initializeMqttClient(HiveMQClients.ClientHolder holder) {
-        try {
-            return holder.connect()
-                    .await().atMost(Duration.ofSeconds(10))
-                    .toAsync();
-        } catch (Exception e) {
-            return null;
+    /**
+     * @return the round trip of the last ping, in milliseconds, or {@code NaN} if the last ping failed or none completed yet
+     */
+    double getRoundTripMillis() {
+        long nanos = roundTripNanos;
+        return nanos < 0 ? Double.NaN : nanos / 1_000_000.0;
+    }
+
+    String getTopic() {
+        return topic;
+    }
+
+    /**
+     * @param clientId the client identifier, or {@code null}
+     * @return the ping topic of the client, random if the identifier is missing or not usable in a topic name
+     */
+    static String topicOf(String clientId) {
+        boolean usable = clientId != null && !clientId.isEmpty() && clientId.indexOf('+') < 0
+                && clientId.indexOf('#') < 0;
+        return PING_TOPIC_PREFIX + (usable ? clientId : UUID.randomUUID().toString());
+    }
+
+    private void send(HiveMQProtocolClient client, long id) {
+        client.publish(Flowable.just(Mqtt5Publish.builder()
+                .topic(topic)
+                .qos(MqttQos.AT_LEAST_ONCE)
+                .payload(ByteBuffer.allocate(Long.BYTES).putLong(0, id))
+                .build()))
+                .subscribe(result -> {
+                    if (result.error() != null) {
+                        fail(id, result.error());
+                    }
+                }, failure -> fail(id, failure));
+    }
+
+    private void onPong(Mqtt5Publish publish) {
+        long received = System.nanoTime();
+        ByteBuffer payload = publish.getPayload().orElse(null);
+        if (payload == null || payload.remaining() != Long.BYTES) {
+            return;
+        }
+        CompletableFuture<Long> pong = pending.remove(payload.getLong(payload.position()));
+        if (pong != null) {
+            pong.complete(received);
         }
     }
 
+    private void fail(long id, Throwable failure) {
+        CompletableFuture<Long> pong = pending.remove(id);
+        if (pong != null) {
+            pong.completeExceptionally(failure);
+        }
+    }
 }
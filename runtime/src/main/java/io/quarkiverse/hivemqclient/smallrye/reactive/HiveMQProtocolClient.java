@@ -0,0 +1,74 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import com.hivemq.client.mqtt.MqttClientState;
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import io.reactivex.Flowable;
+import io.smallrye.mutiny.Uni;
+
+/**
+ * The operations of the MQTT 3 and MQTT 5 clients used by the connector.
+ * <p>
+ * Publishes are always represented as {@link Mqtt5Publish}, the MQTT 3 client wraps them in, and unwraps them from, the
+ * MQTT 3 views of the HiveMQ client, so the conversion does not copy them.
+ */
+interface HiveMQProtocolClient {
+
+    /**
+     * @return the MQTT version used by the client, {@code 3} or {@code 5}
+     */
+    int protocolVersion();
+
+    MqttClientState getState();
+
+    /**
+     * Connects the client.
+     *
+     * @return the reason code returned by the broker
+     */
+    Uni<String> connect();
+
+    Uni<Void> disconnect();
+
+    /**
+     * @return all the publishes received by the client, including the ones of subscriptions it did not make itself, such
+     *         as those of a resumed session; the QoS 1 and 2 publishes are only acknowledged to the broker once
+     *         {@link ReceivedPublish#acknowledge} is called
+     */
+    Flowable<ReceivedPublish> publishes();
+
+    Uni<Void> subscribe(String filter, MqttQos qos);
+
+    Uni<Void> unsubscribe(String filter);
+
+    /**
+     * @param publishes the publishes to send
+     * @return the result of each publish, emitted once the broker acknowledged it (immediately for QoS 0)
+     */
+    Flowable<PublishResult> publish(Flowable<Mqtt5Publish> publishes);
+
+    /**
+     * The outcome of a publish.
+     *
+     * @param publish the publish that was sent; results are emitted in the order of the publishes of each QoS
+     * @param error the reason why the publish failed, or {@code null} if it succeeded
+     */
+    record PublishResult(Mqtt5Publish publish, Throwable error) {
+    }
+
+    /**
+     * A received publish.
+     *
+     * @param publish the publish
+     * @param acknowledge sends the acknowledgement of the publish to the broker; later calls do nothing, as does the
+     *        acknowledgement of a QoS 0 publish
+     * @param topic the topic of the publish, converted to a string once by the dispatcher, or {@code null} before
+     */
+    record ReceivedPublish(Mqtt5Publish publish, Runnable acknowledge, String topic) {
+
+        ReceivedPublish(Mqtt5Publish publish, Runnable acknowledge) {
+            this(publish, acknowledge, null);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import static io.smallrye.reactive.messaging.mqtt.i18n.MqttLogging.log;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import io.reactivex.processors.FlowableProcessor;
+import io.reactivex.processors.UnicastProcessor;
+
+/**
+ * A single {@link HiveMQProtocolClient#publish(io.reactivex.Flowable)} stream kept open for the whole lifetime of a sink.
+ * <p>
+ * Every outgoing publish is emitted into the same flow and the returned {@link HiveMQProtocolClient.PublishResult}s are
+ * correlated back to the pending sends. The HiveMQ client emits the results of each QoS in the order of the publishes,
+ * so the pending sends are kept in one FIFO queue per QoS and completed in order, without looking at the publishes.
+ * <p>
+ * When the flow fails, the pending sends are failed and the next send subscribes a fresh flow to the client, which may
+ * have reconnected in the meantime.
+ */
+class HiveMQPublishStream {
+
+    // indexed by QoS code; the fields are guarded by this, together with the emission of the publishes
+    @SuppressWarnings("unchecked")
+    private final ArrayDeque<CompletableFuture<Void>>[] pending = new ArrayDeque[] { new ArrayDeque<>(),
+            new ArrayDeque<>(), new ArrayDeque<>() };
+    private FlowableProcessor<Mqtt5Publish> publishes = UnicastProcessor.create();
+    private HiveMQProtocolClient client;
+    private boolean subscribed;
+
+    /**
+     * Subscribes the publish flow to the given client. Publishes sent before the stream is opened are buffered.
+     *
+     * @param client the connected client
+     */
+    synchronized void open(HiveMQProtocolClient client) {
+        this.client = client;
+        subscribe();
+    }
+
+    private void subscribe() {
+        if (!subscribed && client != null) {
+            subscribed = true;
+            FlowableProcessor<Mqtt5Publish> flow = publishes;
+            client.publish(flow).subscribe(this::onResult, error -> onFailure(flow, error));
+        }
+    }
+
+    /**
+     * Emits the publish into the stream.
+     *
+     * @param publish the publish to send
+     * @return a stage completed when the broker acknowledged the publish (immediately for QoS 0), or failed if it could
+     *         not be delivered
+     */
+    CompletionStage<Void> send(Mqtt5Publish publish) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        synchronized (this) {
+            subscribe();
+            pending[publish.getQos().getCode()].add(result);
+            publishes.onNext(publish);
+        }
+        return result;
+    }
+
+    /**
+     * Completes the stream once the pending publishes have been sent.
+     */
+    synchronized void close() {
+        publishes.onComplete();
+    }
+
+    private void onResult(HiveMQProtocolClient.PublishResult result) {
+        CompletableFuture<Void> send;
+        synchronized (this) {
+            send = pending[result.publish().getQos().getCode()].poll();
+        }
+        if (send == null) {
+            log.warn("Received a publish result without matching pending message on topic " + result.publish().getTopic());
+            return;
+        }
+        if (result.error() != null) {
+            send.completeExceptionally(result.error());
+        } else {
+            send.complete(null);
+        }
+    }
+
+    private void onFailure(FlowableProcessor<Mqtt5Publish> flow, Throwable error) {
+        log.error("MQTT publish stream failed: " + error.getMessage(), error);
+        ArrayDeque<CompletableFuture<Void>> failed = new ArrayDeque<>();
+        synchronized (this) {
+            if (flow != publishes) {
+                return;
+            }
+            for (ArrayDeque<CompletableFuture<Void>> sends : pending) {
+                failed.addAll(sends);
+                sends.clear();
+            }
+            publishes = UnicastProcessor.create();
+            subscribed = false;
+        }
+        failed.forEach(send -> send.completeExceptionally(error));
+    }
+}
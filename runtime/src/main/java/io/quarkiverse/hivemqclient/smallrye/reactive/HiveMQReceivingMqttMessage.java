@@ -1,26 +1,76 @@
 package io.quarkiverse.hivemqclient.smallrye.reactive;
 
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.function.Function;
 
-import com.hivemq.client.mqtt.mqtt3.message.publish.Mqtt3Publish;
+import org.eclipse.microprofile.reactive.messaging.Metadata;
+
+import com.hivemq.client.mqtt.mqtt5.datatypes.Mqtt5UserProperty;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
 
 import io.netty.handler.codec.mqtt.MqttQoS;
 import io.smallrye.reactive.messaging.mqtt.MqttFailureHandler;
 import io.smallrye.reactive.messaging.mqtt.MqttMessage;
 
 public class HiveMQReceivingMqttMessage implements MqttMessage<byte[]> {
-    final Mqtt3Publish message;
+    private static final ByteBuffer EMPTY_PAYLOAD = ByteBuffer.allocate(0).asReadOnlyBuffer();
+
+    final Mqtt5Publish message;
     final MqttFailureHandler onNack;
+    private final Runnable acknowledge;
+    private final Metadata metadata;
+    private volatile byte[] payload;
+    private volatile String topic;
+
+    HiveMQReceivingMqttMessage(Mqtt5Publish message, MqttFailureHandler onNack) {
+        this(message, HiveMQAcknowledgements.NONE, onNack);
+    }
 
-    HiveMQReceivingMqttMessage(Mqtt3Publish message, MqttFailureHandler onNack) {
+    /**
+     * @param acknowledge sends the acknowledgement of the message to the broker, called when the message is acked or
+     *        nacked
+     */
+    HiveMQReceivingMqttMessage(Mqtt5Publish message, Runnable acknowledge, MqttFailureHandler onNack) {
+        this(message, null, acknowledge, onNack, Metadata.empty());
+    }
+
+    /**
+     * @param topic the topic of the message already converted to a string, or {@code null} to convert it on first
+     *        access
+     * @param metadata the metadata of the message, such as its tracing context
+     */
+    HiveMQReceivingMqttMessage(Mqtt5Publish message, String topic, Runnable acknowledge, MqttFailureHandler onNack,
+            Metadata metadata) {
         this.message = message;
+        this.topic = topic;
+        this.acknowledge = acknowledge;
         this.onNack = onNack;
+        this.metadata = metadata;
     }
 
+    /**
+     * The payload is copied out of the MQTT message on first access only, later calls return the same array.
+     */
     @Override
     public byte[] getPayload() {
-        return this.message.getPayloadAsBytes();
+        byte[] bytes = payload;
+        if (bytes == null) {
+            bytes = message.getPayloadAsBytes();
+            payload = bytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return a read-only view of the payload, which does not copy it
+     */
+    public ByteBuffer getPayloadAsByteBuffer() {
+        return message.getPayload().orElse(EMPTY_PAYLOAD);
     }
 
     public int getMessageId() {
@@ -40,12 +90,69 @@ public class HiveMQReceivingMqttMessage implements MqttMessage<byte[]> {
     }
 
     public String getTopic() {
-        return message.getTopic().toString();
+        String name = topic;
+        if (name == null) {
+            name = message.getTopic().toString();
+            topic = name;
+        }
+        return name;
+    }
+
+    /**
+     * @return the remaining lifetime of the message in seconds, received with MQTT 5 only
+     */
+    public OptionalLong getMessageExpiryInterval() {
+        return message.getMessageExpiryInterval();
+    }
+
+    /**
+     * @return the content type of the payload, received with MQTT 5 only
+     */
+    public Optional<String> getContentType() {
+        return message.getContentType().map(Object::toString);
+    }
+
+    /**
+     * @return the topic a reply should be sent to, received with MQTT 5 only
+     */
+    public Optional<String> getResponseTopic() {
+        return message.getResponseTopic().map(Object::toString);
+    }
+
+    /**
+     * @return a read-only view of the correlation data of a request/response exchange, received with MQTT 5 only
+     */
+    public Optional<ByteBuffer> getCorrelationData() {
+        return message.getCorrelationData();
+    }
+
+    /**
+     * @return the user properties, in the order they were sent; empty unless received with MQTT 5
+     */
+    public List<? extends Mqtt5UserProperty> getUserProperties() {
+        return message.getUserProperties().asList();
+    }
+
+    @Override
+    public Metadata getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public Function<Metadata, CompletionStage<Void>> getAckWithMetadata() {
+        return this::acknowledge;
+    }
+
+    private CompletionStage<Void> acknowledge(Metadata metadata) {
+        acknowledge.run();
+        return CompletableFuture.completedFuture(null);
     }
 
     @Override
     public CompletionStage<Void> nack(Throwable reason) {
-        return this.onNack.handle(reason);
+        // settled with the broker whatever the failure handler does, a missing acknowledgement would hold back the
+        // acknowledgements of all the next messages of the connection
+        return this.onNack.handle(reason).whenComplete((ignored, failure) -> acknowledge.run());
     }
 
     @Override
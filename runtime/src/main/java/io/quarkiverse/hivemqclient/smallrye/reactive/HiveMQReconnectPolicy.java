@@ -0,0 +1,84 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import static io.smallrye.reactive.messaging.mqtt.i18n.MqttLogging.log;
+import static java.lang.String.format;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.hivemq.client.mqtt.lifecycle.MqttClientDisconnectedContext;
+import com.hivemq.client.mqtt.lifecycle.MqttClientDisconnectedListener;
+import com.hivemq.client.mqtt.lifecycle.MqttDisconnectSource;
+
+/**
+ * Reconnects a client with an exponential backoff and full jitter: the delay before attempt {@code n} is drawn uniformly
+ * between {@code 0} and {@code min(max-delay, interval * 2^n)}.
+ * <p>
+ * The jitter spreads the reconnections of clients disconnected at the same time, for instance by a broker restart, so
+ * they do not all reconnect in the same instant.
+ * <p>
+ * When the broker still has the session of the client, the subscriptions are part of it and are not made again.
+ */
+final class HiveMQReconnectPolicy implements MqttClientDisconnectedListener {
+
+    private final int maxAttempts;
+    private final long intervalMillis;
+    private final long maxDelayMillis;
+
+    /**
+     * @param maxAttempts the number of reconnect attempts after which the client stays disconnected, negative for no
+     *        limit
+     * @param intervalSeconds the delay ceiling of the first attempt, doubled at each attempt
+     * @param maxDelaySeconds the upper bound of the delay ceiling
+     */
+    HiveMQReconnectPolicy(int maxAttempts, int intervalSeconds, int maxDelaySeconds) {
+        if (intervalSeconds < 0 || maxDelaySeconds < 0) {
+            throw new IllegalArgumentException("The reconnect interval and maximum delay must not be negative, got "
+                    + intervalSeconds + " and " + maxDelaySeconds);
+        }
+        this.maxAttempts = maxAttempts;
+        this.intervalMillis = TimeUnit.SECONDS.toMillis(intervalSeconds);
+        this.maxDelayMillis = TimeUnit.SECONDS.toMillis(maxDelaySeconds);
+    }
+
+    static HiveMQReconnectPolicy of(HiveMQMqttConnectorCommonConfiguration options) {
+        return new HiveMQReconnectPolicy(options.getReconnectAttempts(), options.getReconnectIntervalSeconds(),
+                options.getReconnectMaxDelaySeconds());
+    }
+
+    @Override
+    public void onDisconnected(MqttClientDisconnectedContext context) {
+        if (context.getSource() == MqttDisconnectSource.USER) {
+            return;
+        }
+        int attempts = context.getReconnector().getAttempts();
+        if (maxAttempts >= 0 && attempts >= maxAttempts) {
+            log.warn(format("giving up reconnecting to %s:%d after %d attempts",
+                    context.getClientConfig().getServerHost(), context.getClientConfig().getServerPort(), attempts));
+            return;
+        }
+        long delay = delayMillis(attempts, ThreadLocalRandom.current());
+        log.debug(format("reconnecting to %s:%d in %d ms (attempt %d)", context.getClientConfig().getServerHost(),
+                context.getClientConfig().getServerPort(), delay, attempts + 1));
+        context.getReconnector()
+                .reconnect(true)
+                .resubscribeIfSessionPresent(false)
+                .delay(delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param attempts the number of failed attempts since the client was last connected
+     * @param random the source of the jitter
+     * @return the delay before the next attempt, in milliseconds
+     */
+    long delayMillis(int attempts, Random random) {
+        return random.nextLong(ceilingMillis(attempts) + 1);
+    }
+
+    long ceilingMillis(int attempts) {
+        int shift = Math.min(attempts, 30);
+        // compared before shifting, so the doubled interval cannot overflow
+        return intervalMillis > maxDelayMillis >> shift ? maxDelayMillis : intervalMillis << shift;
+    }
+}
@@ -0,0 +1,93 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.hivemq.client.mqtt.datatypes.MqttUtf8String;
+import com.hivemq.client.mqtt.mqtt5.datatypes.Mqtt5UserProperties;
+import com.hivemq.client.mqtt.mqtt5.datatypes.Mqtt5UserProperty;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+/**
+ * Stamps the send time, in milliseconds since the epoch, on outgoing publishes, and reads it back from incoming ones.
+ * <p>
+ * With MQTT 5, the time is the {@value #PROPERTY} user property. MQTT 3 publishes have no properties, so their payload
+ * is prefixed with a header instead:
+ *
+ * <pre>
+ * int magic ("HMQT") | long sent-at | payload
+ * </pre>
+ *
+ * On reception, the header is moved to the user property, so both versions expose the time the same way. Consumers
+ * using MQTT 5 remove it too, as the producer may use MQTT 3.
+ */
+final class HiveMQTimestamps {
+
+    static final String PROPERTY = "hivemq-sent-at";
+    static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+    private static final int MAGIC = 0x484D5154;
+    private static final MqttUtf8String PROPERTY_NAME = MqttUtf8String.of(PROPERTY);
+
+    private HiveMQTimestamps() {
+        // avoid direct instantiation.
+    }
+
+    /**
+     * @param sentAt the send time
+     * @return the user property carrying the send time
+     */
+    static Mqtt5UserProperty property(long sentAt) {
+        return Mqtt5UserProperty.of(PROPERTY, Long.toString(sentAt));
+    }
+
+    /**
+     * @param payload the payload, left unchanged
+     * @param sentAt the send time
+     * @return the payload prefixed with the header
+     */
+    static ByteBuffer frame(ByteBuffer payload, long sentAt) {
+        return ByteBuffer.allocate(HEADER_SIZE + payload.remaining())
+                .putInt(MAGIC)
+                .putLong(sentAt)
+                .put(payload.duplicate())
+                .flip();
+    }
+
+    /**
+     * Moves the header of a payload to the {@value #PROPERTY} user property.
+     *
+     * @param publish the publish
+     * @return the publish without header, or the publish itself if its payload has no header
+     */
+    static Mqtt5Publish unframe(Mqtt5Publish publish) {
+        ByteBuffer payload = publish.getPayload().orElse(null);
+        if (payload == null || payload.remaining() < HEADER_SIZE || payload.getInt(payload.position()) != MAGIC) {
+            return publish;
+        }
+        long sentAt = payload.getLong(payload.position() + Integer.BYTES);
+        List<Mqtt5UserProperty> properties = new ArrayList<>(publish.getUserProperties().asList());
+        properties.add(property(sentAt));
+        return publish.extend()
+                .payload(payload.slice(payload.position() + HEADER_SIZE, payload.remaining() - HEADER_SIZE))
+                .userProperties(Mqtt5UserProperties.of(properties))
+                .build();
+    }
+
+    /**
+     * @param publish the publish
+     * @return the send time stamped on the publish, or {@code -1} if it is not stamped
+     */
+    static long sentAt(Mqtt5Publish publish) {
+        for (Mqtt5UserProperty property : publish.getUserProperties().asList()) {
+            if (property.getName().equals(PROPERTY_NAME)) {
+                try {
+                    return Long.parseLong(property.getValue().toString());
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+}
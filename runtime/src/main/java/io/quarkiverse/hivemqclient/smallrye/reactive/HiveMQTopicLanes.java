@@ -0,0 +1,59 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+/**
+ * Spreads topics over a fixed number of lanes. All the messages of a topic, or of a given topic level such as a device
+ * identifier, go to the same lane, so they keep their order while the other lanes proceed independently.
+ */
+final class HiveMQTopicLanes {
+
+    private final int lanes;
+    private final int level;
+
+    /**
+     * @param lanes the number of lanes
+     * @param level the index of the topic level used as ordering key, or a negative value to use the whole topic
+     */
+    HiveMQTopicLanes(int lanes, int level) {
+        if (lanes < 1) {
+            throw new IllegalArgumentException("The number of lanes must be positive, got " + lanes);
+        }
+        this.lanes = lanes;
+        this.level = level;
+    }
+
+    int lanes() {
+        return lanes;
+    }
+
+    /**
+     * @param topic the topic name
+     * @return the lane of the topic, between {@code 0} and {@code lanes - 1}
+     */
+    int laneOf(String topic) {
+        return Math.floorMod(hash(topic), lanes);
+    }
+
+    private int hash(String topic) {
+        if (level < 0) {
+            return topic.hashCode();
+        }
+        int start = 0;
+        for (int i = 0; i < level; i++) {
+            int separator = topic.indexOf('/', start);
+            if (separator < 0) {
+                // the topic is shorter than the configured level, fall back to the whole topic
+                return topic.hashCode();
+            }
+            start = separator + 1;
+        }
+        int end = topic.indexOf('/', start);
+        if (end < 0) {
+            end = topic.length();
+        }
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + topic.charAt(i);
+        }
+        return h;
+    }
+}
@@ -0,0 +1,295 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Matches topic names against MQTT topic filters, following the MQTT wildcard rules:
+ * <ul>
+ * <li>{@code +} matches exactly one topic level,</li>
+ * <li>{@code #} matches its parent level and any number of child levels,</li>
+ * <li>topics starting with {@code $} are not matched by filters starting with a wildcard.</li>
+ * </ul>
+ * The filters are stored in a trie with one node per level. Matching walks the topic name level by level and never
+ * allocates: levels are compared in place with their hash and {@link String#regionMatches}.
+ * <p>
+ * Lookups are lock-free; {@link #add} and {@link #remove} copy the modified nodes and may be called concurrently.
+ *
+ * @param <T> the type of the values associated with the filters
+ */
+class HiveMQTopicMatcher<T> {
+
+    private static final String SINGLE_LEVEL_WILDCARD = "+";
+    private static final String MULTI_LEVEL_WILDCARD = "#";
+
+    private final Node<T> root = new Node<>();
+
+    /**
+     * Creates a matcher for a single filter.
+     *
+     * @param filter the MQTT topic filter
+     * @return the matcher
+     */
+    static HiveMQTopicMatcher<String> of(String filter) {
+        HiveMQTopicMatcher<String> matcher = new HiveMQTopicMatcher<>();
+        matcher.add(filter, filter);
+        return matcher;
+    }
+
+    /**
+     * Associates the value with the filter.
+     *
+     * @param filter the MQTT topic filter
+     * @param value the value
+     * @throws IllegalArgumentException if the filter is not a valid MQTT topic filter
+     */
+    synchronized void add(String filter, T value) {
+        Node<T> node = root;
+        String[] levels = levels(filter);
+        for (int i = 0; i < levels.length; i++) {
+            String level = levels[i];
+            if (MULTI_LEVEL_WILDCARD.equals(level)) {
+                node.multiLevel = append(node.multiLevel, value);
+                return;
+            }
+            node = SINGLE_LEVEL_WILDCARD.equals(level) ? node.singleLevel() : node.child(level);
+        }
+        node.values = append(node.values, value);
+    }
+
+    /**
+     * Removes the association between the value and the filter, if any. The nodes left without filter are removed, so
+     * the trie does not grow with the filters that were ever added.
+     *
+     * @param filter the MQTT topic filter
+     * @param value the value
+     */
+    synchronized void remove(String filter, T value) {
+        String[] levels = levels(filter);
+        List<Node<T>> path = new ArrayList<>(levels.length + 1);
+        Node<T> node = root;
+        path.add(node);
+        for (String level : levels) {
+            if (MULTI_LEVEL_WILDCARD.equals(level)) {
+                node.multiLevel = without(node.multiLevel, value);
+                prune(path);
+                return;
+            }
+            node = SINGLE_LEVEL_WILDCARD.equals(level) ? node.singleLevel : node.find(level, 0, level.length());
+            if (node == null) {
+                return;
+            }
+            path.add(node);
+        }
+        node.values = without(node.values, value);
+        prune(path);
+    }
+
+    /**
+     * @return {@code true} if no filter is associated with a value
+     */
+    boolean isEmpty() {
+        return root.isEmpty();
+    }
+
+    /**
+     * Detaches the empty nodes of a path, from the deepest one up to the first node still used. The root is kept.
+     */
+    private static <T> void prune(List<Node<T>> path) {
+        for (int i = path.size() - 1; i > 0; i--) {
+            Node<T> node = path.get(i);
+            if (!node.isEmpty()) {
+                return;
+            }
+            Node<T> parent = path.get(i - 1);
+            if (parent.singleLevel == node) {
+                parent.singleLevel = null;
+            } else {
+                parent.removeChild(node);
+            }
+        }
+    }
+
+    /**
+     * @param topic the topic name
+     * @return {@code true} if at least one filter matches the topic
+     */
+    boolean matches(String topic) {
+        return matches(root, topic, 0, !topic.startsWith("$"));
+    }
+
+    /**
+     * Calls the consumer with the value of every filter matching the topic.
+     *
+     * @param topic the topic name
+     * @param consumer the consumer
+     */
+    void forEachMatch(String topic, Consumer<? super T> consumer) {
+        match(root, topic, 0, !topic.startsWith("$"), consumer);
+    }
+
+    private static <T> void match(Node<T> node, String topic, int start, boolean wildcards, Consumer<? super T> consumer) {
+        if (wildcards) {
+            emit(node.multiLevel, consumer);
+        }
+        if (start > topic.length()) {
+            emit(node.values, consumer);
+            return;
+        }
+        int end = topic.indexOf('/', start);
+        if (end < 0) {
+            end = topic.length();
+        }
+        Node<T> child = node.find(topic, start, end);
+        if (child != null) {
+            match(child, topic, end + 1, true, consumer);
+        }
+        Node<T> singleLevel = node.singleLevel;
+        if (wildcards && singleLevel != null) {
+            match(singleLevel, topic, end + 1, true, consumer);
+        }
+    }
+
+    private static boolean matches(Node<?> node, String topic, int start, boolean wildcards) {
+        if (wildcards && node.multiLevel.length > 0) {
+            return true;
+        }
+        if (start > topic.length()) {
+            return node.values.length > 0;
+        }
+        int end = topic.indexOf('/', start);
+        if (end < 0) {
+            end = topic.length();
+        }
+        Node<?> child = node.find(topic, start, end);
+        if (child != null && matches(child, topic, end + 1, true)) {
+            return true;
+        }
+        Node<?> singleLevel = node.singleLevel;
+        return wildcards && singleLevel != null && matches(singleLevel, topic, end + 1, true);
+    }
+
+    private static <T> void emit(Object[] values, Consumer<? super T> consumer) {
+        for (Object value : values) {
+            @SuppressWarnings("unchecked")
+            T t = (T) value;
+            consumer.accept(t);
+        }
+    }
+
+    private static String[] levels(String filter) {
+        if (filter == null || filter.isEmpty()) {
+            throw new IllegalArgumentException("The MQTT topic filter must not be empty");
+        }
+        String[] levels = filter.split("/", -1);
+        for (int i = 0; i < levels.length; i++) {
+            String level = levels[i];
+            boolean wildcard = SINGLE_LEVEL_WILDCARD.equals(level) || MULTI_LEVEL_WILDCARD.equals(level);
+            if (!wildcard && (level.contains(SINGLE_LEVEL_WILDCARD) || level.contains(MULTI_LEVEL_WILDCARD))) {
+                throw new IllegalArgumentException("Invalid MQTT topic filter '" + filter
+                        + "': wildcards must occupy an entire topic level");
+            }
+            if (MULTI_LEVEL_WILDCARD.equals(level) && i != levels.length - 1) {
+                throw new IllegalArgumentException("Invalid MQTT topic filter '" + filter
+                        + "': '#' must be the last topic level");
+            }
+        }
+        return levels;
+    }
+
+    private static int hash(String s, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h;
+    }
+
+    private static Object[] append(Object[] values, Object value) {
+        Object[] copy = Arrays.copyOf(values, values.length + 1);
+        copy[values.length] = value;
+        return copy;
+    }
+
+    private static Object[] without(Object[] values, Object value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i].equals(value)) {
+                Object[] copy = new Object[values.length - 1];
+                System.arraycopy(values, 0, copy, 0, i);
+                System.arraycopy(values, i + 1, copy, i, values.length - i - 1);
+                return copy;
+            }
+        }
+        return values;
+    }
+
+    private static final class Node<T> {
+
+        private static final Object[] NONE = new Object[0];
+
+        private final String level;
+        private final int hash;
+        private volatile Node<?>[] children = new Node<?>[0];
+        private volatile Node<T> singleLevel;
+        private volatile Object[] multiLevel = NONE;
+        private volatile Object[] values = NONE;
+
+        Node() {
+            this("");
+        }
+
+        Node(String level) {
+            this.level = level;
+            this.hash = level.hashCode();
+        }
+
+        @SuppressWarnings("unchecked")
+        Node<T> find(String topic, int start, int end) {
+            int length = end - start;
+            int h = hash(topic, start, end);
+            for (Node<?> child : children) {
+                if (child.hash == h && child.level.length() == length && topic.regionMatches(start, child.level, 0, length)) {
+                    return (Node<T>) child;
+                }
+            }
+            return null;
+        }
+
+        Node<T> child(String level) {
+            Node<T> child = find(level, 0, level.length());
+            if (child == null) {
+                child = new Node<>(level);
+                Node<?>[] copy = Arrays.copyOf(children, children.length + 1);
+                copy[children.length] = child;
+                children = copy;
+            }
+            return child;
+        }
+
+        void removeChild(Node<?> child) {
+            Node<?>[] current = children;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == child) {
+                    Node<?>[] copy = new Node<?>[current.length - 1];
+                    System.arraycopy(current, 0, copy, 0, i);
+                    System.arraycopy(current, i + 1, copy, i, current.length - i - 1);
+                    children = copy;
+                    return;
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return children.length == 0 && singleLevel == null && multiLevel.length == 0 && values.length == 0;
+        }
+
+        Node<T> singleLevel() {
+            if (singleLevel == null) {
+                singleLevel = new Node<>(SINGLE_LEVEL_WILDCARD);
+            }
+            return singleLevel;
+        }
+    }
+}
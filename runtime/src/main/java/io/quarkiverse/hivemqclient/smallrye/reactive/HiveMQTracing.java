@@ -0,0 +1,226 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.microprofile.reactive.messaging.Message;
+
+import com.hivemq.client.mqtt.datatypes.MqttUtf8String;
+import com.hivemq.client.mqtt.mqtt5.datatypes.Mqtt5UserPropertiesBuilder;
+import com.hivemq.client.mqtt.mqtt5.datatypes.Mqtt5UserProperty;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.propagation.TextMapGetter;
+import io.opentelemetry.context.propagation.TextMapPropagator;
+import io.opentelemetry.context.propagation.TextMapSetter;
+import io.smallrye.reactive.messaging.TracingMetadata;
+
+/**
+ * Creates the spans of the messages of a channel, and propagates their context in MQTT 5 user properties with the
+ * propagators of the application, W3C Trace Context by default.
+ * <p>
+ * Unsampled messages are left alone: no span is created and no context is propagated. The sampling decision of a
+ * message whose parent is known is read before anything is allocated, from the parent span on the producer side and from
+ * the flags of the {@value #TRACEPARENT} property on the consumer side.
+ */
+final class HiveMQTracing {
+
+    static final String TRACEPARENT = "traceparent";
+    static final String INSTRUMENTATION_NAME = "io.quarkiverse.hivemqclient";
+    static final AttributeKey<String> MESSAGING_SYSTEM = AttributeKey.stringKey("messaging.system");
+    static final AttributeKey<String> MESSAGING_DESTINATION = AttributeKey.stringKey("messaging.destination.name");
+    static final AttributeKey<String> MESSAGING_OPERATION = AttributeKey.stringKey("messaging.operation.type");
+    static final AttributeKey<Long> MESSAGING_BODY_SIZE = AttributeKey.longKey("messaging.message.body.size");
+
+    static final HiveMQTracing DISABLED = new HiveMQTracing(null, null);
+
+    private static final MqttUtf8String TRACEPARENT_NAME = MqttUtf8String.of(TRACEPARENT);
+    // a version 00 traceparent ends with the flags, two hex digits whose lowest bit is sampled
+    private static final int TRACEPARENT_LENGTH = 55;
+
+    private static final TextMapSetter<Mqtt5UserPropertiesBuilder> SETTER = (properties, key, value) -> {
+        if (properties != null) {
+            properties.add(key, value);
+        }
+    };
+
+    private static final TextMapGetter<Mqtt5Publish> GETTER = new TextMapGetter<>() {
+        @Override
+        public Iterable<String> keys(Mqtt5Publish publish) {
+            List<String> keys = new ArrayList<>();
+            for (Mqtt5UserProperty property : publish.getUserProperties().asList()) {
+                keys.add(property.getName().toString());
+            }
+            return keys;
+        }
+
+        @Override
+        public String get(Mqtt5Publish publish, String key) {
+            if (publish == null) {
+                return null;
+            }
+            for (Mqtt5UserProperty property : publish.getUserProperties().asList()) {
+                if (property.getName().toString().equals(key)) {
+                    return property.getValue().toString();
+                }
+            }
+            return null;
+        }
+    };
+
+    private final Tracer tracer;
+    private final TextMapPropagator propagator;
+
+    private HiveMQTracing(Tracer tracer, TextMapPropagator propagator) {
+        this.tracer = tracer;
+        this.propagator = propagator;
+    }
+
+    /**
+     * @param openTelemetry the OpenTelemetry of the application, or {@code null} to disable tracing
+     * @param enabled whether tracing is enabled on the channel
+     * @return the tracing of the channel
+     */
+    static HiveMQTracing of(OpenTelemetry openTelemetry, boolean enabled) {
+        if (openTelemetry == null || !enabled) {
+            return DISABLED;
+        }
+        return new HiveMQTracing(openTelemetry.getTracer(INSTRUMENTATION_NAME),
+                openTelemetry.getPropagators().getTextMapPropagator());
+    }
+
+    /**
+     * Starts the producer span of a message, child of the context of its {@link TracingMetadata}, or of the current
+     * context.
+     *
+     * @param message the message
+     * @param topic the topic it is published to
+     * @param size the size of its payload
+     * @return the context of the span, to be ended with {@link #end}, or {@code null} if the message is not sampled
+     */
+    Context publish(Message<?> message, String topic, int size) {
+        if (tracer == null) {
+            return null;
+        }
+        Context parent = TracingMetadata.fromMessage(message)
+                .map(TracingMetadata::getCurrentContext)
+                .orElseGet(Context::current);
+        SpanContext parentSpan = Span.fromContext(parent).getSpanContext();
+        if (parentSpan.isValid() && !parentSpan.isSampled()) {
+            return null;
+        }
+        return start(parent, SpanKind.PRODUCER, "publish", topic, size);
+    }
+
+    /**
+     * Writes the context of a span into user properties.
+     *
+     * @param context the context returned by {@link #publish}
+     * @param properties the user properties of the publish
+     */
+    void inject(Context context, Mqtt5UserPropertiesBuilder properties) {
+        propagator.inject(context, properties, SETTER);
+    }
+
+    /**
+     * Starts the consumer span of a received publish, child of the context it carries.
+     *
+     * @param publish the publish
+     * @return the context of the span, to be ended with {@link #end}, or {@code null} if the publish is not sampled
+     */
+    Context receive(Mqtt5Publish publish) {
+        if (tracer == null || isUnsampled(publish)) {
+            return null;
+        }
+        Context parent = propagator.extract(Context.root(), publish, GETTER);
+        return start(parent, SpanKind.CONSUMER, "process", publish.getTopic().toString(),
+                publish.getPayload().map(ByteBuffer::remaining).orElse(0));
+    }
+
+    /**
+     * @param context the context of the span
+     * @return the metadata handing the context to the application
+     */
+    static TracingMetadata metadata(Context context) {
+        return TracingMetadata.withCurrent(context);
+    }
+
+    /**
+     * Ends a span, if it was not ended yet.
+     *
+     * @param context the context of the span
+     * @param failure the failure of the message, or {@code null}
+     */
+    static void end(Context context, Throwable failure) {
+        Span span = Span.fromContext(context);
+        if (!span.isRecording()) {
+            return;
+        }
+        if (failure != null) {
+            span.recordException(failure);
+            span.setStatus(StatusCode.ERROR);
+        }
+        span.end();
+    }
+
+    /**
+     * @param message the message
+     * @param context the context of its span
+     * @return the message, ending the span when it is acked or nacked
+     */
+    static <T> Message<T> endOnSettlement(Message<T> message, Context context) {
+        return message
+                .withAckWithMetadata(metadata -> {
+                    end(context, null);
+                    return message.ack(metadata);
+                })
+                .withNackWithMetadata((reason, metadata) -> {
+                    end(context, reason);
+                    return message.nack(reason, metadata);
+                });
+    }
+
+    private Context start(Context parent, SpanKind kind, String operation, String topic, int size) {
+        Span span = tracer.spanBuilder(operation + " " + topic)
+                .setParent(parent)
+                .setSpanKind(kind)
+                .startSpan();
+        if (!span.getSpanContext().isSampled()) {
+            // dropped by the sampler, nothing to end or propagate
+            return null;
+        }
+        span.setAttribute(MESSAGING_SYSTEM, "mqtt");
+        span.setAttribute(MESSAGING_DESTINATION, topic);
+        span.setAttribute(MESSAGING_OPERATION, operation);
+        span.setAttribute(MESSAGING_BODY_SIZE, (long) size);
+        return parent.with(span);
+    }
+
+    /**
+     * Reads the sampled flag of the {@value #TRACEPARENT} property without parsing it.
+     *
+     * @return {@code true} if the publish carries a traceparent whose sampled flag is not set
+     */
+    private static boolean isUnsampled(Mqtt5Publish publish) {
+        for (Mqtt5UserProperty property : publish.getUserProperties().asList()) {
+            if (property.getName().equals(TRACEPARENT_NAME)) {
+                ByteBuffer value = property.getValue().toByteBuffer();
+                if (value.remaining() != TRACEPARENT_LENGTH) {
+                    return false;
+                }
+                int flags = Character.digit((char) value.get(value.position() + TRACEPARENT_LENGTH - 1), 16);
+                return flags >= 0 && (flags & 1) == 0;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,95 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import io.quarkiverse.hivemqclient.smallrye.reactive.HiveMQProtocolClient.ReceivedPublish;
+import io.quarkiverse.hivemqclient.test.MqttTestBase;
+
+/**
+ * Unit tests for HiveMQAcknowledgements.
+ * Validates that acknowledgements are sent in the order the publishes were received.
+ */
+class HiveMQAcknowledgementsTest extends MqttTestBase {
+
+    private final HiveMQAcknowledgements acknowledgements = new HiveMQAcknowledgements();
+    private final List<String> sent = new ArrayList<>();
+
+    @Test
+    void should_send_acknowledgements_in_reception_order() {
+        // Arrange
+        Runnable first = acknowledgements.register(received("a", MqttQos.AT_LEAST_ONCE));
+        Runnable second = acknowledgements.register(received("b", MqttQos.EXACTLY_ONCE));
+        Runnable third = acknowledgements.register(received("c", MqttQos.AT_LEAST_ONCE));
+
+        // Act
+        third.run();
+        second.run();
+        List<String> beforeFirst = List.copyOf(sent);
+        first.run();
+        first.run();
+
+        // Assert
+        assertThat(beforeFirst).isEmpty();
+        assertThat(sent).containsExactly("a", "b", "c");
+        assertThat(acknowledgements.pendingCount()).isZero();
+    }
+
+    @Test
+    void should_not_hold_back_qos_0_publishes() {
+        // Arrange
+        acknowledgements.register(received("a", MqttQos.AT_LEAST_ONCE));
+
+        // Act
+        acknowledgements.register(received("b", MqttQos.AT_MOST_ONCE)).run();
+
+        // Assert
+        assertThat(sent).containsExactly("b");
+        assertThat(acknowledgements.pendingCount()).isEqualTo(1);
+    }
+
+    @Test
+    void should_not_hold_back_acknowledgements_behind_previous_connection() {
+        // Arrange
+        Runnable stale = acknowledgements.register(received("a", MqttQos.AT_LEAST_ONCE));
+        acknowledgements.reset();
+
+        // Act
+        acknowledgements.register(received("a", MqttQos.AT_LEAST_ONCE)).run();
+        stale.run();
+
+        // Assert
+        assertThat(sent).containsExactly("a", "a");
+        assertThat(acknowledgements.pendingCount()).isZero();
+    }
+
+    @Test
+    void should_acknowledge_on_last_count_down() {
+        // Arrange
+        AtomicInteger calls = new AtomicInteger();
+        Runnable shared = HiveMQAcknowledgements.countDown(calls::incrementAndGet, 3);
+
+        // Act
+        shared.run();
+        shared.run();
+        int beforeLast = calls.get();
+        shared.run();
+        shared.run();
+
+        // Assert
+        assertThat(beforeLast).isZero();
+        assertThat(calls).hasValue(1);
+    }
+
+    private ReceivedPublish received(String topic, MqttQos qos) {
+        return new ReceivedPublish(Mqtt5Publish.builder().topic(topic).qos(qos).build(), () -> sent.add(topic));
+    }
+}
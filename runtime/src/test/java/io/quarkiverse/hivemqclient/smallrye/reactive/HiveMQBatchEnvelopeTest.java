@@ -0,0 +1,79 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import io.quarkiverse.hivemqclient.test.MqttTestBase;
+
+/**
+ * Unit tests for HiveMQBatchEnvelope.
+ * Validates the encoding of batches and their split into publishes.
+ */
+class HiveMQBatchEnvelopeTest extends MqttTestBase {
+
+    @Test
+    void should_decode_encoded_payloads() {
+        // Arrange
+        List<ByteBuffer> payloads = List.of(utf8("a"), ByteBuffer.allocate(0), ByteBuffer.wrap(new byte[300]));
+
+        // Act
+        ByteBuffer envelope = HiveMQBatchEnvelope.encode(payloads);
+        List<ByteBuffer> decoded = HiveMQBatchEnvelope.decode(envelope);
+
+        // Assert
+        assertThat(envelope.remaining()).isEqualTo(HiveMQBatchEnvelope.HEADER_SIZE + 1
+                + HiveMQBatchEnvelope.itemSize(1) + HiveMQBatchEnvelope.itemSize(0) + HiveMQBatchEnvelope.itemSize(300));
+        assertThat(decoded).containsExactlyElementsOf(payloads);
+    }
+
+    @Test
+    void should_not_decode_other_payloads() {
+        // Act & Assert
+        assertThat(HiveMQBatchEnvelope.decode(utf8("21.5"))).isNull();
+        ByteBuffer truncated = HiveMQBatchEnvelope.encode(List.of(utf8("abc")));
+        truncated.limit(truncated.limit() - 1);
+        assertThat(HiveMQBatchEnvelope.decode(truncated)).isNull();
+    }
+
+    @Test
+    void should_split_envelope_into_publishes() {
+        // Arrange
+        Mqtt5Publish envelope = Mqtt5Publish.builder()
+                .topic("sensors/1")
+                .qos(MqttQos.AT_LEAST_ONCE)
+                .payload(HiveMQBatchEnvelope.encode(List.of(utf8("20.1"), utf8("20.2"))))
+                .build();
+
+        // Act
+        List<Mqtt5Publish> publishes = HiveMQBatchEnvelope.split(envelope);
+
+        // Assert
+        assertThat(publishes).extracting(p -> new String(p.getPayloadAsBytes(), StandardCharsets.UTF_8))
+                .containsExactly("20.1", "20.2");
+        assertThat(publishes).allSatisfy(p -> {
+            assertThat(p.getTopic().toString()).isEqualTo("sensors/1");
+            assertThat(p.getQos()).isEqualTo(MqttQos.AT_LEAST_ONCE);
+        });
+    }
+
+    @Test
+    void should_keep_publish_without_envelope() {
+        // Arrange
+        Mqtt5Publish publish = Mqtt5Publish.builder().topic("sensors/1").payload(utf8("20.1")).build();
+
+        // Act & Assert
+        assertThat(HiveMQBatchEnvelope.split(publish)).containsExactly(publish);
+    }
+
+    private static ByteBuffer utf8(String value) {
+        return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
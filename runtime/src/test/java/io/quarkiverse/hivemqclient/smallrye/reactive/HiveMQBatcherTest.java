@@ -0,0 +1,139 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+
+import io.quarkiverse.hivemqclient.test.MqttTestBase;
+import io.smallrye.mutiny.Uni;
+
+/**
+ * Unit tests for HiveMQBatcher.
+ * Validates when batches are published and that their acknowledgement reaches the batched messages.
+ */
+class HiveMQBatcherTest extends MqttTestBase {
+
+    private static final HiveMQBatcher.Key KEY = new HiveMQBatcher.Key("sensors/1", MqttQos.AT_LEAST_ONCE, false);
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final List<Message<ByteBuffer>> published = new CopyOnWriteArrayList<>();
+    private final CountDownLatch firstPublished = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void should_publish_batch_when_full() {
+        // Arrange
+        HiveMQBatcher batcher = new HiveMQBatcher(3, 65536, 60_000, scheduler, this::publish);
+
+        // Act
+        for (int i = 0; i < 7; i++) {
+            batcher.add(KEY, Message.of(i), utf8("reading-" + i)).await().indefinitely();
+        }
+
+        // Assert
+        assertThat(published).hasSize(2);
+        assertThat(HiveMQBatchEnvelope.decode(published.get(0).getPayload())).hasSize(3);
+    }
+
+    @Test
+    void should_publish_batch_after_linger() throws InterruptedException {
+        // Arrange
+        HiveMQBatcher batcher = new HiveMQBatcher(100, 65536, 20, scheduler, this::publish);
+
+        // Act
+        batcher.add(KEY, Message.of(1), utf8("reading-1")).await().indefinitely();
+        batcher.add(KEY, Message.of(2), utf8("reading-2")).await().indefinitely();
+
+        // Assert
+        assertThat(firstPublished.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(published).hasSize(1);
+        assertThat(HiveMQBatchEnvelope.decode(published.get(0).getPayload())).hasSize(2);
+    }
+
+    @Test
+    void should_start_new_batch_when_bytes_exceeded() {
+        // Arrange
+        HiveMQBatcher batcher = new HiveMQBatcher(100, 64, 60_000, scheduler, this::publish);
+
+        // Act
+        batcher.add(KEY, Message.of(1), ByteBuffer.allocate(40)).await().indefinitely();
+        batcher.add(KEY, Message.of(2), ByteBuffer.allocate(40)).await().indefinitely();
+        batcher.flush();
+
+        // Assert
+        assertThat(published).hasSize(2);
+        assertThat(published).allSatisfy(envelope -> assertThat(envelope.getPayload().remaining()).isLessThanOrEqualTo(64));
+    }
+
+    @Test
+    void should_remove_batch_of_destination_once_published() {
+        // Arrange
+        HiveMQBatcher batcher = new HiveMQBatcher(2, 65536, 60_000, scheduler, this::publish);
+
+        // Act
+        for (int device = 0; device < 10; device++) {
+            HiveMQBatcher.Key key = new HiveMQBatcher.Key("sensors/" + device, MqttQos.AT_LEAST_ONCE, false);
+            batcher.add(key, Message.of(1), utf8("reading-1")).await().indefinitely();
+            batcher.add(key, Message.of(2), utf8("reading-2")).await().indefinitely();
+        }
+        batcher.add(KEY, Message.of(3), utf8("reading-3")).await().indefinitely();
+        int beforeFlush = batcher.batchCount();
+        batcher.flush();
+
+        // Assert
+        assertThat(published).hasSize(11);
+        assertThat(beforeFlush).isEqualTo(1);
+        assertThat(batcher.batchCount()).isZero();
+    }
+
+    @Test
+    void should_ack_batched_messages_with_envelope() {
+        // Arrange
+        HiveMQBatcher batcher = new HiveMQBatcher(2, 65536, 60_000, scheduler, this::publish);
+        AtomicBoolean firstAcked = new AtomicBoolean();
+        AtomicBoolean secondAcked = new AtomicBoolean();
+
+        // Act
+        batcher.add(KEY, Message.of(1).withAck(() -> {
+            firstAcked.set(true);
+            return Uni.createFrom().voidItem().subscribeAsCompletionStage();
+        }), utf8("1")).await().indefinitely();
+        batcher.add(KEY, Message.of(2).withAck(() -> {
+            secondAcked.set(true);
+            return Uni.createFrom().voidItem().subscribeAsCompletionStage();
+        }), utf8("2")).await().indefinitely();
+        published.get(0).ack().toCompletableFuture().join();
+
+        // Assert
+        assertThat(firstAcked).isTrue();
+        assertThat(secondAcked).isTrue();
+    }
+
+    private Uni<Void> publish(HiveMQBatcher.Key key, Message<ByteBuffer> envelope) {
+        published.add(envelope);
+        firstPublished.countDown();
+        return Uni.createFrom().voidItem();
+    }
+
+    private static ByteBuffer utf8(String value) {
+        return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
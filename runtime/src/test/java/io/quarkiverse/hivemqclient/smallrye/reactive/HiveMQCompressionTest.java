@@ -0,0 +1,96 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import io.quarkiverse.hivemqclient.smallrye.reactive.HiveMQCompression.Codec;
+import io.quarkiverse.hivemqclient.test.MqttTestBase;
+
+/**
+ * Unit tests for HiveMQCompression.
+ * Validates the codecs, the threshold, the detection of compressed payloads and the bound of their decompressed size.
+ */
+class HiveMQCompressionTest extends MqttTestBase {
+
+    private static final String TELEMETRY = "{\"sensor\":\"temperature\",\"unit\":\"celsius\",\"value\":21.5}".repeat(40);
+    private static final int MAX_SIZE = 1024 * 1024;
+
+    @ParameterizedTest
+    @EnumSource(value = Codec.class, names = { "GZIP", "DEFLATE", "SNAPPY" })
+    void should_decompress_compressed_payload(Codec codec) {
+        // Arrange
+        HiveMQCompression compression = new HiveMQCompression(codec, 256);
+        ByteBuffer payload = utf8(TELEMETRY);
+
+        // Act
+        ByteBuffer compressed = compression.compress(payload);
+        ByteBuffer decompressed = HiveMQCompression.decompress(compressed, MAX_SIZE);
+
+        // Assert
+        assertThat(compressed.remaining()).isLessThan(payload.remaining() / 4);
+        assertThat(decompressed).isEqualTo(payload);
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = Codec.class, names = { "GZIP", "DEFLATE", "SNAPPY" })
+    void should_reject_payload_when_it_decompresses_beyond_max_size(Codec codec) {
+        // Arrange
+        ByteBuffer payload = utf8(TELEMETRY);
+        ByteBuffer compressed = new HiveMQCompression(codec, 0).compress(payload);
+        Mqtt5Publish publish = Mqtt5Publish.builder().topic("sensors/1").payload(compressed).build();
+
+        // Act & Assert
+        assertThat(HiveMQCompression.decompress(compressed, payload.remaining())).isEqualTo(payload);
+        assertThatThrownBy(() -> HiveMQCompression.decompress(publish, payload.remaining() - 1))
+                .isInstanceOf(HiveMQCompression.TooLargeException.class)
+                .hasMessageContaining("decompress-max-bytes");
+    }
+
+    @Test
+    void should_not_compress_small_or_incompressible_payloads() {
+        // Arrange
+        HiveMQCompression compression = new HiveMQCompression(Codec.GZIP, 256);
+        ByteBuffer small = utf8("{\"value\":21.5}");
+        byte[] random = new byte[1024];
+        new Random(42).nextBytes(random);
+        ByteBuffer incompressible = ByteBuffer.wrap(random);
+
+        // Act & Assert
+        assertThat(compression.compress(small)).isSameAs(small);
+        assertThat(compression.compress(incompressible)).isSameAs(incompressible);
+        assertThat(HiveMQCompression.decompress(small, MAX_SIZE)).isNull();
+    }
+
+    @Test
+    void should_deliver_malformed_payload_as_is() {
+        // Arrange
+        ByteBuffer compressed = new HiveMQCompression(Codec.SNAPPY, 0).compress(utf8(TELEMETRY));
+        compressed.limit(compressed.limit() - 10);
+        Mqtt5Publish publish = Mqtt5Publish.builder().topic("sensors/1").payload(compressed).build();
+
+        // Act & Assert
+        assertThat(HiveMQCompression.decompress(publish, MAX_SIZE)).isSameAs(publish);
+    }
+
+    @Test
+    void should_parse_codecs() {
+        // Act & Assert
+        assertThat(Codec.from("gzip")).isEqualTo(Codec.GZIP);
+        assertThat(Codec.from(" Snappy ")).isEqualTo(Codec.SNAPPY);
+        assertThatThrownBy(() -> Codec.from("lz4")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static ByteBuffer utf8(String value) {
+        return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
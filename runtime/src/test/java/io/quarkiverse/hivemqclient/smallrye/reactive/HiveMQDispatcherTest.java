@@ -0,0 +1,320 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.hivemq.client.mqtt.MqttClientState;
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import io.quarkiverse.hivemqclient.smallrye.reactive.HiveMQProtocolClient.ReceivedPublish;
+import io.quarkiverse.hivemqclient.test.MqttTestBase;
+import io.reactivex.Flowable;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.helpers.test.AssertSubscriber;
+
+/**
+ * Unit tests for HiveMQDispatcher.
+ * Validates the filters the publishes are routed on, the publishes received before a channel subscribed and when the
+ * publishes are acknowledged, the bound of the channel buffers and the lanes of a channel.
+ */
+class HiveMQDispatcherTest extends MqttTestBase {
+
+    private static final HiveMQDispatcher.Delivery MANUAL = new HiveMQDispatcher.Delivery(true,
+            HiveMQDispatcher.DEFAULT_BUFFER_SIZE, HiveMQDispatcher.Overflow.DROP_NEWEST);
+
+    @Test
+    void should_route_shared_subscriptions_on_their_filter() {
+        // Act & Assert
+        assertThat(HiveMQDispatcher.routedFilter("$share/workers/factory/+/line")).isEqualTo("factory/+/line");
+        assertThat(HiveMQDispatcher.routedFilter("factory/+/line")).isEqualTo("factory/+/line");
+    }
+
+    @Test
+    void should_reject_shared_subscription_without_filter() {
+        // Act & Assert
+        assertThatThrownBy(() -> HiveMQDispatcher.routedFilter("$share/workers"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void should_emit_publishes_received_before_subscribing_with_persistent_session() {
+        // Arrange
+        HiveMQDispatcher dispatcher = new HiveMQDispatcher(true);
+        dispatcher.dispatch(received("factory/1/line"));
+        dispatcher.dispatch(received("office/1/door"));
+
+        // Act
+        AssertSubscriber<ReceivedPublish> subscriber = dispatcher
+                .subscribe(client(), "factory/+/line", MqttQos.AT_LEAST_ONCE, HiveMQDispatcher.AUTOMATIC, () -> {
+                })
+                .subscribe().withSubscriber(AssertSubscriber.create(10));
+        dispatcher.dispatch(received("factory/2/line"));
+
+        // Assert
+        assertThat(subscriber.getItems()).extracting(r -> r.publish().getTopic().toString())
+                .containsExactly("factory/1/line", "factory/2/line");
+        assertThat(dispatcher.unroutedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void should_drop_unrouted_publishes_with_clean_session() {
+        // Arrange
+        HiveMQDispatcher dispatcher = new HiveMQDispatcher(false);
+        dispatcher.dispatch(received("factory/1/line"));
+
+        // Act
+        List<ReceivedPublish> items = dispatcher
+                .subscribe(client(), "factory/+/line", MqttQos.AT_LEAST_ONCE, HiveMQDispatcher.AUTOMATIC, () -> {
+                })
+                .subscribe().withSubscriber(AssertSubscriber.create(10))
+                .getItems();
+
+        // Assert
+        assertThat(items).isEmpty();
+        assertThat(dispatcher.unroutedCount()).isZero();
+    }
+
+    @Test
+    void should_acknowledge_once_all_manual_channels_acknowledged() {
+        // Arrange
+        HiveMQDispatcher dispatcher = new HiveMQDispatcher(false);
+        HiveMQProtocolClient client = client();
+        List<String> acknowledged = new ArrayList<>();
+        AssertSubscriber<ReceivedPublish> first = dispatcher
+                .subscribe(client, "factory/#", MqttQos.AT_LEAST_ONCE, MANUAL, () -> {
+                })
+                .subscribe().withSubscriber(AssertSubscriber.create(10));
+        AssertSubscriber<ReceivedPublish> second = dispatcher
+                .subscribe(client, "factory/+/line", MqttQos.AT_LEAST_ONCE, MANUAL, () -> {
+                })
+                .subscribe().withSubscriber(AssertSubscriber.create(10));
+        dispatcher.subscribe(client, "factory/1/+", MqttQos.AT_LEAST_ONCE, HiveMQDispatcher.AUTOMATIC, () -> {
+        }).subscribe().withSubscriber(AssertSubscriber.create(10));
+
+        // Act
+        dispatcher.dispatch(received("factory/1/line", acknowledged));
+        first.getItems().get(0).acknowledge().run();
+        List<String> afterFirst = List.copyOf(acknowledged);
+        second.getItems().get(0).acknowledge().run();
+
+        // Assert
+        assertThat(afterFirst).isEmpty();
+        assertThat(acknowledged).containsExactly("factory/1/line");
+        assertThat(dispatcher.pendingAcknowledgements()).isZero();
+    }
+
+    @Test
+    void should_acknowledge_publishes_of_automatic_channels_on_receipt() {
+        // Arrange
+        HiveMQDispatcher dispatcher = new HiveMQDispatcher(false);
+        List<String> acknowledged = new ArrayList<>();
+        dispatcher.subscribe(client(), "factory/#", MqttQos.AT_LEAST_ONCE, HiveMQDispatcher.AUTOMATIC, () -> {
+        }).subscribe().withSubscriber(AssertSubscriber.create(10));
+
+        // Act
+        dispatcher.dispatch(received("factory/1/line", acknowledged));
+        dispatcher.dispatch(received("office/1/door", acknowledged));
+
+        // Assert
+        assertThat(acknowledged).containsExactly("factory/1/line", "office/1/door");
+    }
+
+    @Test
+    void should_drop_and_acknowledge_publishes_when_channel_buffer_is_full() {
+        // Arrange
+        HiveMQDispatcher dispatcher = new HiveMQDispatcher(false);
+        List<String> acknowledged = new ArrayList<>();
+        AssertSubscriber<ReceivedPublish> subscriber = dispatcher
+                .subscribe(client(), "factory/#", MqttQos.AT_LEAST_ONCE,
+                        new HiveMQDispatcher.Delivery(true, 2, HiveMQDispatcher.Overflow.DROP_NEWEST), () -> {
+                        })
+                .subscribe().withSubscriber(AssertSubscriber.create(0));
+
+        // Act
+        dispatcher.dispatch(received("factory/1/line", acknowledged));
+        dispatcher.dispatch(received("factory/2/line", acknowledged));
+        dispatcher.dispatch(received("factory/3/line", acknowledged));
+        subscriber.request(10);
+        dispatcher.dispatch(received("factory/4/line", acknowledged));
+        subscriber.getItems().subList(0, 2).forEach(r -> r.acknowledge().run());
+
+        // Assert
+        assertThat(subscriber.getItems()).extracting(ReceivedPublish::topic)
+                .containsExactly("factory/1/line", "factory/2/line", "factory/4/line");
+        assertThat(acknowledged).containsExactly("factory/1/line", "factory/2/line", "factory/3/line");
+        subscriber.assertNotTerminated();
+    }
+
+    @Test
+    void should_fail_channel_when_buffer_is_full_with_fail_overflow() {
+        // Arrange
+        HiveMQDispatcher dispatcher = new HiveMQDispatcher(false);
+        AssertSubscriber<ReceivedPublish> subscriber = dispatcher
+                .subscribe(client(), "factory/#", MqttQos.AT_LEAST_ONCE,
+                        new HiveMQDispatcher.Delivery(false, 1, HiveMQDispatcher.Overflow.FAIL), () -> {
+                        })
+                .subscribe().withSubscriber(AssertSubscriber.create(0));
+
+        // Act
+        dispatcher.dispatch(received("factory/1/line"));
+        dispatcher.dispatch(received("factory/2/line"));
+        subscriber.request(1);
+
+        // Assert
+        assertThat(subscriber.getItems()).hasSize(1);
+        subscriber.assertFailedWith(IllegalStateException.class, "buffer of the subscription to factory/# is full");
+    }
+
+    @Test
+    void should_acknowledge_buffered_publishes_when_channel_is_cancelled() {
+        // Arrange
+        HiveMQDispatcher dispatcher = new HiveMQDispatcher(false);
+        List<String> acknowledged = new ArrayList<>();
+        AssertSubscriber<ReceivedPublish> subscriber = dispatcher
+                .subscribe(client(), "factory/#", MqttQos.AT_LEAST_ONCE, MANUAL, () -> {
+                })
+                .subscribe().withSubscriber(AssertSubscriber.create(1));
+        dispatcher.dispatch(received("factory/1/line", acknowledged));
+        dispatcher.dispatch(received("factory/2/line", acknowledged));
+        dispatcher.dispatch(received("factory/3/line", acknowledged));
+
+        // Act
+        subscriber.cancel();
+        subscriber.getItems().get(0).acknowledge().run();
+
+        // Assert
+        assertThat(acknowledged).containsExactly("factory/1/line", "factory/2/line", "factory/3/line");
+        assertThat(dispatcher.pendingAcknowledgements()).isZero();
+    }
+
+    @Test
+    void should_unsubscribe_filter_once_its_last_channel_terminated() {
+        // Arrange
+        HiveMQDispatcher dispatcher = new HiveMQDispatcher(false);
+        HiveMQProtocolClient client = client();
+        AssertSubscriber<ReceivedPublish> first = dispatcher
+                .subscribe(client, "factory/#", MqttQos.AT_LEAST_ONCE, HiveMQDispatcher.AUTOMATIC, () -> {
+                })
+                .subscribe().withSubscriber(AssertSubscriber.create(10));
+        AssertSubscriber<ReceivedPublish> second = dispatcher
+                .subscribe(client, "factory/#", MqttQos.AT_LEAST_ONCE, HiveMQDispatcher.AUTOMATIC, () -> {
+                })
+                .subscribe().withSubscriber(AssertSubscriber.create(10));
+
+        // Act
+        first.cancel();
+        verify(client, never()).unsubscribe(anyString());
+        second.cancel();
+
+        // Assert
+        verify(client).unsubscribe("factory/#");
+    }
+
+    @Test
+    void should_keep_subscription_of_persistent_session_once_its_channel_terminated() {
+        // Arrange
+        HiveMQDispatcher dispatcher = new HiveMQDispatcher(true);
+        HiveMQProtocolClient client = client();
+        AssertSubscriber<ReceivedPublish> subscriber = dispatcher
+                .subscribe(client, "factory/#", MqttQos.AT_LEAST_ONCE, HiveMQDispatcher.AUTOMATIC, () -> {
+                })
+                .subscribe().withSubscriber(AssertSubscriber.create(10));
+
+        // Act
+        subscriber.cancel();
+
+        // Assert
+        verify(client, never()).unsubscribe(anyString());
+    }
+
+    private static Mqtt5Publish publish(String topic) {
+        return Mqtt5Publish.builder().topic(topic).qos(MqttQos.AT_LEAST_ONCE).build();
+    }
+
+    private static ReceivedPublish received(String topic) {
+        return new ReceivedPublish(publish(topic), HiveMQAcknowledgements.NONE);
+    }
+
+    @Test
+    void should_emit_each_publish_to_the_copy_of_its_lane_when_channel_spread_over_lanes() {
+        // Arrange
+        HiveMQDispatcher dispatcher = new HiveMQDispatcher(false);
+        HiveMQProtocolClient client = client();
+        HiveMQTopicLanes lanes = new HiveMQTopicLanes(2, 1);
+        List<String> acknowledged = new ArrayList<>();
+        List<AssertSubscriber<ReceivedPublish>> copies = new ArrayList<>();
+        for (int lane = 0; lane < 2; lane++) {
+            HiveMQDispatcher.Delivery delivery = new HiveMQDispatcher.Delivery(true, HiveMQDispatcher.DEFAULT_BUFFER_SIZE,
+                    HiveMQDispatcher.Overflow.DROP_NEWEST, new HiveMQDispatcher.Lane("readings", lanes, lane));
+            copies.add(dispatcher.subscribe(client, "factory/+/line", MqttQos.AT_LEAST_ONCE, delivery, () -> {
+            }).subscribe().withSubscriber(AssertSubscriber.create(10)));
+        }
+
+        // Act
+        for (int device = 0; device < 6; device++) {
+            dispatcher.dispatch(received("factory/" + device + "/line", acknowledged));
+        }
+        copies.forEach(copy -> copy.getItems().forEach(received -> received.acknowledge().run()));
+
+        // Assert
+        for (int lane = 0; lane < 2; lane++) {
+            int expected = lane;
+            assertThat(copies.get(lane).getItems()).isNotEmpty()
+                    .extracting(r -> r.publish().getTopic().toString())
+                    .allMatch(topic -> lanes.laneOf(topic) == expected);
+        }
+        assertThat(copies.get(0).getItems().size() + copies.get(1).getItems().size()).isEqualTo(6);
+        assertThat(acknowledged).hasSize(6);
+    }
+
+    @Test
+    void should_acknowledge_publishes_of_a_lane_whose_copy_is_cancelled() {
+        // Arrange
+        HiveMQDispatcher dispatcher = new HiveMQDispatcher(false);
+        HiveMQProtocolClient client = client();
+        HiveMQTopicLanes lanes = new HiveMQTopicLanes(2, -1);
+        List<String> acknowledged = new ArrayList<>();
+        List<AssertSubscriber<ReceivedPublish>> copies = new ArrayList<>();
+        for (int lane = 0; lane < 2; lane++) {
+            HiveMQDispatcher.Delivery delivery = new HiveMQDispatcher.Delivery(true, HiveMQDispatcher.DEFAULT_BUFFER_SIZE,
+                    HiveMQDispatcher.Overflow.DROP_NEWEST, new HiveMQDispatcher.Lane("readings", lanes, lane));
+            copies.add(dispatcher.subscribe(client, "#", MqttQos.AT_LEAST_ONCE, delivery, () -> {
+            }).subscribe().withSubscriber(AssertSubscriber.create(10)));
+        }
+        String topic = lanes.laneOf("a") == 0 ? "a" : "b";
+
+        // Act
+        copies.get(0).cancel();
+        dispatcher.dispatch(received(topic, acknowledged));
+
+        // Assert
+        assertThat(copies.get(0).getItems()).isEmpty();
+        assertThat(copies.get(1).getItems()).isEmpty();
+        assertThat(acknowledged).containsExactly(topic);
+    }
+
+    private static ReceivedPublish received(String topic, List<String> acknowledged) {
+        return new ReceivedPublish(publish(topic), () -> acknowledged.add(topic));
+    }
+
+    private static HiveMQProtocolClient client() {
+        HiveMQProtocolClient client = mock(HiveMQProtocolClient.class);
+        when(client.getState()).thenReturn(MqttClientState.CONNECTED);
+        when(client.publishes()).thenReturn(Flowable.never());
+        when(client.subscribe(anyString(), any())).thenReturn(Uni.createFrom().voidItem());
+        when(client.unsubscribe(anyString())).thenReturn(Uni.createFrom().voidItem());
+        return client;
+    }
+}
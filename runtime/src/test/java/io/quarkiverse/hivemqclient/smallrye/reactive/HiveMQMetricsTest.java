@@ -0,0 +1,134 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+import org.eclipse.microprofile.metrics.Timer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.quarkiverse.hivemqclient.test.MqttTestBase;
+
+/**
+ * Unit tests for HiveMQMetrics.
+ * Validates the meters registered for the channels, in MicroProfile Metrics and Micrometer, and what they record.
+ */
+class HiveMQMetricsTest extends MqttTestBase {
+
+    private final MetricRegistry registry = mock(MetricRegistry.class);
+    private final Timer latency = mock(Timer.class);
+    private final Map<String, Counter> counters = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        when(registry.counter(any(Metadata.class), any(Tag.class))).thenAnswer(invocation -> counters
+                .computeIfAbsent(invocation.<Metadata> getArgument(0).getName(), name -> mock(Counter.class)));
+        when(registry.timer(any(Metadata.class), any(Tag.class))).thenReturn(latency);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void should_record_acknowledged_publishes_of_outgoing_channel() {
+        // Arrange
+        HiveMQMetrics metrics = HiveMQMetrics.outgoing(HiveMQMetrics.microProfile(registry), "telemetry", () -> 3);
+        ArgumentCaptor<Supplier<Integer>> inFlight = ArgumentCaptor.forClass(Supplier.class);
+        verify(registry).gauge(any(Metadata.class), inFlight.capture(), eq(new Tag("channel", "telemetry")));
+
+        // Act
+        metrics.sent(42, metrics.start());
+        metrics.failed();
+
+        // Assert
+        assertThat(inFlight.getValue().get()).isEqualTo(3);
+        verify(counters.get(HiveMQMetrics.PUBLISHES_SENT)).inc(1);
+        verify(counters.get(HiveMQMetrics.BYTES_SENT)).inc(42);
+        verify(counters.get(HiveMQMetrics.MESSAGES_FAILED)).inc(1);
+        verify(latency).update(any(Duration.class));
+    }
+
+    @Test
+    void should_record_received_publishes_of_incoming_channel() {
+        // Arrange
+        HiveMQMetrics metrics = HiveMQMetrics.incoming(HiveMQMetrics.microProfile(registry), "prices", true);
+        Mqtt5Publish stamped = Mqtt5Publish.builder().topic("prices")
+                .userProperties().add(HiveMQTimestamps.property(System.currentTimeMillis() - 50)).applyUserProperties()
+                .build();
+
+        // Act
+        metrics.received(7);
+        metrics.delivered(stamped);
+        metrics.delivered(Mqtt5Publish.builder().topic("prices").build());
+        metrics.failed();
+
+        // Assert
+        verify(counters.get(HiveMQMetrics.PUBLISHES_RECEIVED)).inc(1);
+        verify(counters.get(HiveMQMetrics.BYTES_RECEIVED)).inc(7);
+        verify(counters.get(HiveMQMetrics.MESSAGES_NACKED)).inc(1);
+        ArgumentCaptor<Duration> endToEnd = ArgumentCaptor.forClass(Duration.class);
+        verify(latency).update(endToEnd.capture());
+        assertThat(endToEnd.getValue()).isGreaterThanOrEqualTo(Duration.ofMillis(50));
+    }
+
+    @Test
+    void should_record_meters_with_latency_histogram_in_micrometer() {
+        // Arrange
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        Map<String, DistributionStatisticConfig> distributions = new HashMap<>();
+        meterRegistry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                distributions.put(id.getName(), config);
+                return config;
+            }
+        });
+        HiveMQMetrics metrics = HiveMQMetrics.outgoing(new HiveMQMicrometer(meterRegistry), "telemetry", () -> 3);
+
+        // Act
+        metrics.sent(42, metrics.start());
+        metrics.failed();
+
+        // Assert
+        assertThat(meterRegistry.get(HiveMQMetrics.PUBLISHES_IN_FLIGHT).tag("channel", "telemetry").gauge().value())
+                .isEqualTo(3);
+        assertThat(meterRegistry.get(HiveMQMetrics.PUBLISHES_SENT).counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(HiveMQMetrics.BYTES_SENT).counter().count()).isEqualTo(42);
+        assertThat(meterRegistry.get(HiveMQMetrics.MESSAGES_FAILED).counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(HiveMQMetrics.PUBLISH_LATENCY).timer().count()).isEqualTo(1);
+        assertThat(distributions.get(HiveMQMetrics.PUBLISH_LATENCY).isPercentileHistogram()).isTrue();
+    }
+
+    @Test
+    void should_ignore_records_without_registry() {
+        // Arrange
+        HiveMQMetrics metrics = HiveMQMetrics.outgoing(null, "telemetry", () -> 0);
+
+        // Act
+        metrics.sent(42, metrics.start());
+        metrics.received(7);
+        metrics.failed();
+
+        // Assert
+        assertThat(metrics).isSameAs(HiveMQMetrics.DISABLED);
+        assertThat(metrics.start()).isZero();
+    }
+}
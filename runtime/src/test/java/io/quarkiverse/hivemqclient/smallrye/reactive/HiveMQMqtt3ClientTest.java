@@ -0,0 +1,54 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+import com.hivemq.client.mqtt.mqtt3.message.publish.Mqtt3Publish;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import io.quarkiverse.hivemqclient.test.MqttTestBase;
+
+/**
+ * Unit tests for HiveMQMqtt3Client.
+ * Validates that MQTT 3 and MQTT 5 publishes are converted with their topic, QoS, retain flag and payload.
+ */
+class HiveMQMqtt3ClientTest extends MqttTestBase {
+
+    @Test
+    void should_convert_publish_back_to_an_equal_publish() {
+        // Arrange
+        Mqtt5Publish publish = Mqtt5Publish.builder()
+                .topic(testTopicName("roundtrip"))
+                .qos(MqttQos.EXACTLY_ONCE)
+                .retain(true)
+                .payload("42".getBytes(StandardCharsets.UTF_8))
+                .build();
+
+        // Act
+        Mqtt5Publish converted = HiveMQMqtt3Client.toMqtt5(HiveMQMqtt3Client.toMqtt3(publish));
+
+        // Assert
+        assertThat(converted).isEqualTo(publish);
+    }
+
+    @Test
+    void should_keep_the_properties_of_a_received_publish() {
+        // Arrange
+        Mqtt3Publish publish = Mqtt3Publish.builder()
+                .topic(testTopicName("shared"))
+                .payload("42".getBytes(StandardCharsets.UTF_8))
+                .build();
+
+        // Act
+        Mqtt5Publish converted = HiveMQMqtt3Client.toMqtt5(publish);
+
+        // Assert
+        assertThat(converted.getPayloadAsBytes()).isEqualTo(publish.getPayloadAsBytes());
+        assertThat(converted.getQos()).isEqualTo(MqttQos.AT_MOST_ONCE);
+        assertThat(converted.getContentType()).isEmpty();
+    }
+}
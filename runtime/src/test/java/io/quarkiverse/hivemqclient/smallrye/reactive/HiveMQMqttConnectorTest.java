@@ -2,52 +2,46 @@ package io.quarkiverse.hivemqclient.smallrye.reactive;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.Flow;
 
+import jakarta.enterprise.inject.Instance;
+
 import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.metrics.MetricRegistry;
 import org.eclipse.microprofile.reactive.messaging.Message;
-import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 
+import io.opentelemetry.api.OpenTelemetry;
 import io.quarkiverse.hivemqclient.test.MqttTestBase;
 import io.quarkiverse.hivemqclient.test.MqttTestFixtures;
 import io.smallrye.reactive.messaging.health.HealthReport;
-import io.smallrye.reactive.messaging.providers.connectors.ExecutionHolder;
-import io.vertx.mutiny.core.Vertx;
 
 /**
  * Unit tests for HiveMQMqttConnector.
- * Tests connector initialization, health reporting, and lifecycle management.
+ * Tests health reporting and lifecycle management.
  */
 class HiveMQMqttConnectorTest extends MqttTestBase {
 
     @Mock
-    private ExecutionHolder executionHolder;
+    private Instance<MetricRegistry> metricRegistries;
+
+    @Mock
+    private Instance<OpenTelemetry> openTelemetries;
 
     @InjectMocks
     private HiveMQMqttConnector connector;
 
-    private Vertx mockVertx;
-
-    @BeforeEach
-    void setUp() {
-        mockVertx = mock(Vertx.class);
-        when(executionHolder.vertx()).thenReturn(mockVertx);
-    }
-
-    @Test
-    void should_initialize_vertx_on_post_construct() {
-        // Act
-        connector.init();
-
-        // Assert
-        verify(executionHolder).vertx();
+    @AfterEach
+    void tearDown() {
+        // the clients are shared statically, do not leak them into the next test
+        HiveMQClients.clear();
     }
 
     @Test
@@ -58,9 +52,6 @@ class HiveMQMqttConnectorTest extends MqttTestBase {
 
     @Test
     void should_return_true_when_no_sources_or_sinks_configured() {
-        // Arrange
-        connector.init();
-
         // Act
         boolean ready = connector.isReady();
 
@@ -71,7 +62,6 @@ class HiveMQMqttConnectorTest extends MqttTestBase {
     @Test
     void should_return_true_when_all_sources_subscribed() {
         // Arrange
-        connector.init();
         HiveMQMqttSource mockSource = mock(HiveMQMqttSource.class);
         when(mockSource.isSubscribed()).thenReturn(true);
 
@@ -85,9 +75,6 @@ class HiveMQMqttConnectorTest extends MqttTestBase {
 
     @Test
     void should_build_readiness_health_report() {
-        // Arrange
-        connector.init();
-
         // Act
         HealthReport report = connector.getReadiness();
 
@@ -98,9 +85,6 @@ class HiveMQMqttConnectorTest extends MqttTestBase {
 
     @Test
     void should_build_liveness_health_report() {
-        // Arrange
-        connector.init();
-
         // Act
         HealthReport report = connector.getLiveness();
 
@@ -112,7 +96,6 @@ class HiveMQMqttConnectorTest extends MqttTestBase {
     @Test
     void should_create_publisher_with_valid_incoming_config() {
         // Arrange
-        connector.init();
         Map<String, String> configMap = MqttTestFixtures.createIncomingConfig(
                 testChannelName("incoming"),
                 testTopicName("test"));
@@ -128,7 +111,6 @@ class HiveMQMqttConnectorTest extends MqttTestBase {
     @Test
     void should_create_subscriber_with_valid_outgoing_config() {
         // Arrange
-        connector.init();
         Map<String, String> configMap = MqttTestFixtures.createOutgoingConfig(
                 testChannelName("outgoing"),
                 testTopicName("test"));
@@ -144,7 +126,6 @@ class HiveMQMqttConnectorTest extends MqttTestBase {
     @Test
     void should_handle_multiple_incoming_channels() {
         // Arrange
-        connector.init();
         Map<String, String> config1 = MqttTestFixtures.createIncomingConfig(
                 testChannelName("incoming-1"),
                 testTopicName("topic1"));
@@ -167,7 +148,6 @@ class HiveMQMqttConnectorTest extends MqttTestBase {
     @Test
     void should_handle_multiple_outgoing_channels() {
         // Arrange
-        connector.init();
         Map<String, String> config1 = MqttTestFixtures.createOutgoingConfig(
                 testChannelName("outgoing-1"),
                 testTopicName("topic1"));
@@ -186,4 +166,22 @@ class HiveMQMqttConnectorTest extends MqttTestBase {
         assertThat(subscriber2).isNotNull();
         assertThat(subscriber1).isNotSameAs(subscriber2);
     }
+
+    @Test
+    void should_open_a_pool_of_connections() {
+        // Arrange
+        Map<String, String> configMap = MqttTestFixtures.createOutgoingConfig(
+                testChannelName("pooled"),
+                testTopicName("test"));
+        configMap.put("client-id", testChannelName("pooled-client"));
+        Config config = MqttTestFixtures.createMockConfig(configMap);
+        when(config.getOptionalValue("connections", Integer.class)).thenReturn(Optional.of(3));
+
+        // Act
+        Flow.Subscriber<? extends Message<?>> subscriber = connector.getSubscriber(config);
+
+        // Assert
+        assertThat(subscriber).isNotNull();
+        assertThat(HiveMQClients.getHolder(new HiveMQMqttConnectorOutgoingConfiguration(config)).size()).isEqualTo(3);
+    }
 }
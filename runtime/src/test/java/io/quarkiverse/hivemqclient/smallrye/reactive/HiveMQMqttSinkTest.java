@@ -0,0 +1,196 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.MockedStatic;
+
+import com.hivemq.client.mqtt.MqttClientState;
+import com.hivemq.client.mqtt.exceptions.ConnectionClosedException;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.quarkiverse.hivemqclient.test.MqttTestBase;
+import io.quarkiverse.hivemqclient.test.MqttTestFixtures;
+import io.reactivex.Flowable;
+import io.reactivex.processors.PublishProcessor;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.reactive.messaging.mqtt.SendingMqttMessageMetadata;
+
+/**
+ * Unit tests for HiveMQMqttSink.
+ * Validates that the publishes rejected by the broker leave the outbox while the ones lost with the connection stay in it,
+ * and that messages are acked in send order with at most max-inflight-queue publishes outstanding.
+ */
+class HiveMQMqttSinkTest extends MqttTestBase {
+
+    @TempDir
+    Path directory;
+
+    private final HiveMQClients.ClientHolder holder = mock(HiveMQClients.ClientHolder.class);
+    private final HiveMQProtocolClient client = mock(HiveMQProtocolClient.class);
+    private final List<Runnable> connectedListeners = new ArrayList<>();
+    private final List<Mqtt5Publish> sent = new ArrayList<>();
+    private RuntimeException failure = new IllegalStateException("not authorized");
+    private MockedStatic<HiveMQClients> clients;
+
+    @BeforeEach
+    void setUp() {
+        clients = mockStatic(HiveMQClients.class);
+        clients.when(() -> HiveMQClients.getHolder(any())).thenReturn(holder);
+        clients.when(() -> HiveMQClients.getConnectedClients(any())).thenReturn(Uni.createFrom().item(List.of(client)));
+        when(holder.size()).thenReturn(1);
+        doAnswer(invocation -> connectedListeners.add(invocation.getArgument(0))).when(holder).onConnected(any());
+        when(client.getState()).thenReturn(MqttClientState.CONNECTED);
+        when(client.disconnect()).thenReturn(Uni.createFrom().voidItem());
+        // every publish fails
+        when(client.publish(any())).thenAnswer(invocation -> {
+            Flowable<Mqtt5Publish> publishes = invocation.getArgument(0);
+            return publishes.doOnNext(sent::add)
+                    .map(publish -> new HiveMQProtocolClient.PublishResult(publish, failure));
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        clients.close();
+    }
+
+    @Test
+    void should_remove_publish_from_outbox_and_nack_message_when_broker_rejects_it() throws Exception {
+        // Arrange
+        HiveMQMqttSink sink = new HiveMQMqttSink(outgoingConfiguration(), null, null, null);
+        CompletableFuture<Throwable> nacked = new CompletableFuture<>();
+
+        // Act
+        send(sink, Message.of("reading").withNack(reason -> {
+            nacked.complete(reason);
+            return CompletableFuture.completedFuture(null);
+        }));
+        assertThat(nacked.get(5, TimeUnit.SECONDS)).hasMessage("not authorized");
+        connectedListeners.forEach(Runnable::run);
+        sink.close();
+
+        // Assert
+        assertThat(sent).hasSize(1);
+        List<HiveMQOutbox.Entry> replayed = HiveMQOutbox.open(directory.resolve("readings"), 4096,
+                HiveMQOutbox.Sync.OS, 0).takeUnsettled();
+        assertThat(replayed).isEmpty();
+    }
+
+    @Test
+    void should_keep_publish_in_outbox_and_ack_message_when_connection_is_lost() throws Exception {
+        // Arrange
+        failure = new ConnectionClosedException("Server closed connection without DISCONNECT.");
+        HiveMQMqttSink sink = new HiveMQMqttSink(outgoingConfiguration(), null, null, null);
+        CompletableFuture<Void> acked = new CompletableFuture<>();
+        send(sink, Message.of("reading").withAck(() -> {
+            acked.complete(null);
+            return CompletableFuture.completedFuture(null);
+        }).withNack(reason -> {
+            acked.completeExceptionally(reason);
+            return CompletableFuture.completedFuture(null);
+        }));
+        acked.get(5, TimeUnit.SECONDS);
+
+        // Act
+        connectedListeners.forEach(Runnable::run);
+        sink.close();
+
+        // Assert
+        assertThat(sent).extracting(publish -> new String(publish.getPayloadAsBytes()))
+                .containsExactly("reading", "reading");
+        List<HiveMQOutbox.Entry> replayed = HiveMQOutbox.open(directory.resolve("readings"), 4096,
+                HiveMQOutbox.Sync.OS, 0).takeUnsettled();
+        assertThat(replayed).extracting(entry -> new String(entry.publish().getPayloadAsBytes()))
+                .containsExactly("reading");
+    }
+
+    @Test
+    void should_ack_messages_in_send_order_when_pubacks_complete_out_of_order() {
+        // Arrange
+        PublishProcessor<HiveMQProtocolClient.PublishResult> results = PublishProcessor.create();
+        doAnswer(invocation -> {
+            Flowable<Mqtt5Publish> publishes = invocation.getArgument(0);
+            return publishes.doOnNext(sent::add)
+                    .ignoreElements().<HiveMQProtocolClient.PublishResult> toFlowable()
+                    .mergeWith(results);
+        }).when(client).publish(any());
+        Config config = config();
+        when(config.getOptionalValue("max-inflight-queue", Integer.class)).thenReturn(Optional.of(2));
+        HiveMQMqttSink sink = new HiveMQMqttSink(new HiveMQMqttConnectorOutgoingConfiguration(config), null, null, null);
+        List<String> acked = new CopyOnWriteArrayList<>();
+
+        // Act
+        send(sink, message("first", MqttQoS.EXACTLY_ONCE, acked), message("second", MqttQoS.AT_LEAST_ONCE, acked),
+                message("third", MqttQoS.AT_LEAST_ONCE, acked));
+        List<String> outstanding = payloads(sent);
+        // the PUBACK of the second publish arrives before the PUBCOMP of the first one
+        results.onNext(new HiveMQProtocolClient.PublishResult(sent.get(1), null));
+        List<String> ackedBeforeFirst = List.copyOf(acked);
+        results.onNext(new HiveMQProtocolClient.PublishResult(sent.get(0), null));
+        List<String> ackedBeforeThird = List.copyOf(acked);
+        results.onNext(new HiveMQProtocolClient.PublishResult(sent.get(2), null));
+
+        // Assert
+        assertThat(outstanding).containsExactly("first", "second");
+        assertThat(ackedBeforeFirst).isEmpty();
+        assertThat(ackedBeforeThird).containsExactly("first", "second");
+        assertThat(payloads(sent)).containsExactly("first", "second", "third");
+        assertThat(acked).containsExactly("first", "second", "third");
+    }
+
+    private static Message<String> message(String payload, MqttQoS qos, List<String> acked) {
+        return Message.of(payload).addMetadata(new SendingMqttMessageMetadata(null, qos, false)).withAck(() -> {
+            acked.add(payload);
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    private static List<String> payloads(List<Mqtt5Publish> publishes) {
+        return publishes.stream().map(publish -> new String(publish.getPayloadAsBytes())).toList();
+    }
+
+    /**
+     * Sends the messages through a stream left open, the sink disconnects once its stream completes.
+     */
+    @SuppressWarnings("unchecked")
+    private static void send(HiveMQMqttSink sink, Message<?>... messages) {
+        Multi.createFrom().<Message<?>> emitter(emitter -> List.of(messages).forEach(emitter::emit))
+                .subscribe((Flow.Subscriber<Message<?>>) sink.getSink());
+    }
+
+    private HiveMQMqttConnectorOutgoingConfiguration outgoingConfiguration() {
+        return new HiveMQMqttConnectorOutgoingConfiguration(config());
+    }
+
+    private Config config() {
+        Map<String, String> properties = MqttTestFixtures.createOutgoingConfig("readings", testTopicName("readings"));
+        properties.put("outbox-directory", directory.toString());
+        Config config = MqttTestFixtures.createMockConfig(properties);
+        when(config.getOptionalValue("qos", Integer.class)).thenReturn(Optional.of(1));
+        when(config.getOptionalValue("outbox-segment-size", Integer.class)).thenReturn(Optional.of(4096));
+        return config;
+    }
+}
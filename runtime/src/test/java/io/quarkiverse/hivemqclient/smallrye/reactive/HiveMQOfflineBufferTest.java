@@ -0,0 +1,83 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.quarkiverse.hivemqclient.smallrye.reactive.HiveMQOfflineBuffer.Overflow;
+import io.quarkiverse.hivemqclient.test.MqttTestBase;
+
+/**
+ * Unit tests for HiveMQOfflineBuffer.
+ * Validates the size bounds, the overflow policies and the drain order.
+ */
+class HiveMQOfflineBufferTest extends MqttTestBase {
+
+    @Test
+    void should_evict_oldest_messages_when_full() {
+        // Arrange
+        HiveMQOfflineBuffer<String> buffer = new HiveMQOfflineBuffer<>(2, Long.MAX_VALUE, Overflow.DROP_OLDEST);
+        List<String> evicted = new ArrayList<>();
+        List<String> drained = new ArrayList<>();
+
+        // Act
+        buffer.offer("a", 1, evicted::add);
+        buffer.offer("b", 1, evicted::add);
+        boolean accepted = buffer.offer("c", 1, evicted::add);
+        buffer.drainTo(drained::add);
+
+        // Assert
+        assertThat(accepted).isTrue();
+        assertThat(evicted).containsExactly("a");
+        assertThat(drained).containsExactly("b", "c");
+        assertThat(buffer.isEmpty()).isTrue();
+    }
+
+    @Test
+    void should_reject_newest_message_when_full() {
+        // Arrange
+        HiveMQOfflineBuffer<String> buffer = new HiveMQOfflineBuffer<>(2, Long.MAX_VALUE, Overflow.DROP_NEWEST);
+        List<String> evicted = new ArrayList<>();
+
+        // Act
+        buffer.offer("a", 1, evicted::add);
+        buffer.offer("b", 1, evicted::add);
+        boolean accepted = buffer.offer("c", 1, evicted::add);
+
+        // Assert
+        assertThat(accepted).isFalse();
+        assertThat(evicted).isEmpty();
+        assertThat(buffer.size()).isEqualTo(2);
+    }
+
+    @Test
+    void should_bound_the_buffered_bytes() {
+        // Arrange
+        HiveMQOfflineBuffer<String> buffer = new HiveMQOfflineBuffer<>(100, 10, Overflow.DROP_OLDEST);
+        List<String> evicted = new ArrayList<>();
+
+        // Act
+        buffer.offer("a", 4, evicted::add);
+        buffer.offer("b", 4, evicted::add);
+        buffer.offer("c", 4, evicted::add);
+        boolean tooLarge = buffer.offer("d", 11, evicted::add);
+
+        // Assert
+        assertThat(tooLarge).isFalse();
+        assertThat(evicted).containsExactly("a");
+        assertThat(buffer.bytes()).isEqualTo(8);
+    }
+
+    @Test
+    void should_parse_overflow_policies() {
+        // Act & Assert
+        assertThat(Overflow.from("drop-oldest")).isEqualTo(Overflow.DROP_OLDEST);
+        assertThat(Overflow.from("drop-newest")).isEqualTo(Overflow.DROP_NEWEST);
+        assertThat(Overflow.from("FAIL")).isEqualTo(Overflow.FAIL);
+        assertThatThrownBy(() -> Overflow.from("block")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
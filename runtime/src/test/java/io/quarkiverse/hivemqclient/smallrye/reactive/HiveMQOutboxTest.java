@@ -0,0 +1,159 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import io.quarkiverse.hivemqclient.smallrye.reactive.HiveMQOutbox.Sync;
+import io.quarkiverse.hivemqclient.test.MqttTestBase;
+
+/**
+ * Unit tests for HiveMQOutbox.
+ * Validates that unsettled publishes are replayed after a restart, including settlements made out of order, and that
+ * settled segments are deleted.
+ */
+class HiveMQOutboxTest extends MqttTestBase {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void should_replay_unsettled_publishes_after_restart() {
+        // Arrange
+        HiveMQOutbox outbox = HiveMQOutbox.open(directory, 4096, Sync.OS, 0);
+        long first = outbox.append(publish("factory/1", "a"));
+        long second = outbox.append(publish("factory/2", "b"));
+        long third = outbox.append(publish("factory/3", "c"));
+        outbox.settle(first);
+        outbox.settle(third);
+        outbox.close();
+
+        // Act
+        List<HiveMQOutbox.Entry> replayed = HiveMQOutbox.open(directory, 4096, Sync.OS, 0).takeUnsettled();
+
+        // Assert
+        assertThat(replayed).extracting(HiveMQOutbox.Entry::sequence).containsExactly(second);
+        Mqtt5Publish publish = replayed.get(0).publish();
+        assertThat(publish.getTopic().toString()).isEqualTo("factory/2");
+        assertThat(publish.getQos()).isEqualTo(MqttQos.AT_LEAST_ONCE);
+        assertThat(publish.isRetain()).isTrue();
+        assertThat(new String(publish.getPayloadAsBytes(), StandardCharsets.UTF_8)).isEqualTo("b");
+    }
+
+    @Test
+    void should_advance_checkpoint_over_entries_settled_before_restart() throws IOException {
+        // Arrange
+        HiveMQOutbox outbox = HiveMQOutbox.open(directory, 1024, Sync.OS, 0);
+        long[] sequences = new long[100];
+        for (int i = 0; i < sequences.length; i++) {
+            sequences[i] = outbox.append(publish("factory/" + i, "payload-" + i));
+        }
+        for (int i = 1; i < sequences.length; i++) {
+            outbox.settle(sequences[i]);
+        }
+        outbox.close();
+        HiveMQOutbox reopened = HiveMQOutbox.open(directory, 1024, Sync.OS, 0);
+        List<HiveMQOutbox.Entry> replayed = reopened.takeUnsettled();
+
+        // Act
+        reopened.settle(replayed.get(0).sequence());
+
+        // Assert
+        assertThat(replayed).extracting(HiveMQOutbox.Entry::sequence).containsExactly(sequences[0]);
+        assertThat(segmentCount()).isZero();
+        reopened.close();
+        assertThat(HiveMQOutbox.open(directory, 1024, Sync.OS, 0).takeUnsettled()).isEmpty();
+    }
+
+    @Test
+    void should_delete_settled_segments() throws IOException {
+        // Arrange
+        HiveMQOutbox outbox = HiveMQOutbox.open(directory, 1024, Sync.OS, 0);
+        long[] sequences = new long[100];
+        for (int i = 0; i < sequences.length; i++) {
+            sequences[i] = outbox.append(publish("factory/" + i, "payload-" + i));
+        }
+        long segments = segmentCount();
+
+        // Act
+        for (int i = sequences.length - 1; i >= 0; i--) {
+            outbox.settle(sequences[i]);
+        }
+
+        // Assert
+        assertThat(segments).isGreaterThan(1);
+        assertThat(segmentCount()).isEqualTo(1);
+        outbox.close();
+        assertThat(HiveMQOutbox.open(directory, 1024, Sync.OS, 0).takeUnsettled()).isEmpty();
+    }
+
+    @Test
+    void should_ignore_corrupted_entries() throws IOException {
+        // Arrange
+        HiveMQOutbox outbox = HiveMQOutbox.open(directory, 4096, Sync.ALWAYS, 0);
+        outbox.append(publish("factory/1", "a"));
+        outbox.append(publish("factory/2", "b"));
+        outbox.close();
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(file -> file.toString().endsWith(".log")).findFirst().orElseThrow();
+        }
+        byte[] content = Files.readAllBytes(segment);
+        // flips the last payload byte of the second entry
+        int end = indexOfLast(content, (byte) 'b');
+        content[end] = 'x';
+        Files.write(segment, content);
+
+        // Act
+        List<HiveMQOutbox.Entry> replayed = HiveMQOutbox.open(directory, 4096, Sync.OS, 0).takeUnsettled();
+
+        // Assert
+        assertThat(replayed).extracting(entry -> entry.publish().getTopic().toString()).containsExactly("factory/1");
+    }
+
+    @Test
+    void should_reject_publish_larger_than_a_segment() {
+        // Arrange
+        HiveMQOutbox outbox = HiveMQOutbox.open(directory, 1024, Sync.OS, 0);
+
+        // Act & Assert
+        assertThatThrownBy(() -> outbox.append(publish("factory/1", "x".repeat(2048))))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static Mqtt5Publish publish(String topic, String payload) {
+        return Mqtt5Publish.builder()
+                .topic(topic)
+                .qos(MqttQos.AT_LEAST_ONCE)
+                .retain(true)
+                .payload(payload.getBytes(StandardCharsets.UTF_8))
+                .build();
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".log")).count();
+        }
+    }
+
+    private static int indexOfLast(byte[] content, byte value) {
+        for (int i = content.length - 1; i >= 0; i--) {
+            if (content[i] == value) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("not found");
+    }
+}
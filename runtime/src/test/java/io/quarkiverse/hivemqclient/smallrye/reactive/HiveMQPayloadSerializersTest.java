@@ -0,0 +1,87 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import io.quarkiverse.hivemqclient.test.MqttTestBase;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Unit tests for HiveMQPayloadSerializers.
+ * Validates the built-in encoders and the per-class resolution of the channel serializer.
+ */
+class HiveMQPayloadSerializersTest extends MqttTestBase {
+
+    @Test
+    void should_encode_boxed_primitives_as_text() {
+        // Arrange
+        HiveMQPayloadSerializers serializers = new HiveMQPayloadSerializers(null);
+
+        // Act & Assert
+        assertThat(text(serializers.serialize(42))).isEqualTo("42");
+        assertThat(text(serializers.serialize(1.5d))).isEqualTo("1.5");
+        assertThat(text(serializers.serialize(true))).isEqualTo("true");
+        assertThat(text(serializers.serialize(new StringBuilder("price")))).isEqualTo("price");
+    }
+
+    @Test
+    void should_hand_byte_arrays_and_byte_buffers_without_copy() {
+        // Arrange
+        HiveMQPayloadSerializers serializers = new HiveMQPayloadSerializers(null);
+        byte[] bytes = "raw".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        // Act & Assert
+        assertThat(serializers.serialize(bytes).array()).isSameAs(bytes);
+        assertThat(serializers.serialize(buffer)).isSameAs(buffer);
+    }
+
+    @Test
+    void should_encode_json_and_other_objects_to_json() {
+        // Arrange
+        HiveMQPayloadSerializers serializers = new HiveMQPayloadSerializers(null);
+
+        // Act & Assert
+        assertThat(text(serializers.serialize(new JsonObject().put("price", 10)))).isEqualTo("{\"price\":10}");
+        assertThat(text(serializers.serialize(Map.of("price", 10)))).isEqualTo("{\"price\":10}");
+    }
+
+    @Test
+    void should_prefer_channel_serializer_and_resolve_it_once_per_class() {
+        // Arrange
+        AtomicInteger lookups = new AtomicInteger();
+        HiveMQPayloadSerializer doubles = new HiveMQPayloadSerializer() {
+            @Override
+            public boolean supports(Class<?> type) {
+                lookups.incrementAndGet();
+                return type == Double.class;
+            }
+
+            @Override
+            public ByteBuffer serialize(Object payload) {
+                return ByteBuffer.allocate(Double.BYTES).putDouble(0, (Double) payload);
+            }
+        };
+        HiveMQPayloadSerializers serializers = new HiveMQPayloadSerializers(doubles);
+
+        // Act
+        ByteBuffer first = serializers.serialize(2.5d);
+        serializers.serialize(3.5d);
+        ByteBuffer integer = serializers.serialize(7);
+
+        // Assert
+        assertThat(first.getDouble(0)).isEqualTo(2.5d);
+        assertThat(text(integer)).isEqualTo("7");
+        assertThat(lookups).hasValue(2);
+    }
+
+    private static String text(ByteBuffer buffer) {
+        return StandardCharsets.UTF_8.decode(buffer.duplicate()).toString();
+    }
+}
@@ -1,10 +1,19 @@
 package io.quarkiverse.hivemqclient.smallrye.reactive;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
@@ -14,14 +23,20 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
 import io.quarkiverse.hivemqclient.test.MqttTestBase;
+import io.reactivex.Flowable;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.operators.multi.processors.UnicastProcessor;
 
 /**
- * Unit tests for HiveMQPing error handling and logging behavior.
+ * Unit tests for HiveMQPing error handling, logging behavior and round trip measurement.
  * Validates that error scenarios are properly logged with appropriate levels.
  */
 class HiveMQPingTest extends MqttTestBase {
 
+    private final AtomicBoolean pongsCancelled = new AtomicBoolean();
     private TestLogHandler logHandler;
     private Logger logger;
     private PrintStream originalErr;
@@ -138,6 +153,75 @@ class HiveMQPingTest extends MqttTestBase {
         assertThat(hasPingTimeout).as("PING_TIMEOUT_SEC constant should exist").isTrue();
     }
 
+    @Test
+    void should_measure_round_trip_on_a_unique_topic() {
+        // Arrange
+        HiveMQClients.ClientHolder holder = echoingHolder(false);
+        HiveMQPing ping = new HiveMQPing(holder, null);
+
+        // Act
+        Duration rtt = ping.ping().await().atMost(Duration.ofSeconds(5));
+
+        // Assert
+        assertThat(rtt).isPositive();
+        assertThat(ping.getRoundTripMillis()).isNotNaN().isPositive();
+        assertThat(ping.getTopic()).startsWith("hivemq-client/ping/")
+                .isNotEqualTo(new HiveMQPing(holder, null).getTopic());
+    }
+
+    @Test
+    void should_report_unreachable_broker_when_ping_fails() {
+        // Arrange
+        HiveMQPing ping = new HiveMQPing(echoingHolder(true), null);
+
+        // Act
+        boolean reachable = ping.checkConnection().await().atMost(Duration.ofSeconds(5));
+
+        // Assert
+        assertThat(reachable).isFalse();
+        assertThat(ping.getRoundTripMillis()).isNaN();
+    }
+
+    @Test
+    void should_derive_topic_from_client_id_and_cancel_its_subscription_when_stopped() {
+        // Arrange
+        HiveMQClients.ClientHolder holder = echoingHolder(false);
+        HiveMQPing ping = new HiveMQPing(holder, "gateway-1");
+        ping.ping().await().atMost(Duration.ofSeconds(5));
+
+        // Act
+        ping.stop();
+
+        // Assert
+        assertThat(ping.getTopic()).isEqualTo("hivemq-client/ping/gateway-1");
+        verify(holder).subscribe(eq("hivemq-client/ping/gateway-1"), any(), any(Predicate.class), any());
+        assertThat(pongsCancelled).isTrue();
+        assertThat(HiveMQPing.topicOf("sensors/#")).startsWith("hivemq-client/ping/").doesNotContain("#");
+    }
+
+    /**
+     * A client whose broker delivers every publish back to the subscription.
+     */
+    private HiveMQClients.ClientHolder echoingHolder(boolean failPublishes) {
+        HiveMQClients.ClientHolder holder = mock(HiveMQClients.ClientHolder.class);
+        HiveMQProtocolClient client = mock(HiveMQProtocolClient.class);
+        UnicastProcessor<Mqtt5Publish> broker = UnicastProcessor.create();
+        when(holder.connect()).thenReturn(Uni.createFrom().item(client));
+        when(holder.subscribe(anyString(), any(), any(Predicate.class), any())).thenAnswer(invocation -> {
+            Runnable onSubscribed = invocation.getArgument(3);
+            return broker.onSubscription().invoke(onSubscribed)
+                    .onCancellation().invoke(() -> pongsCancelled.set(true));
+        });
+        when(client.publish(any())).thenAnswer(invocation -> {
+            Flowable<Mqtt5Publish> publishes = invocation.getArgument(0);
+            if (failPublishes) {
+                return Flowable.error(new IllegalStateException("not connected"));
+            }
+            return publishes.doOnNext(broker::onNext).map(p -> new HiveMQProtocolClient.PublishResult(p, null));
+        });
+        return holder;
+    }
+
     /**
      * Helper method to find a method by name using reflection.
      */
@@ -0,0 +1,143 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import io.quarkiverse.hivemqclient.test.MqttTestBase;
+import io.reactivex.Flowable;
+import io.reactivex.processors.PublishProcessor;
+
+/**
+ * Unit tests for HiveMQPublishStream.
+ * Validates that publish results are correlated back to the pending sends, in order for each QoS, and that the stream
+ * recovers from a failure.
+ */
+class HiveMQPublishStreamTest extends MqttTestBase {
+
+    @Test
+    void should_complete_sends_of_each_qos_in_order_when_results_interleave() {
+        // Arrange
+        PublishProcessor<HiveMQProtocolClient.PublishResult> results = PublishProcessor.create();
+        HiveMQPublishStream stream = openStream(results);
+        Mqtt5Publish acknowledged = publish("acknowledged", MqttQos.AT_LEAST_ONCE);
+        Mqtt5Publish fired = publish("fired", MqttQos.AT_MOST_ONCE);
+
+        // Act
+        CompletableFuture<Void> acknowledgedSend = stream.send(acknowledged).toCompletableFuture();
+        CompletableFuture<Void> firedSend = stream.send(fired).toCompletableFuture();
+        results.onNext(result(fired, null));
+
+        // Assert
+        assertThat(firedSend).isCompleted();
+        assertThat(acknowledgedSend).isNotDone();
+
+        results.onNext(result(acknowledged, null));
+        assertThat(acknowledgedSend).isCompleted();
+    }
+
+    @Test
+    void should_complete_send_when_result_carries_another_publish_instance() {
+        // Arrange
+        PublishProcessor<HiveMQProtocolClient.PublishResult> results = PublishProcessor.create();
+        HiveMQPublishStream stream = openStream(results);
+
+        // Act
+        CompletableFuture<Void> send = stream.send(publish("sent")).toCompletableFuture();
+        results.onNext(result(publish("converted"), null));
+
+        // Assert
+        assertThat(send).isCompleted();
+    }
+
+    @Test
+    void should_complete_identical_publishes_in_send_order() {
+        // Arrange
+        PublishProcessor<HiveMQProtocolClient.PublishResult> results = PublishProcessor.create();
+        HiveMQPublishStream stream = openStream(results);
+
+        // Act
+        CompletableFuture<Void> firstSend = stream.send(publish("same")).toCompletableFuture();
+        CompletableFuture<Void> secondSend = stream.send(publish("same")).toCompletableFuture();
+        results.onNext(result(publish("same"), null));
+
+        // Assert
+        assertThat(firstSend).isCompleted();
+        assertThat(secondSend).isNotDone();
+    }
+
+    @Test
+    void should_fail_send_when_result_carries_an_error() {
+        // Arrange
+        PublishProcessor<HiveMQProtocolClient.PublishResult> results = PublishProcessor.create();
+        HiveMQPublishStream stream = openStream(results);
+
+        // Act
+        CompletableFuture<Void> send = stream.send(publish("failed")).toCompletableFuture();
+        results.onNext(result(publish("failed"), new IllegalStateException("no ack")));
+
+        // Assert
+        assertThat(send).isCompletedExceptionally();
+    }
+
+    @Test
+    void should_fail_pending_sends_and_resubscribe_when_stream_fails() {
+        // Arrange
+        PublishProcessor<HiveMQProtocolClient.PublishResult> results = PublishProcessor.create();
+        PublishProcessor<HiveMQProtocolClient.PublishResult> resumedResults = PublishProcessor.create();
+        HiveMQPublishStream stream = openStream(results, resumedResults);
+
+        // Act
+        CompletableFuture<Void> pending = stream.send(publish("pending")).toCompletableFuture();
+        results.onError(new IllegalStateException("broken"));
+        CompletableFuture<Void> next = stream.send(publish("next")).toCompletableFuture();
+        resumedResults.onNext(result(publish("next"), null));
+
+        // Assert
+        assertThat(pending).isCompletedExceptionally();
+        assertThat(next).isCompleted();
+    }
+
+    /**
+     * @param results the results of each subscription of the stream, in order
+     */
+    @SafeVarargs
+    private HiveMQPublishStream openStream(Flowable<HiveMQProtocolClient.PublishResult>... results) {
+        HiveMQProtocolClient client = mock(HiveMQProtocolClient.class);
+        Iterator<Flowable<HiveMQProtocolClient.PublishResult>> subscriptions = List.of(results).iterator();
+        when(client.publish(any())).thenAnswer(invocation -> {
+            Flowable<Mqtt5Publish> publishes = invocation.getArgument(0);
+            publishes.subscribe();
+            return subscriptions.next();
+        });
+        HiveMQPublishStream stream = new HiveMQPublishStream();
+        stream.open(client);
+        return stream;
+    }
+
+    private Mqtt5Publish publish(String payload) {
+        return publish(payload, MqttQos.AT_LEAST_ONCE);
+    }
+
+    private Mqtt5Publish publish(String payload, MqttQos qos) {
+        return Mqtt5Publish.builder()
+                .topic(testTopicName("stream"))
+                .qos(qos)
+                .payload(payload.getBytes())
+                .build();
+    }
+
+    private HiveMQProtocolClient.PublishResult result(Mqtt5Publish publish, Throwable error) {
+        return new HiveMQProtocolClient.PublishResult(publish, error);
+    }
+}
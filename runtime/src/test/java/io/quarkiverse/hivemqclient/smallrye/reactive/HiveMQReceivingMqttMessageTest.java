@@ -0,0 +1,122 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import io.quarkiverse.hivemqclient.test.MqttTestBase;
+import io.smallrye.reactive.messaging.mqtt.MqttFailureHandler;
+
+/**
+ * Unit tests for HiveMQReceivingMqttMessage.
+ * Validates the memoised payload and topic accessors and the MQTT 5 properties.
+ */
+class HiveMQReceivingMqttMessageTest extends MqttTestBase {
+
+    @Test
+    void should_copy_payload_only_once() {
+        // Arrange
+        HiveMQReceivingMqttMessage message = receive("price", "42");
+
+        // Act
+        byte[] first = message.getPayload();
+        byte[] second = message.getPayload();
+
+        // Assert
+        assertThat(first).isEqualTo("42".getBytes(StandardCharsets.UTF_8));
+        assertThat(second).isSameAs(first);
+        assertThat(message.getTopic()).isSameAs(message.getTopic()).isEqualTo(testTopicName("price"));
+    }
+
+    @Test
+    void should_expose_read_only_payload_view() {
+        // Arrange
+        HiveMQReceivingMqttMessage message = receive("price", "42");
+
+        // Act
+        ByteBuffer view = message.getPayloadAsByteBuffer();
+
+        // Assert
+        assertThat(view.isReadOnly()).isTrue();
+        assertThat(StandardCharsets.UTF_8.decode(view).toString()).isEqualTo("42");
+        assertThat(message.getPayloadAsByteBuffer().remaining()).isEqualTo(2);
+    }
+
+    @Test
+    void should_expose_empty_view_without_payload() {
+        // Arrange
+        Mqtt5Publish publish = Mqtt5Publish.builder().topic(testTopicName("empty")).build();
+        HiveMQReceivingMqttMessage message = new HiveMQReceivingMqttMessage(publish, mock(MqttFailureHandler.class));
+
+        // Act & Assert
+        assertThat(message.getPayloadAsByteBuffer().remaining()).isZero();
+        assertThat(message.getPayload()).isEmpty();
+    }
+
+    @Test
+    void should_expose_mqtt5_properties() {
+        // Arrange
+        Mqtt5Publish publish = Mqtt5Publish.builder()
+                .topic(testTopicName("request"))
+                .contentType("application/json")
+                .responseTopic(testTopicName("reply"))
+                .correlationData("id-1".getBytes(StandardCharsets.UTF_8))
+                .messageExpiryInterval(30)
+                .userProperties().add("tenant", "a").applyUserProperties()
+                .build();
+
+        // Act
+        HiveMQReceivingMqttMessage message = new HiveMQReceivingMqttMessage(publish, mock(MqttFailureHandler.class));
+
+        // Assert
+        assertThat(message.getContentType()).contains("application/json");
+        assertThat(message.getResponseTopic()).contains(testTopicName("reply"));
+        assertThat(message.getCorrelationData()).map(b -> StandardCharsets.UTF_8.decode(b).toString()).contains("id-1");
+        assertThat(message.getMessageExpiryInterval()).hasValue(30);
+        assertThat(message.getUserProperties()).singleElement()
+                .satisfies(p -> assertThat(p.getName().toString() + "=" + p.getValue()).isEqualTo("tenant=a"));
+    }
+
+    @Test
+    void should_acknowledge_when_acked_or_nacked_whatever_the_failure_strategy() {
+        // Arrange
+        Mqtt5Publish publish = Mqtt5Publish.builder().topic(testTopicName("ack")).qos(MqttQos.AT_LEAST_ONCE).build();
+        AtomicInteger acknowledged = new AtomicInteger();
+        MqttFailureHandler ignore = mock(MqttFailureHandler.class);
+        when(ignore.handle(any())).thenReturn(CompletableFuture.completedFuture(null));
+        MqttFailureHandler fail = mock(MqttFailureHandler.class);
+        when(fail.handle(any())).thenReturn(CompletableFuture.failedFuture(new IllegalStateException("failed")));
+
+        // Act
+        new HiveMQReceivingMqttMessage(publish, acknowledged::incrementAndGet, ignore).ack().toCompletableFuture().join();
+        new HiveMQReceivingMqttMessage(publish, acknowledged::incrementAndGet, ignore)
+                .nack(new IllegalArgumentException()).toCompletableFuture().join();
+        CompletionStage<Void> failed = new HiveMQReceivingMqttMessage(publish, acknowledged::incrementAndGet, fail)
+                .nack(new IllegalArgumentException());
+
+        // Assert
+        assertThat(acknowledged).hasValue(3);
+        assertThat(failed.toCompletableFuture()).isCompletedExceptionally();
+    }
+
+    private HiveMQReceivingMqttMessage receive(String topic, String payload) {
+        Mqtt5Publish publish = Mqtt5Publish.builder()
+                .topic(testTopicName(topic))
+                .qos(MqttQos.AT_LEAST_ONCE)
+                .payload(payload.getBytes(StandardCharsets.UTF_8))
+                .build();
+        return new HiveMQReceivingMqttMessage(publish, mock(MqttFailureHandler.class));
+    }
+}
@@ -0,0 +1,99 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.hivemq.client.mqtt.MqttClientConfig;
+import com.hivemq.client.mqtt.lifecycle.MqttClientDisconnectedContext;
+import com.hivemq.client.mqtt.lifecycle.MqttClientReconnector;
+import com.hivemq.client.mqtt.lifecycle.MqttDisconnectSource;
+
+import io.quarkiverse.hivemqclient.test.MqttTestBase;
+
+/**
+ * Unit tests for HiveMQReconnectPolicy.
+ * Validates the backoff delays, when the client reconnects and that a present session is not subscribed again.
+ */
+class HiveMQReconnectPolicyTest extends MqttTestBase {
+
+    @Test
+    void should_double_the_delay_ceiling_up_to_the_max_delay() {
+        // Arrange
+        HiveMQReconnectPolicy policy = new HiveMQReconnectPolicy(-1, 1, 10);
+
+        // Act & Assert
+        assertThat(policy.ceilingMillis(0)).isEqualTo(1000);
+        assertThat(policy.ceilingMillis(1)).isEqualTo(2000);
+        assertThat(policy.ceilingMillis(3)).isEqualTo(8000);
+        assertThat(policy.ceilingMillis(4)).isEqualTo(10000);
+        assertThat(policy.ceilingMillis(Integer.MAX_VALUE)).isEqualTo(10000);
+    }
+
+    @Test
+    void should_draw_the_delay_below_the_ceiling() {
+        // Arrange
+        HiveMQReconnectPolicy policy = new HiveMQReconnectPolicy(-1, 1, 120);
+        Random random = new Random(42);
+
+        // Act & Assert
+        for (int attempts = 0; attempts < 10; attempts++) {
+            assertThat(policy.delayMillis(attempts, random)).isBetween(0L, policy.ceilingMillis(attempts));
+        }
+    }
+
+    @Test
+    void should_stop_reconnecting_after_max_attempts() {
+        // Arrange
+        HiveMQReconnectPolicy policy = new HiveMQReconnectPolicy(3, 1, 120);
+        MqttClientReconnector reconnector = mock(MqttClientReconnector.class);
+        when(reconnector.reconnect(anyBoolean())).thenReturn(reconnector);
+        when(reconnector.resubscribeIfSessionPresent(anyBoolean())).thenReturn(reconnector);
+        MqttClientDisconnectedContext context = context(MqttDisconnectSource.SERVER, reconnector);
+
+        // Act
+        when(reconnector.getAttempts()).thenReturn(2);
+        policy.onDisconnected(context);
+        when(reconnector.getAttempts()).thenReturn(3);
+        policy.onDisconnected(context);
+
+        // Assert
+        verify(reconnector).reconnect(true);
+        verify(reconnector).resubscribeIfSessionPresent(false);
+        verify(reconnector).delay(anyLong(), any(TimeUnit.class));
+    }
+
+    @Test
+    void should_not_reconnect_after_user_disconnect() {
+        // Arrange
+        HiveMQReconnectPolicy policy = new HiveMQReconnectPolicy(-1, 1, 120);
+        MqttClientReconnector reconnector = mock(MqttClientReconnector.class);
+
+        // Act
+        policy.onDisconnected(context(MqttDisconnectSource.USER, reconnector));
+
+        // Assert
+        verify(reconnector, never()).reconnect(anyBoolean());
+    }
+
+    private static MqttClientDisconnectedContext context(MqttDisconnectSource source, MqttClientReconnector reconnector) {
+        MqttClientDisconnectedContext context = mock(MqttClientDisconnectedContext.class);
+        MqttClientConfig config = mock(MqttClientConfig.class);
+        when(config.getServerHost()).thenReturn("localhost");
+        when(config.getServerPort()).thenReturn(1883);
+        when(context.getSource()).thenReturn(source);
+        when(context.getReconnector()).thenReturn(reconnector);
+        when(context.getClientConfig()).thenReturn(config);
+        return context;
+    }
+}
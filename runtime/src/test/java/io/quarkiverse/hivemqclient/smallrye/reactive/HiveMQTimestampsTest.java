@@ -0,0 +1,64 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import io.quarkiverse.hivemqclient.test.MqttTestBase;
+
+/**
+ * Unit tests for HiveMQTimestamps.
+ * Validates the stamping of the send time as a user property and as an MQTT 3 payload header.
+ */
+class HiveMQTimestampsTest extends MqttTestBase {
+
+    @Test
+    void should_read_send_time_from_user_property() {
+        // Arrange
+        Mqtt5Publish publish = Mqtt5Publish.builder().topic("telemetry")
+                .userProperties().add("origin", "sensor-1").add(HiveMQTimestamps.property(1_700_000_000_123L))
+                .applyUserProperties()
+                .build();
+
+        // Act
+        long sentAt = HiveMQTimestamps.sentAt(publish);
+
+        // Assert
+        assertThat(sentAt).isEqualTo(1_700_000_000_123L);
+        assertThat(HiveMQTimestamps.sentAt(Mqtt5Publish.builder().topic("telemetry").build())).isEqualTo(-1);
+    }
+
+    @Test
+    void should_move_payload_header_to_user_property() {
+        // Arrange
+        ByteBuffer payload = ByteBuffer.wrap("{\"value\":21.5}".getBytes(StandardCharsets.UTF_8));
+        Mqtt5Publish publish = Mqtt5Publish.builder().topic("telemetry")
+                .payload(HiveMQTimestamps.frame(payload, 1_700_000_000_123L))
+                .build();
+
+        // Act
+        Mqtt5Publish unframed = HiveMQTimestamps.unframe(publish);
+
+        // Assert
+        assertThat(unframed.getPayload()).contains(payload);
+        assertThat(HiveMQTimestamps.sentAt(unframed)).isEqualTo(1_700_000_000_123L);
+    }
+
+    @Test
+    void should_deliver_payload_without_header_as_is() {
+        // Arrange
+        Mqtt5Publish plain = Mqtt5Publish.builder().topic("telemetry")
+                .payload("{\"value\":21.5}".getBytes(StandardCharsets.UTF_8))
+                .build();
+        Mqtt5Publish empty = Mqtt5Publish.builder().topic("telemetry").build();
+
+        // Act & Assert
+        assertThat(HiveMQTimestamps.unframe(plain)).isSameAs(plain);
+        assertThat(HiveMQTimestamps.unframe(empty)).isSameAs(empty);
+    }
+}
@@ -0,0 +1,60 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import io.quarkiverse.hivemqclient.test.MqttTestBase;
+
+/**
+ * Unit tests for HiveMQTopicLanes.
+ * Validates that topics are assigned to stable lanes.
+ */
+class HiveMQTopicLanesTest extends MqttTestBase {
+
+    @Test
+    void should_assign_a_topic_to_a_stable_lane() {
+        // Arrange
+        HiveMQTopicLanes lanes = new HiveMQTopicLanes(4, -1);
+
+        // Act & Assert
+        assertThat(lanes.laneOf("devices/a/telemetry")).isEqualTo(lanes.laneOf("devices/a/telemetry"))
+                .isBetween(0, 3);
+    }
+
+    @Test
+    void should_spread_topics_over_lanes() {
+        // Arrange
+        HiveMQTopicLanes lanes = new HiveMQTopicLanes(4, -1);
+        Set<Integer> used = new HashSet<>();
+
+        // Act
+        for (int i = 0; i < 100; i++) {
+            used.add(lanes.laneOf("devices/" + i + "/telemetry"));
+        }
+
+        // Assert
+        assertThat(used).containsExactlyInAnyOrder(0, 1, 2, 3);
+    }
+
+    @Test
+    void should_key_on_configured_topic_level() {
+        // Arrange
+        HiveMQTopicLanes lanes = new HiveMQTopicLanes(8, 1);
+
+        // Act & Assert
+        assertThat(lanes.laneOf("devices/a/telemetry")).isEqualTo(lanes.laneOf("devices/a/status"));
+        assertThat(lanes.laneOf("devices/a/telemetry")).isEqualTo(Math.floorMod("a".hashCode(), 8));
+        assertThat(lanes.laneOf("devices")).isEqualTo(Math.floorMod("devices".hashCode(), 8));
+    }
+
+    @Test
+    void should_reject_non_positive_lane_count() {
+        // Act & Assert
+        assertThatThrownBy(() -> new HiveMQTopicLanes(0, -1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
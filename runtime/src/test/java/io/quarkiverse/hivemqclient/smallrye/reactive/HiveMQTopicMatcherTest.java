@@ -0,0 +1,134 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.quarkiverse.hivemqclient.test.MqttTestBase;
+
+/**
+ * Unit tests for HiveMQTopicMatcher.
+ * Validates the MQTT wildcard semantics of the topic filter trie.
+ */
+class HiveMQTopicMatcherTest extends MqttTestBase {
+
+    @Test
+    void should_match_exact_topics_only() {
+        // Arrange
+        HiveMQTopicMatcher<String> matcher = HiveMQTopicMatcher.of("prices/eur");
+
+        // Act & Assert
+        assertThat(matcher.matches("prices/eur")).isTrue();
+        assertThat(matcher.matches("prices/eur/x")).isFalse();
+        assertThat(matcher.matches("prices")).isFalse();
+        assertThat(matcher.matches("prices/usd")).isFalse();
+    }
+
+    @Test
+    void should_not_treat_regex_metacharacters_specially() {
+        // Arrange
+        HiveMQTopicMatcher<String> matcher = HiveMQTopicMatcher.of("a.b/$c");
+
+        // Act & Assert
+        assertThat(matcher.matches("a.b/$c")).isTrue();
+        assertThat(matcher.matches("axb/$c")).isFalse();
+    }
+
+    @Test
+    void should_match_single_level_wildcard() {
+        // Arrange
+        HiveMQTopicMatcher<String> matcher = HiveMQTopicMatcher.of("devices/+/telemetry");
+
+        // Act & Assert
+        assertThat(matcher.matches("devices/a/telemetry")).isTrue();
+        assertThat(matcher.matches("devices//telemetry")).isTrue();
+        assertThat(matcher.matches("devices/a/b/telemetry")).isFalse();
+        assertThat(matcher.matches("devices/a")).isFalse();
+    }
+
+    @Test
+    void should_match_multi_level_wildcard_including_parent_level() {
+        // Arrange
+        HiveMQTopicMatcher<String> matcher = HiveMQTopicMatcher.of("sport/#");
+
+        // Act & Assert
+        assertThat(matcher.matches("sport")).isTrue();
+        assertThat(matcher.matches("sport/tennis")).isTrue();
+        assertThat(matcher.matches("sport/tennis/player1")).isTrue();
+        assertThat(matcher.matches("sports")).isFalse();
+    }
+
+    @Test
+    void should_not_match_dollar_topics_with_leading_wildcards() {
+        // Act & Assert
+        assertThat(HiveMQTopicMatcher.of("#").matches("$SYS/broker/uptime")).isFalse();
+        assertThat(HiveMQTopicMatcher.of("+/broker/uptime").matches("$SYS/broker/uptime")).isFalse();
+        assertThat(HiveMQTopicMatcher.of("$SYS/#").matches("$SYS/broker/uptime")).isTrue();
+        assertThat(HiveMQTopicMatcher.of("#").matches("prices")).isTrue();
+    }
+
+    @Test
+    void should_return_every_matching_value() {
+        // Arrange
+        HiveMQTopicMatcher<String> matcher = new HiveMQTopicMatcher<>();
+        matcher.add("factory/+/line", "single");
+        matcher.add("factory/#", "multi");
+        matcher.add("factory/site/line", "exact");
+        matcher.add("factory/other/line", "other");
+        List<String> matches = new ArrayList<>();
+
+        // Act
+        matcher.forEachMatch("factory/site/line", matches::add);
+
+        // Assert
+        assertThat(matches).containsExactlyInAnyOrder("single", "multi", "exact");
+    }
+
+    @Test
+    void should_stop_matching_removed_filters() {
+        // Arrange
+        HiveMQTopicMatcher<String> matcher = new HiveMQTopicMatcher<>();
+        matcher.add("factory/+/line", "a");
+        matcher.add("factory/+/line", "b");
+
+        // Act
+        matcher.remove("factory/+/line", "a");
+        List<String> matches = new ArrayList<>();
+        matcher.forEachMatch("factory/site/line", matches::add);
+
+        // Assert
+        assertThat(matches).containsExactly("b");
+    }
+
+    @Test
+    void should_remove_nodes_left_without_filter() {
+        // Arrange
+        HiveMQTopicMatcher<String> matcher = new HiveMQTopicMatcher<>();
+        matcher.add("factory/1/line", "exact");
+        matcher.add("factory/+/line", "single");
+        matcher.add("factory/#", "multi");
+
+        // Act
+        matcher.remove("factory/1/line", "exact");
+        matcher.remove("factory/+/line", "single");
+        boolean emptyBeforeLast = matcher.isEmpty();
+        matcher.remove("factory/#", "multi");
+
+        // Assert
+        assertThat(emptyBeforeLast).isFalse();
+        assertThat(matcher.isEmpty()).isTrue();
+        assertThat(matcher.matches("factory/1/line")).isFalse();
+    }
+
+    @Test
+    void should_reject_invalid_filters() {
+        // Act & Assert
+        assertThatThrownBy(() -> HiveMQTopicMatcher.of("sport/#/tennis")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> HiveMQTopicMatcher.of("sport+")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> HiveMQTopicMatcher.of("")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
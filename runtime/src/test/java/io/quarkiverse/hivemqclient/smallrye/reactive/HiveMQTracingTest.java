@@ -0,0 +1,86 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.junit.jupiter.api.Test;
+
+import com.hivemq.client.mqtt.mqtt5.datatypes.Mqtt5UserProperties;
+import com.hivemq.client.mqtt.mqtt5.datatypes.Mqtt5UserPropertiesBuilder;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.quarkiverse.hivemqclient.test.MqttTestBase;
+import io.smallrye.reactive.messaging.TracingMetadata;
+
+/**
+ * Unit tests for HiveMQTracing.
+ * Validates the propagation of the trace context in user properties and the skipping of unsampled messages.
+ */
+class HiveMQTracingTest extends MqttTestBase {
+
+    private static final String TRACE_ID = "4bf92f3577b34da6a3ce929d0e0e4736";
+    private static final String SPAN_ID = "00f067aa0ba902b7";
+
+    private final HiveMQTracing tracing = HiveMQTracing.of(
+            OpenTelemetry.propagating(ContextPropagators.create(W3CTraceContextPropagator.getInstance())), true);
+
+    @Test
+    void should_propagate_sampled_context_in_user_properties() {
+        // Arrange
+        Message<String> message = Message.of("21.5").addMetadata(TracingMetadata.withCurrent(parent(true)));
+
+        // Act
+        Context published = tracing.publish(message, "telemetry", 4);
+        Mqtt5UserPropertiesBuilder properties = Mqtt5UserProperties.builder();
+        tracing.inject(published, properties);
+        Context received = tracing.receive(Mqtt5Publish.builder().topic("telemetry")
+                .userProperties(properties.build())
+                .build());
+
+        // Assert
+        assertThat(properties.build().asList()).singleElement()
+                .satisfies(property -> assertThat(property.getName().toString()).isEqualTo(HiveMQTracing.TRACEPARENT))
+                .satisfies(property -> assertThat(property.getValue().toString())
+                        .isEqualTo("00-" + TRACE_ID + "-" + SPAN_ID + "-01"));
+        assertThat(Span.fromContext(received).getSpanContext().getTraceId()).isEqualTo(TRACE_ID);
+    }
+
+    @Test
+    void should_skip_unsampled_messages() {
+        // Arrange
+        Message<String> message = Message.of("21.5").addMetadata(TracingMetadata.withCurrent(parent(false)));
+        Mqtt5Publish publish = Mqtt5Publish.builder().topic("telemetry")
+                .userProperties().add(HiveMQTracing.TRACEPARENT, "00-" + TRACE_ID + "-" + SPAN_ID + "-00")
+                .applyUserProperties()
+                .build();
+
+        // Act & Assert
+        assertThat(tracing.publish(message, "telemetry", 4)).isNull();
+        assertThat(tracing.receive(publish)).isNull();
+    }
+
+    @Test
+    void should_not_trace_when_disabled() {
+        // Arrange
+        HiveMQTracing disabled = HiveMQTracing.of(OpenTelemetry.noop(), false);
+        Message<String> message = Message.of("21.5").addMetadata(TracingMetadata.withCurrent(parent(true)));
+
+        // Act & Assert
+        assertThat(disabled).isSameAs(HiveMQTracing.DISABLED);
+        assertThat(disabled.publish(message, "telemetry", 4)).isNull();
+        assertThat(disabled.receive(Mqtt5Publish.builder().topic("telemetry").build())).isNull();
+    }
+
+    private static Context parent(boolean sampled) {
+        return Context.root().with(Span.wrap(SpanContext.createFromRemoteParent(TRACE_ID, SPAN_ID,
+                sampled ? TraceFlags.getSampled() : TraceFlags.getDefault(), TraceState.getDefault())));
+    }
+}
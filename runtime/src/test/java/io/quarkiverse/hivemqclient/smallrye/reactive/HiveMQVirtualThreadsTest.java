@@ -0,0 +1,48 @@
+package io.quarkiverse.hivemqclient.smallrye.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.quarkiverse.hivemqclient.test.MqttTestBase;
+
+/**
+ * Unit tests for HiveMQVirtualThreads.
+ * Validates that virtual threads are only used on a JVM supporting them.
+ */
+class HiveMQVirtualThreadsTest extends MqttTestBase {
+
+    @Test
+    void should_detect_virtual_thread_support_from_java_version() {
+        // Act & Assert
+        assertThat(HiveMQVirtualThreads.isSupported()).isEqualTo(Runtime.version().feature() >= 21);
+    }
+
+    @Test
+    void should_run_tasks_on_virtual_threads() throws Exception {
+        assumeTrue(HiveMQVirtualThreads.isSupported());
+
+        // Arrange
+        ExecutorService executor = HiveMQVirtualThreads.newExecutor();
+
+        // Act
+        String thread = executor.submit(() -> Thread.currentThread().toString()).get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        // Assert
+        assertThat(thread).startsWith("VirtualThread");
+    }
+
+    @Test
+    void should_fail_when_virtual_threads_are_not_supported() {
+        assumeTrue(!HiveMQVirtualThreads.isSupported());
+
+        // Act & Assert
+        assertThatThrownBy(HiveMQVirtualThreads::newExecutor).isInstanceOf(IllegalStateException.class);
+    }
+}
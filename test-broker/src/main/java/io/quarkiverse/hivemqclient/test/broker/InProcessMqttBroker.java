@@ -0,0 +1,305 @@
+package io.quarkiverse.hivemqclient.test.broker;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import io.netty.handler.codec.mqtt.MqttProperties;
+import io.netty.handler.codec.mqtt.MqttProperties.MqttPropertyType;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.mqtt.MqttEndpoint;
+import io.vertx.mqtt.MqttServer;
+import io.vertx.mqtt.MqttServerOptions;
+import io.vertx.mqtt.MqttTopicSubscription;
+import io.vertx.mqtt.messages.MqttPublishMessage;
+import io.vertx.mqtt.messages.MqttSubscribeMessage;
+import io.vertx.mqtt.messages.MqttUnsubscribeMessage;
+import io.vertx.mqtt.messages.codes.MqttUnsubAckReasonCode;
+
+/**
+ * MQTT 3.1.1 and 5 broker running in the current JVM, a stand-in for a broker container in tests, benchmarks and dev
+ * mode.
+ * <p>
+ * It supports publishes of every QoS, wildcard and shared ({@code $share/<group>/<filter>}) subscriptions, retained
+ * messages and MQTT 5 publish properties. Sessions are not persisted: every connection starts a clean session and its
+ * subscriptions end with it. Authentication, will messages and message expiry are not supported.
+ * <p>
+ * The broker listens on {@value #HOST} only. It has its own Vert.x instance with a single event loop, which serves all
+ * the connections and so owns the subscriptions and the retained messages without locking.
+ */
+public final class InProcessMqttBroker implements AutoCloseable {
+
+    public static final String HOST = "127.0.0.1";
+
+    private static final String SHARED_SUBSCRIPTION_PREFIX = "$share/";
+    private static final int MAX_MESSAGE_SIZE = 268_435_455;
+    private static final int MAX_MESSAGE_ID = 65_535;
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private final Vertx vertx;
+    private final MqttServer server;
+    private final Map<MqttEndpoint, Session> sessions = new LinkedHashMap<>();
+    private final Map<String, Retained> retained = new LinkedHashMap<>();
+    private final Map<String, Integer> sharedCursors = new HashMap<>();
+
+    private InProcessMqttBroker(Vertx vertx, int port) {
+        this.vertx = vertx;
+        this.server = MqttServer.create(vertx, new MqttServerOptions()
+                .setHost(HOST)
+                .setPort(port)
+                .setMaxMessageSize(MAX_MESSAGE_SIZE)
+                // assigned in connect, to return them to MQTT 5 clients
+                .setAutoClientId(false));
+        server.endpointHandler(this::connect);
+    }
+
+    /**
+     * @return a broker listening on a random free port
+     */
+    public static InProcessMqttBroker start() {
+        return start(0);
+    }
+
+    /**
+     * @param port the port to listen to, {@code 0} for a random free port
+     * @return a broker listening on the port
+     */
+    public static InProcessMqttBroker start(int port) {
+        Vertx vertx = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(1));
+        InProcessMqttBroker broker = new InProcessMqttBroker(vertx, port);
+        try {
+            await(broker.server.listen(), "start the MQTT broker on port " + port);
+        } catch (RuntimeException e) {
+            vertx.close();
+            throw e;
+        }
+        return broker;
+    }
+
+    /**
+     * @return the address the broker listens to
+     */
+    public String getHost() {
+        return HOST;
+    }
+
+    /**
+     * @return the port the broker listens to
+     */
+    public int getPort() {
+        return server.actualPort();
+    }
+
+    /**
+     * Disconnects the clients and stops the broker.
+     */
+    @Override
+    public void close() {
+        await(vertx.close(), "stop the MQTT broker");
+    }
+
+    private void connect(MqttEndpoint endpoint) {
+        Session session = new Session(endpoint);
+        sessions.put(endpoint, session);
+        MqttProperties connAckProperties = new MqttProperties();
+        if (endpoint.clientIdentifier() == null && session.isMqtt5()) {
+            connAckProperties.add(new MqttProperties.StringProperty(MqttPropertyType.ASSIGNED_CLIENT_IDENTIFIER.value(),
+                    UUID.randomUUID().toString()));
+        }
+        // acknowledges incoming QoS 1 and 2 publishes, and releases outgoing QoS 2 ones
+        endpoint.publishAutoAck(true)
+                .subscribeHandler(subscribe -> subscribe(session, subscribe))
+                .unsubscribeHandler(unsubscribe -> unsubscribe(session, unsubscribe))
+                .publishHandler(publish -> publish(session, publish))
+                .exceptionHandler(failure -> endpoint.close())
+                .closeHandler(ignored -> sessions.remove(endpoint))
+                .accept(false, connAckProperties);
+    }
+
+    private void subscribe(Session session, MqttSubscribeMessage subscribe) {
+        List<MqttQoS> granted = new ArrayList<>();
+        List<Subscription> added = new ArrayList<>();
+        for (MqttTopicSubscription topicSubscription : subscribe.topicSubscriptions()) {
+            Subscription subscription = Subscription.of(topicSubscription);
+            session.subscriptions.put(topicSubscription.topicName(), subscription);
+            granted.add(subscription.qos());
+            added.add(subscription);
+        }
+        session.endpoint.subscribeAcknowledge(subscribe.messageId(), granted);
+        for (Subscription subscription : added) {
+            if (subscription.group() == null) {
+                retained.forEach((topic, message) -> {
+                    if (matches(subscription.filter(), topic)) {
+                        session.send(topic, message.payload(), min(message.qos(), subscription.qos()), true,
+                                message.properties());
+                    }
+                });
+            }
+        }
+    }
+
+    private void unsubscribe(Session session, MqttUnsubscribeMessage unsubscribe) {
+        List<MqttUnsubAckReasonCode> reasons = new ArrayList<>();
+        for (String filter : unsubscribe.topics()) {
+            reasons.add(session.subscriptions.remove(filter) != null ? MqttUnsubAckReasonCode.SUCCESS
+                    : MqttUnsubAckReasonCode.NO_SUBSCRIPTION_EXISTED);
+        }
+        if (session.isMqtt5()) {
+            session.endpoint.unsubscribeAcknowledge(unsubscribe.messageId(), reasons, MqttProperties.NO_PROPERTIES);
+        } else {
+            session.endpoint.unsubscribeAcknowledge(unsubscribe.messageId());
+        }
+    }
+
+    private void publish(Session publisher, MqttPublishMessage publish) {
+        String topic = publish.topicName();
+        Buffer payload = publish.payload().copy();
+        MqttProperties properties = forwarded(publish.properties());
+        if (publish.isRetain()) {
+            if (payload.length() == 0) {
+                retained.remove(topic);
+            } else {
+                retained.put(topic, new Retained(payload, publish.qosLevel(), properties));
+            }
+        }
+
+        Map<String, List<Delivery>> groups = new LinkedHashMap<>();
+        for (Session session : sessions.values()) {
+            MqttQoS qos = null;
+            for (Subscription subscription : session.subscriptions.values()) {
+                if (!matches(subscription.filter(), topic) || (subscription.noLocal() && session == publisher)) {
+                    continue;
+                }
+                if (subscription.group() != null) {
+                    groups.computeIfAbsent(subscription.group() + '/' + subscription.filter(), group -> new ArrayList<>())
+                            .add(new Delivery(session, subscription.qos()));
+                } else if (qos == null || subscription.qos().value() > qos.value()) {
+                    qos = subscription.qos();
+                }
+            }
+            if (qos != null) {
+                session.send(topic, payload, min(publish.qosLevel(), qos), false, properties);
+            }
+        }
+        groups.forEach((group, members) -> {
+            int cursor = sharedCursors.merge(group, 1, Integer::sum) % members.size();
+            Delivery delivery = members.get(cursor);
+            delivery.session().send(topic, payload, min(publish.qosLevel(), delivery.qos()), false, properties);
+        });
+    }
+
+    /**
+     * @param filter the topic filter, with {@code +} and {@code #} wildcards
+     * @param topic the topic
+     * @return whether the topic matches the filter
+     */
+    static boolean matches(String filter, String topic) {
+        if (topic.startsWith("$") && !filter.startsWith("$")) {
+            return false;
+        }
+        String[] filterLevels = filter.split("/", -1);
+        String[] topicLevels = topic.split("/", -1);
+        for (int i = 0; i < filterLevels.length; i++) {
+            if (filterLevels[i].equals("#")) {
+                return true;
+            }
+            if (i == topicLevels.length) {
+                return false;
+            }
+            if (!filterLevels[i].equals("+") && !filterLevels[i].equals(topicLevels[i])) {
+                return false;
+            }
+        }
+        return filterLevels.length == topicLevels.length;
+    }
+
+    private static MqttProperties forwarded(MqttProperties received) {
+        MqttProperties forwarded = new MqttProperties();
+        for (MqttProperties.MqttProperty<?> property : received.listAll()) {
+            int id = property.propertyId();
+            // both are scoped to the connection the publish came from
+            if (id != MqttPropertyType.TOPIC_ALIAS.value() && id != MqttPropertyType.SUBSCRIPTION_IDENTIFIER.value()) {
+                forwarded.add(property);
+            }
+        }
+        return forwarded;
+    }
+
+    private static MqttQoS min(MqttQoS first, MqttQoS second) {
+        return first.value() <= second.value() ? first : second;
+    }
+
+    private static <T> T await(Future<T> future, String action) {
+        try {
+            return future.toCompletionStage().toCompletableFuture().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to " + action, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to " + action, e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Timed out after " + TIMEOUT_SECONDS + " seconds waiting to " + action, e);
+        }
+    }
+
+    private static final class Session {
+
+        private final MqttEndpoint endpoint;
+        private final Map<String, Subscription> subscriptions = new LinkedHashMap<>();
+        private int lastMessageId;
+
+        private Session(MqttEndpoint endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        private boolean isMqtt5() {
+            return endpoint.protocolVersion() == 5;
+        }
+
+        private void send(String topic, Buffer payload, MqttQoS qos, boolean retain, MqttProperties properties) {
+            if (!endpoint.isConnected()) {
+                return;
+            }
+            int messageId = 0;
+            if (qos != MqttQoS.AT_MOST_ONCE) {
+                lastMessageId = lastMessageId % MAX_MESSAGE_ID + 1;
+                messageId = lastMessageId;
+            }
+            endpoint.publish(topic, payload, qos, false, retain, messageId,
+                    isMqtt5() ? properties : MqttProperties.NO_PROPERTIES);
+        }
+    }
+
+    private record Subscription(String filter, String group, MqttQoS qos, boolean noLocal) {
+
+        private static Subscription of(MqttTopicSubscription subscription) {
+            String filter = subscription.topicName();
+            String group = null;
+            int separator = filter.indexOf('/', SHARED_SUBSCRIPTION_PREFIX.length());
+            if (filter.startsWith(SHARED_SUBSCRIPTION_PREFIX) && separator > 0) {
+                group = filter.substring(SHARED_SUBSCRIPTION_PREFIX.length(), separator);
+                filter = filter.substring(separator + 1);
+            }
+            MqttQoS qos = subscription.qualityOfService() == MqttQoS.FAILURE ? MqttQoS.AT_MOST_ONCE
+                    : subscription.qualityOfService();
+            boolean noLocal = subscription.subscriptionOption() != null && subscription.subscriptionOption().isNoLocal();
+            return new Subscription(filter, group, qos, noLocal);
+        }
+    }
+
+    private record Retained(Buffer payload, MqttQoS qos, MqttProperties properties) {
+    }
+
+    private record Delivery(Session session, MqttQoS qos) {
+    }
+}
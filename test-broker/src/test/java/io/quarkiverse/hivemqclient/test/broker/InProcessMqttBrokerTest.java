@@ -0,0 +1,185 @@
+package io.quarkiverse.hivemqclient.test.broker;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.hivemq.client.mqtt.MqttGlobalPublishFilter;
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+import com.hivemq.client.mqtt.mqtt3.Mqtt3BlockingClient;
+import com.hivemq.client.mqtt.mqtt3.Mqtt3Client;
+import com.hivemq.client.mqtt.mqtt3.message.publish.Mqtt3Publish;
+import com.hivemq.client.mqtt.mqtt5.Mqtt5BlockingClient;
+import com.hivemq.client.mqtt.mqtt5.Mqtt5Client;
+import com.hivemq.client.mqtt.mqtt5.datatypes.Mqtt5UserProperties;
+import com.hivemq.client.mqtt.mqtt5.datatypes.Mqtt5UserProperty;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+
+/**
+ * Unit tests for {@link InProcessMqttBroker}.
+ * Validates delivery between real MQTT 3 and 5 clients, and topic filter matching.
+ */
+class InProcessMqttBrokerTest {
+
+    private InProcessMqttBroker broker;
+
+    @BeforeEach
+    void setUp() {
+        broker = InProcessMqttBroker.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        broker.close();
+    }
+
+    @Test
+    void should_deliver_publish_with_properties_when_mqtt5_subscriber() throws InterruptedException {
+        // Arrange
+        Mqtt5BlockingClient subscriber = mqtt5Client();
+        Mqtt5BlockingClient publisher = mqtt5Client();
+        Mqtt5BlockingClient.Mqtt5Publishes publishes = subscriber.publishes(MqttGlobalPublishFilter.ALL);
+        subscriber.subscribeWith().topicFilter("sensors/+/temperature").qos(MqttQos.AT_LEAST_ONCE).send();
+
+        // Act
+        publisher.publishWith()
+                .topic("sensors/1/temperature")
+                .qos(MqttQos.AT_LEAST_ONCE)
+                .payload("21.5".getBytes(StandardCharsets.UTF_8))
+                .userProperties(Mqtt5UserProperties.of(Mqtt5UserProperty.of("unit", "celsius")))
+                .contentType("text/plain")
+                .send();
+
+        // Assert
+        Optional<Mqtt5Publish> received = publishes.receive(5, TimeUnit.SECONDS);
+        assertThat(received).isPresent();
+        assertThat(received.get().getTopic().toString()).isEqualTo("sensors/1/temperature");
+        assertThat(received.get().getQos()).isEqualTo(MqttQos.AT_LEAST_ONCE);
+        assertThat(received.get().getPayloadAsBytes()).asString(StandardCharsets.UTF_8).isEqualTo("21.5");
+        assertThat(received.get().getUserProperties().asList())
+                .singleElement()
+                .satisfies(property -> {
+                    assertThat(property.getName().toString()).isEqualTo("unit");
+                    assertThat(property.getValue().toString()).isEqualTo("celsius");
+                });
+        assertThat(received.get().getContentType()).hasValueSatisfying(type -> assertThat(type.toString())
+                .isEqualTo("text/plain"));
+    }
+
+    @Test
+    void should_deliver_exactly_once_publish_when_mqtt3_subscriber() throws InterruptedException {
+        // Arrange
+        Mqtt3BlockingClient subscriber = mqtt3Client();
+        Mqtt5BlockingClient publisher = mqtt5Client();
+        Mqtt3BlockingClient.Mqtt3Publishes publishes = subscriber.publishes(MqttGlobalPublishFilter.ALL);
+        subscriber.subscribeWith().topicFilter("plant/#").qos(MqttQos.EXACTLY_ONCE).send();
+
+        // Act
+        for (int i = 0; i < 3; i++) {
+            publisher.publishWith()
+                    .topic("plant/line-" + i)
+                    .qos(MqttQos.EXACTLY_ONCE)
+                    .payload(new byte[] { (byte) i })
+                    .send();
+        }
+
+        // Assert
+        for (int i = 0; i < 3; i++) {
+            Optional<Mqtt3Publish> received = publishes.receive(5, TimeUnit.SECONDS);
+            assertThat(received).isPresent();
+            assertThat(received.get().getTopic().toString()).isEqualTo("plant/line-" + i);
+            assertThat(received.get().getQos()).isEqualTo(MqttQos.EXACTLY_ONCE);
+            assertThat(received.get().getPayloadAsBytes()).containsExactly(i);
+        }
+    }
+
+    @Test
+    void should_deliver_retained_message_when_subscribing_later() throws InterruptedException {
+        // Arrange
+        Mqtt5BlockingClient publisher = mqtt5Client();
+        publisher.publishWith()
+                .topic("status/gateway")
+                .qos(MqttQos.AT_LEAST_ONCE)
+                .retain(true)
+                .payload("online".getBytes(StandardCharsets.UTF_8))
+                .send();
+        Mqtt5BlockingClient subscriber = mqtt5Client();
+        Mqtt5BlockingClient.Mqtt5Publishes publishes = subscriber.publishes(MqttGlobalPublishFilter.ALL);
+
+        // Act
+        subscriber.subscribeWith().topicFilter("status/+").qos(MqttQos.AT_MOST_ONCE).send();
+
+        // Assert
+        Optional<Mqtt5Publish> received = publishes.receive(5, TimeUnit.SECONDS);
+        assertThat(received).isPresent();
+        assertThat(received.get().isRetain()).isTrue();
+        assertThat(received.get().getQos()).isEqualTo(MqttQos.AT_MOST_ONCE);
+        assertThat(received.get().getPayloadAsBytes()).asString(StandardCharsets.UTF_8).isEqualTo("online");
+    }
+
+    @Test
+    void should_deliver_each_publish_once_when_shared_subscription() throws InterruptedException {
+        // Arrange
+        Mqtt5BlockingClient first = mqtt5Client();
+        Mqtt5BlockingClient second = mqtt5Client();
+        Mqtt5BlockingClient publisher = mqtt5Client();
+        Mqtt5BlockingClient.Mqtt5Publishes firstPublishes = first.publishes(MqttGlobalPublishFilter.ALL);
+        Mqtt5BlockingClient.Mqtt5Publishes secondPublishes = second.publishes(MqttGlobalPublishFilter.ALL);
+        first.subscribeWith().topicFilter("$share/workers/jobs").qos(MqttQos.AT_LEAST_ONCE).send();
+        second.subscribeWith().topicFilter("$share/workers/jobs").qos(MqttQos.AT_LEAST_ONCE).send();
+
+        // Act
+        for (int i = 0; i < 4; i++) {
+            publisher.publishWith().topic("jobs").qos(MqttQos.AT_LEAST_ONCE).payload(new byte[] { (byte) i }).send();
+        }
+
+        // Assert
+        for (Mqtt5BlockingClient.Mqtt5Publishes publishes : List.of(firstPublishes, secondPublishes)) {
+            assertThat(publishes.receive(5, TimeUnit.SECONDS)).isPresent();
+            assertThat(publishes.receive(5, TimeUnit.SECONDS)).isPresent();
+        }
+        assertThat(firstPublishes.receiveNow()).isEmpty();
+        assertThat(secondPublishes.receiveNow()).isEmpty();
+    }
+
+    @Test
+    void should_match_topics_when_filter_has_wildcards() {
+        // Arrange & Act & Assert
+        assertThat(InProcessMqttBroker.matches("a/b", "a/b")).isTrue();
+        assertThat(InProcessMqttBroker.matches("a/+", "a/b")).isTrue();
+        assertThat(InProcessMqttBroker.matches("a/+", "a/b/c")).isFalse();
+        assertThat(InProcessMqttBroker.matches("a/#", "a")).isTrue();
+        assertThat(InProcessMqttBroker.matches("a/#", "a/b/c")).isTrue();
+        assertThat(InProcessMqttBroker.matches("+/+", "a/")).isTrue();
+        assertThat(InProcessMqttBroker.matches("#", "$SYS/uptime")).isFalse();
+        assertThat(InProcessMqttBroker.matches("a/b", "a/c")).isFalse();
+    }
+
+    private Mqtt5BlockingClient mqtt5Client() {
+        Mqtt5BlockingClient client = Mqtt5Client.builder()
+                .identifier("test-" + UUID.randomUUID())
+                .serverHost(broker.getHost())
+                .serverPort(broker.getPort())
+                .buildBlocking();
+        client.connect();
+        return client;
+    }
+
+    private Mqtt3BlockingClient mqtt3Client() {
+        Mqtt3BlockingClient client = Mqtt3Client.builder()
+                .identifier("test-" + UUID.randomUUID())
+                .serverHost(broker.getHost())
+                .serverPort(broker.getPort())
+                .buildBlocking();
+        client.connect();
+        return client;
+    }
+}